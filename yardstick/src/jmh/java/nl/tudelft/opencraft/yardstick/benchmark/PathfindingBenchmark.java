@@ -0,0 +1,96 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.PathNode;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.SearchBudget;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.SimpleAStar;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.heuristic.OctileHeuristic;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.SimpleWorldPhysics;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SimpleAStar#search(Vector3i, Vector3i, SearchBudget)}
+ * between fixed pairs of locations about the given distance apart. Searches
+ * are bounded by the same budget as long walks in reference.conf, so
+ * unreachable pairs cost a full budget.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PathfindingBenchmark {
+
+    private static final int PAIRS = 64;
+    private static final int BUDGET = 50000;
+
+    @Param({"FLAT", "HILLY", "MAZE", "CAVE"})
+    public SyntheticWorld shape;
+
+    @Param({"16", "48"})
+    public int distance;
+
+    private SimpleAStar pathFinder;
+    private final Vector3i[] starts = new Vector3i[PAIRS];
+    private final Vector3i[] ends = new Vector3i[PAIRS];
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        SimpleWorldPhysics physics = new SimpleWorldPhysics(shape.create());
+        pathFinder = new SimpleAStar(new OctileHeuristic(), physics);
+
+        List<Vector3i> standable = shape.standableLocations(physics.getWorld());
+        Random random = new Random(42);
+        int tolerance = Math.max(2, distance / 8);
+        for (int i = 0; i < PAIRS; i++) {
+            Vector3i start = standable.get(random.nextInt(standable.size()));
+            Vector3i end;
+            int attempts = 0;
+            do {
+                end = standable.get(random.nextInt(standable.size()));
+            } while (Math.abs(Math.sqrt(start.distanceSquared(end)) - distance) > tolerance && ++attempts < 10000);
+            starts[i] = start;
+            ends[i] = end;
+        }
+    }
+
+    @Benchmark
+    public PathNode search() throws ChunkNotLoadedException {
+        int i = index++ % PAIRS;
+        return pathFinder.search(starts[i], ends[i], new SearchBudget(BUDGET));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.SimpleWorldPhysics;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the movement checks of {@link SimpleWorldPhysics}, from locations
+ * a bot can stand in.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PhysicsBenchmark {
+
+    private static final int LOCATIONS = 4096;
+    private static final Vector3i[] MOVES = {
+        new Vector3i(1, 0, 0), new Vector3i(-1, 0, 0), new Vector3i(0, 0, 1), new Vector3i(0, 0, -1),
+        new Vector3i(1, 0, 1), new Vector3i(-1, 0, -1), new Vector3i(0, 1, 0), new Vector3i(0, -1, 0)};
+
+    @Param({"FLAT", "HILLY", "MAZE", "CAVE"})
+    public SyntheticWorld shape;
+
+    private SimpleWorldPhysics physics;
+    private final Vector3i[] from = new Vector3i[LOCATIONS];
+    private final Vector3i[] to = new Vector3i[LOCATIONS];
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        physics = new SimpleWorldPhysics(shape.create());
+        List<Vector3i> standable = shape.standableLocations(physics.getWorld());
+        Random random = new Random(42);
+        for (int i = 0; i < LOCATIONS; i++) {
+            from[i] = standable.get(random.nextInt(standable.size()));
+            to[i] = from[i].add(MOVES[random.nextInt(MOVES.length)]);
+        }
+    }
+
+    @Benchmark
+    public boolean canWalk() throws ChunkNotLoadedException {
+        int i = index++ & (LOCATIONS - 1);
+        return physics.canWalk(from[i], to[i]);
+    }
+
+    @Benchmark
+    public Vector3i[] findWalkable() throws ChunkNotLoadedException {
+        int i = index++ & (LOCATIONS - 1);
+        return physics.findWalkable(from[i]);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import nl.tudelft.opencraft.yardstick.bot.world.Chunk;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.Dimension;
+import nl.tudelft.opencraft.yardstick.bot.world.Material;
+import nl.tudelft.opencraft.yardstick.bot.world.World;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+import science.atlarge.opencraft.mcprotocollib.data.game.chunk.Column;
+import science.atlarge.opencraft.mcprotocollib.data.game.world.WorldType;
+
+/**
+ * Represents a world generated without a server, from {@link Column}s filled
+ * with a fixed seed. Every shape covers the same square of
+ * {@link #CHUNKS} by {@link #CHUNKS} chunks centred on the origin, with the
+ * ground at {@link #GROUND}.
+ */
+public enum SyntheticWorld {
+
+    /**
+     * Open, level ground.
+     */
+    FLAT {
+        @Override
+        void generate(World world, Random random) throws ChunkNotLoadedException {
+            for (int x = MIN; x <= MAX; x++) {
+                for (int z = MIN; z <= MAX; z++) {
+                    column(world, x, z, GROUND);
+                }
+            }
+        }
+    },
+    /**
+     * Rolling hills with cliffs too high to jump.
+     */
+    HILLY {
+        @Override
+        void generate(World world, Random random) throws ChunkNotLoadedException {
+            double phaseX = random.nextDouble() * Math.PI * 2;
+            double phaseZ = random.nextDouble() * Math.PI * 2;
+            for (int x = MIN; x <= MAX; x++) {
+                for (int z = MIN; z <= MAX; z++) {
+                    double height = 6 * Math.sin(x / 9.0 + phaseX)
+                            + 4 * Math.cos(z / 11.0 + phaseZ)
+                            + 2 * Math.sin((x + z) / 5.0);
+                    column(world, x, z, GROUND + (int) Math.round(height));
+                }
+            }
+        }
+    },
+    /**
+     * Level ground divided by walls two blocks high into a maze with a single
+     * path between any two cells.
+     */
+    MAZE {
+        @Override
+        void generate(World world, Random random) throws ChunkNotLoadedException {
+            FLAT.generate(world, random);
+
+            // Cells lie on odd offsets, walls on even offsets
+            int cells = SIZE / 2;
+            boolean[][] open = new boolean[SIZE][SIZE];
+            boolean[][] visited = new boolean[cells][cells];
+            Deque<int[]> stack = new ArrayDeque<>();
+            stack.push(new int[]{0, 0});
+            visited[0][0] = true;
+            open[1][1] = true;
+            int[][] directions = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+            while (!stack.isEmpty()) {
+                int[] cell = stack.peek();
+                List<int[]> unvisited = new ArrayList<>();
+                for (int[] d : directions) {
+                    int cx = cell[0] + d[0], cz = cell[1] + d[1];
+                    if (cx >= 0 && cz >= 0 && cx < cells - 1 && cz < cells - 1 && !visited[cx][cz]) {
+                        unvisited.add(new int[]{cx, cz});
+                    }
+                }
+                if (unvisited.isEmpty()) {
+                    stack.pop();
+                    continue;
+                }
+                int[] next = unvisited.get(random.nextInt(unvisited.size()));
+                visited[next[0]][next[1]] = true;
+                open[cell[0] + next[0] + 1][cell[1] + next[1] + 1] = true;
+                open[2 * next[0] + 1][2 * next[1] + 1] = true;
+                stack.push(next);
+            }
+
+            for (int lx = 0; lx < SIZE; lx++) {
+                for (int lz = 0; lz < SIZE; lz++) {
+                    if (!open[lx][lz]) {
+                        set(world, MIN + lx, GROUND, MIN + lz, Material.STONE);
+                        set(world, MIN + lx, GROUND + 1, MIN + lz, Material.STONE);
+                    }
+                }
+            }
+        }
+    },
+    /**
+     * Solid stone with winding tunnels three blocks high below the surface.
+     */
+    CAVE {
+        @Override
+        void generate(World world, Random random) throws ChunkNotLoadedException {
+            for (int x = MIN; x <= MAX; x++) {
+                for (int z = MIN; z <= MAX; z++) {
+                    column(world, x, z, GROUND);
+                }
+            }
+
+            for (int worm = 0; worm < 24; worm++) {
+                double x = MIN + 8 + random.nextInt(SIZE - 16);
+                double z = MIN + 8 + random.nextInt(SIZE - 16);
+                int y = CAVE_FLOOR + random.nextInt(8);
+                double angle = random.nextDouble() * Math.PI * 2;
+                for (int step = 0; step < 200; step++) {
+                    carve(world, (int) x, y, (int) z);
+                    angle += (random.nextDouble() - 0.5) * 0.8;
+                    x = Math.max(MIN + 2, Math.min(MAX - 2, x + Math.cos(angle)));
+                    z = Math.max(MIN + 2, Math.min(MAX - 2, z + Math.sin(angle)));
+                    if (random.nextInt(8) == 0) {
+                        y = Math.max(CAVE_FLOOR, Math.min(CAVE_FLOOR + 8, y + random.nextInt(3) - 1));
+                    }
+                }
+            }
+        }
+
+        private void carve(World world, int x, int y, int z) throws ChunkNotLoadedException {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    for (int dy = 0; dy < 3; dy++) {
+                        set(world, x + dx, y + dy, z + dz, Material.AIR);
+                    }
+                }
+            }
+        }
+    };
+
+    public static final int CHUNKS = 8;
+    public static final int SIZE = CHUNKS * 16;
+    public static final int MIN = -SIZE / 2;
+    public static final int MAX = MIN + SIZE - 1;
+    /**
+     * The height bots stand at on level ground.
+     */
+    public static final int GROUND = 64;
+    private static final int CAVE_FLOOR = 32;
+    private static final long SEED = 42;
+
+    /**
+     * Generates a new instance of this world. The same shape always produces
+     * the same blocks.
+     *
+     * @return the world.
+     */
+    public World create() {
+        World world = new World(Dimension.OVERWORLD, WorldType.DEFAULT);
+        for (int cx = MIN / 16; cx <= MAX / 16; cx++) {
+            for (int cz = MIN / 16; cz <= MAX / 16; cz++) {
+                science.atlarge.opencraft.mcprotocollib.data.game.chunk.Chunk[] sections
+                        = new science.atlarge.opencraft.mcprotocollib.data.game.chunk.Chunk[16];
+                world.loadChunk(new Chunk(world, new Column(cx, cz, sections, new byte[256], null)));
+            }
+        }
+        try {
+            generate(world, new Random(SEED));
+        } catch (ChunkNotLoadedException e) {
+            throw new IllegalStateException("Generated outside of the synthetic world", e);
+        }
+        return world;
+    }
+
+    /**
+     * Lists the locations in the given world a bot can stand in, away from the
+     * edges of the world. In caves, only locations below the surface are
+     * listed.
+     *
+     * @param world a world created by {@link #create()} of this shape.
+     * @return the locations of the feet of a standing bot.
+     */
+    public List<Vector3i> standableLocations(World world) {
+        int top = this == CAVE ? GROUND - 1 : GROUND + 16;
+        List<Vector3i> locations = new ArrayList<>();
+        try {
+            for (int x = MIN + 1; x < MAX; x++) {
+                for (int z = MIN + 1; z < MAX; z++) {
+                    for (int y = 1; y < top; y++) {
+                        if (world.getPhysics().canStand(new Vector3i(x, y - 1, z))) {
+                            locations.add(new Vector3i(x, y, z));
+                        }
+                    }
+                }
+            }
+        } catch (ChunkNotLoadedException e) {
+            throw new IllegalStateException(e);
+        }
+        return locations;
+    }
+
+    abstract void generate(World world, Random random) throws ChunkNotLoadedException;
+
+    /**
+     * Fills a column with bedrock at the bottom, stone up to the surface, and
+     * grass on top. Bots stand at the given height.
+     */
+    private static void column(World world, int x, int z, int height) throws ChunkNotLoadedException {
+        set(world, x, 0, z, Material.BEDROCK);
+        for (int y = 1; y < height - 1; y++) {
+            set(world, x, y, z, Material.STONE);
+        }
+        set(world, x, height - 1, z, Material.GRASS);
+    }
+
+    private static void set(World world, int x, int y, int z, Material material) throws ChunkNotLoadedException {
+        world.getBlockAt(x, y, z).setTypeId(material.getId());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import nl.tudelft.opencraft.yardstick.bot.Bot;
+import nl.tudelft.opencraft.yardstick.bot.entity.BotPlayer;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.model.TargetLocation;
+import nl.tudelft.opencraft.yardstick.util.Vector2i;
+import nl.tudelft.opencraft.yardstick.util.Vector3d;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the target selection of {@link TargetLocation} in a box around
+ * the origin. The bot is a mock, as in the model tests, but its world is a
+ * real synthetic world.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TargetLocationBenchmark {
+
+    private static final Vector2i CENTER = new Vector2i(0, 0);
+    private static final int DIAMETER = 64;
+
+    @Param({"FLAT", "HILLY", "MAZE", "CAVE"})
+    public SyntheticWorld shape;
+
+    private Bot bot;
+    private final TargetLocation targetLocation = new TargetLocation();
+
+    @Setup
+    public void setup() {
+        BotPlayer player = Mockito.mock(BotPlayer.class);
+        Mockito.when(player.getLocation()).thenReturn(new Vector3d(0, SyntheticWorld.GROUND, 0));
+        bot = Mockito.mock(Bot.class);
+        Mockito.when(bot.getPlayer()).thenReturn(player);
+        Mockito.when(bot.getWorld()).thenReturn(shape.create());
+    }
+
+    @Benchmark
+    public Vector3i newTargetLocation() throws ChunkNotLoadedException {
+        return targetLocation.newTargetLocation(CENTER, DIAMETER, bot);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import nl.tudelft.opencraft.yardstick.bot.world.Block;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.Material;
+import nl.tudelft.opencraft.yardstick.bot.world.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures block lookups in a {@link World}, at random locations within the
+ * loaded chunks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WorldBenchmark {
+
+    private static final int LOCATIONS = 4096;
+
+    @Param({"FLAT", "HILLY", "MAZE", "CAVE"})
+    public SyntheticWorld shape;
+
+    private World world;
+    private final int[] xs = new int[LOCATIONS];
+    private final int[] ys = new int[LOCATIONS];
+    private final int[] zs = new int[LOCATIONS];
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        world = shape.create();
+        Random random = new Random(42);
+        for (int i = 0; i < LOCATIONS; i++) {
+            xs[i] = SyntheticWorld.MIN + random.nextInt(SyntheticWorld.SIZE);
+            ys[i] = random.nextInt(SyntheticWorld.GROUND + 16);
+            zs[i] = SyntheticWorld.MIN + random.nextInt(SyntheticWorld.SIZE);
+        }
+    }
+
+    @Benchmark
+    public Block getBlockAt() throws ChunkNotLoadedException {
+        int i = index++ & (LOCATIONS - 1);
+        return world.getBlockAt(xs[i], ys[i], zs[i]);
+    }
+
+    @Benchmark
+    public Material getMaterial() throws ChunkNotLoadedException {
+        int i = index++ & (LOCATIONS - 1);
+        return world.getBlockAt(xs[i], ys[i], zs[i]).getMaterial();
+    }
+}
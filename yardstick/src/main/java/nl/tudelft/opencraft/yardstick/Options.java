@@ -40,12 +40,22 @@ public class Options {
     @Parameter(names = {"--csvdump", "-cd"}, description = "Convert a workload file to CSV format")
     public boolean csvDump;
 
-    @Parameter(names = "--input", description = "An input file to read from. To be used with --csvdump")
+    @Parameter(names = {"--metricsdump", "-md"}, description = "Convert a metrics recording to CSV format")
+    public boolean metricsDump;
+
+    @Parameter(names = {"--histmerge", "-hm"}, description = "Merge the histogram snapshots of several nodes into a CSV file")
+    public boolean histogramMerge;
+
+    @Parameter(names = "--input", description = "An input file to read from. To be used with --csvdump or --metricsdump. "
+            + "With --histmerge, a comma-separated list of files")
     public String inFile;
 
-    @Parameter(names = "--output", description = "An output file to write to. To be used with --csvdump")
+    @Parameter(names = "--output", description = "An output file to write to. To be used with --csvdump, --metricsdump or --histmerge")
     public String outFile;
 
+    @Parameter(names = "--window", description = "The length of the windows in seconds. To be used with --histmerge")
+    public int window = 10;
+
 
     @Override
     public String toString() {
@@ -54,8 +64,11 @@ public class Options {
         sb.append(", address='").append(address).append('\'');
         sb.append(", nodeID=").append(nodeID);
         sb.append(", csvDump=").append(csvDump);
+        sb.append(", metricsDump=").append(metricsDump);
+        sb.append(", histogramMerge=").append(histogramMerge);
         sb.append(", inFile='").append(inFile).append('\'');
         sb.append(", outFile='").append(outFile).append('\'');
+        sb.append(", window=").append(window);
         sb.append('}');
         return sb.toString();
     }
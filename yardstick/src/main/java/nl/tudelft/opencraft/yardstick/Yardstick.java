@@ -24,8 +24,10 @@ import com.beust.jcommander.JCommander;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import java.time.Duration;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import nl.tudelft.opencraft.yardstick.bot.BotTicker;
+import nl.tudelft.opencraft.yardstick.bot.KinematicsStore;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.PathSearchService;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.flowfield.FlowFieldService;
 import nl.tudelft.opencraft.yardstick.experiment.Experiment;
 import nl.tudelft.opencraft.yardstick.experiment.Experiment10GenerationStressTest;
 import nl.tudelft.opencraft.yardstick.experiment.Experiment11Latency;
@@ -39,8 +41,23 @@ import nl.tudelft.opencraft.yardstick.experiment.Experiment9Spike;
 import nl.tudelft.opencraft.yardstick.experiment.RemoteControlledExperiment;
 import nl.tudelft.opencraft.yardstick.game.GameArchitecture;
 import nl.tudelft.opencraft.yardstick.game.GameFactory;
+import nl.tudelft.opencraft.yardstick.jfr.JfrEvents;
 import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
 import nl.tudelft.opencraft.yardstick.logging.SimpleTimeFormatter;
+import nl.tudelft.opencraft.yardstick.statistic.HistogramMerger;
+import nl.tudelft.opencraft.yardstick.statistic.HistogramSnapshots;
+import nl.tudelft.opencraft.yardstick.statistic.JvmMetrics;
+import nl.tudelft.opencraft.yardstick.statistic.MetricsCsvConverter;
+import nl.tudelft.opencraft.yardstick.statistic.MetricsExporter;
+import nl.tudelft.opencraft.yardstick.statistic.MetricsRecorder;
+import nl.tudelft.opencraft.yardstick.statistic.PacketTimer;
+import nl.tudelft.opencraft.yardstick.statistic.ServerTickRate;
+import nl.tudelft.opencraft.yardstick.statistic.Statistics;
+import nl.tudelft.opencraft.yardstick.util.OverloadDetector;
+import nl.tudelft.opencraft.yardstick.util.PauseTracker;
+import nl.tudelft.opencraft.yardstick.util.Scheduler;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+import nl.tudelft.opencraft.yardstick.util.VirtualThreads;
 import nl.tudelft.opencraft.yardstick.workload.CsvConverter;
 import nl.tudelft.opencraft.yardstick.workload.WorkloadDumper;
 
@@ -50,7 +67,6 @@ import nl.tudelft.opencraft.yardstick.workload.WorkloadDumper;
 public class Yardstick {
 
     public static final GlobalLogger LOGGER = GlobalLogger.setupGlobalLogger("Yardstick");
-    public static final ScheduledExecutorService THREAD_POOL = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
 
     public static void main(String[] args) {
         // Logger
@@ -80,10 +96,45 @@ public class Yardstick {
             CsvConverter.convertCsv(options.inFile, options.outFile);
             return;
         }
+        if (options.metricsDump) {
+            if (options.inFile == null || options.outFile == null) {
+                LOGGER.severe("Metrics conversion requires both input and output files to be set.");
+                return;
+            }
+
+            MetricsCsvConverter.convertCsv(options.inFile, options.outFile);
+            return;
+        }
+        if (options.histogramMerge) {
+            if (options.inFile == null || options.outFile == null) {
+                LOGGER.severe("Histogram merging requires both input and output files to be set.");
+                return;
+            }
+
+            if (!HistogramMerger.merge(options.inFile, options.outFile, options.window)) {
+                System.exit(1);
+            }
+            return;
+        }
         int id = options.nodeID;
         String address = options.address;
 
         Config experimentConfig = config.getConfig("yardstick.player-emulation.arguments");
+        ThreadPools.setup(experimentConfig.getConfig("executors"));
+        BotTicker.setup(experimentConfig.getConfig("tick-engine"));
+        KinematicsStore.setup(experimentConfig.getConfig("kinematics"));
+        VirtualThreads.setup(experimentConfig.getConfig("virtual-threads"));
+        HistogramSnapshots.setup(experimentConfig.getConfig("metrics.histograms"), id);
+        OverloadDetector.setup(experimentConfig.getConfig("overload"));
+        PauseTracker.setup(experimentConfig.getConfig("pauses"));
+        JvmMetrics.setup(experimentConfig.getConfig("jvm-metrics"));
+        JfrEvents.setup(experimentConfig.getConfig("jfr"));
+        MetricsExporter metrics = MetricsExporter.setup(experimentConfig.getConfig("metrics"), id);
+        MetricsRecorder.setup(experimentConfig.getConfig("metrics.recorder"), id);
+        PacketTimer.setup(experimentConfig.getConfig("packet-timing"));
+        ServerTickRate.setup(experimentConfig.getConfig("server-tick"));
+        PathSearchService.setup(experimentConfig.getConfig("pathfinding"));
+        FlowFieldService.setup(experimentConfig.getConfig("pathfinding.flow-field"));
         GameArchitecture game = new GameFactory().getGame(address, experimentConfig);
 
         String behaviorName = experimentConfig.getString("behavior.name");
@@ -117,10 +168,11 @@ public class Yardstick {
                 ex = new Experiment10GenerationStressTest(id, game, behaviorConfig);
                 break;
             case "11":
-                ex = new Experiment11Latency(id, game, behaviorConfig);
+                ex = new Experiment11Latency(id, game, behaviorConfig, experimentConfig.getConfig("latency"));
                 break;
             case "12":
-                ex = new Experiment12LatencyAndWalkAround(id, game, behaviorConfig);
+                ex = new Experiment12LatencyAndWalkAround(id, game, behaviorConfig,
+                        experimentConfig.getConfig("latency"));
                 break;
             default:
                 System.out.println("Invalid experiment: " + behaviorName);
@@ -130,6 +182,11 @@ public class Yardstick {
         if (config.getBoolean("yardstick.player-emulation.arguments.packet-trace")) {
             ex.setWorkloadDumper(new WorkloadDumper());
         }
+        if ((metrics.isEnabled() || MetricsRecorder.getInstance().isEnabled())
+                && experimentConfig.getBoolean("metrics.packet-statistics")) {
+            ex.setStats(new Statistics(experimentConfig.getConfig("packet-metrics")));
+        }
+        ex.setTickOverrunPolicy(experimentConfig.getEnum(Scheduler.OverrunPolicy.class, "tick-overrun-policy"));
 
         Thread t = new Thread(ex);
         t.setName("experiment-" + behaviorName);
@@ -19,19 +19,18 @@
 package nl.tudelft.opencraft.yardstick.bot;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import java.util.Random;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
-import nl.tudelft.opencraft.yardstick.Yardstick;
 import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.SimpleAStar;
-import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.heuristic.EuclideanHeuristic;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.heuristic.OctileHeuristic;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.TaskExecutor;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.TaskStatus;
 import nl.tudelft.opencraft.yardstick.bot.entity.BotPlayer;
 import nl.tudelft.opencraft.yardstick.bot.world.SimpleWorldPhysics;
 import nl.tudelft.opencraft.yardstick.bot.world.World;
 import nl.tudelft.opencraft.yardstick.experiment.LoggerSessionListener;
+import nl.tudelft.opencraft.yardstick.jfr.BotTickEvent;
+import nl.tudelft.opencraft.yardstick.jfr.ConnectionEvent;
+import nl.tudelft.opencraft.yardstick.jfr.JfrEvents;
 import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
 import nl.tudelft.opencraft.yardstick.logging.SubLogger;
 import nl.tudelft.opencraft.yardstick.workload.WorkloadDumper;
@@ -55,11 +54,10 @@ public class Bot {
     private final MinecraftProtocol protocol;
     private final String name;
     @JsonIgnore
-    private ScheduledFuture<?> ticker;
-    @JsonIgnore
     private final Client client;
     @JsonIgnore
     private final BotController controller;
+    private final JfrEvents jfr = JfrEvents.getInstance();
     //
     private boolean disconnected = false;
     @JsonIgnore
@@ -70,6 +68,7 @@ public class Bot {
     @JsonIgnore
     private SimpleAStar pathFinder;
     private TaskExecutor taskExecutor;
+    private volatile long connectNanos;
 
     /**
      * Creates a new bot with the given {@link MinecraftProtocol}.
@@ -100,6 +99,8 @@ public class Bot {
             @Override
             public void disconnected(DisconnectedEvent event) {
                 disconnected = true;
+                BotTicker.getInstance().unregister(Bot.this);
+                reportConnection("DISCONNECTED", event.getReason());
             }
         });
     }
@@ -126,28 +127,46 @@ public class Bot {
             throw new IllegalStateException("Can not start connection. Bot already isConnected!");
         }
         session.addListener(new LoggerSessionListener(logger.newSubLogger(name)));
-        session.connect();
-
-        initializeTaskTicker();
+        connectNanos = System.nanoTime();
+        reportConnection("CONNECTING", null);
+        // A failed connection is reported during connect, and unregisters the bot from there
+        BotTicker.getInstance().register(this);
+        try {
+            session.connect();
+        } catch (RuntimeException e) {
+            BotTicker.getInstance().unregister(this);
+            throw e;
+        }
     }
 
-    private void initializeTaskTicker() {
-        var random = new Random();
-        this.ticker = Yardstick.THREAD_POOL.scheduleAtFixedRate(() -> {
-            var taskExecutor = this.getTaskExecutor();
-            if (taskExecutor != null
-                    && taskExecutor.getStatus().getType() == TaskStatus.StatusType.IN_PROGRESS) {
-                TaskStatus status = taskExecutor.tick();
-                if (status.getType() == TaskStatus.StatusType.FAILURE) {
-                    if (status.getThrowable() != null) {
-                        logger.log(Level.FINE, "Task Failure: " + status.getMessage(), status.getThrowable());
-                    } else {
-                        logger.warning("Task Failure: " + status.getMessage());
-                    }
-                    this.setTaskExecutor(null);
+    /**
+     * Ticks the current task of the bot. Called every 50 milliseconds by the
+     * {@link BotTicker} while the bot is connected.
+     */
+    public void tick() {
+        var taskExecutor = this.getTaskExecutor();
+        if (taskExecutor != null
+                && taskExecutor.getStatus().getType() == TaskStatus.StatusType.IN_PROGRESS) {
+            BotTickEvent event = null;
+            if (jfr.isTickEnabled()) {
+                event = new BotTickEvent();
+                event.begin();
+            }
+            TaskStatus status = taskExecutor.tick();
+            if (event != null && event.shouldCommit()) {
+                event.bot = name;
+                event.task = taskExecutor.getShortName();
+                event.commit();
+            }
+            if (status.getType() == TaskStatus.StatusType.FAILURE) {
+                if (status.getThrowable() != null) {
+                    logger.log(Level.FINE, "Task Failure: " + status.getMessage(), status.getThrowable());
+                } else {
+                    logger.warning("Task Failure: " + status.getMessage());
                 }
+                this.setTaskExecutor(null);
             }
-        }, random.nextInt(50), 50, TimeUnit.MILLISECONDS);
+        }
     }
 
     public void addWorkloadListener(WorkloadDumper dumper) {
@@ -200,9 +219,8 @@ public class Bot {
      * @param reason the reason.
      */
     public void disconnect(String reason) {
-        if (this.ticker != null) {
-            this.ticker.cancel(false);
-        }
+        reportConnection("DISCONNECTING", reason);
+        BotTicker.getInstance().unregister(this);
         if (this.taskExecutor != null) {
             this.taskExecutor.stop();
         }
@@ -212,6 +230,27 @@ public class Bot {
         disconnected = true;
     }
 
+    /**
+     * Records a {@link ConnectionEvent} for the given phase of the connection
+     * of the bot, if enabled.
+     *
+     * @param phase  the phase.
+     * @param reason the reason of a disconnect, or null.
+     */
+    void reportConnection(String phase, String reason) {
+        if (!jfr.isConnectionEnabled()) {
+            return;
+        }
+        ConnectionEvent event = new ConnectionEvent();
+        if (event.shouldCommit()) {
+            event.bot = name;
+            event.phase = phase;
+            event.sinceConnect = connectNanos == 0 ? 0 : System.nanoTime() - connectNanos;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+
     /**
      * Sets the current task of the bot.
      *
@@ -324,7 +363,7 @@ public class Bot {
         this.world = world;
         // TODO: This shouldn't go here
         if (this.pathFinder == null) {
-            this.pathFinder = new SimpleAStar(new EuclideanHeuristic(), new SimpleWorldPhysics(world));
+            this.pathFinder = new SimpleAStar(new OctileHeuristic(), new SimpleWorldPhysics(world));
         }
     }
 
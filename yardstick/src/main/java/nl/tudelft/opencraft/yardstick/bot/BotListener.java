@@ -34,6 +34,10 @@ import nl.tudelft.opencraft.yardstick.bot.world.ChunkLocation;
 import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
 import nl.tudelft.opencraft.yardstick.bot.world.Dimension;
 import nl.tudelft.opencraft.yardstick.bot.world.World;
+import nl.tudelft.opencraft.yardstick.jfr.JfrEvents;
+import nl.tudelft.opencraft.yardstick.jfr.PacketEvent;
+import nl.tudelft.opencraft.yardstick.statistic.PacketTimer;
+import nl.tudelft.opencraft.yardstick.statistic.ServerTickRate;
 import nl.tudelft.opencraft.yardstick.util.Vector3d;
 import science.atlarge.opencraft.mcprotocollib.MinecraftProtocol;
 import science.atlarge.opencraft.mcprotocollib.data.SubProtocol;
@@ -135,6 +139,9 @@ public class BotListener implements SessionListener {
 
     private final Bot bot;
     private final Logger logger;
+    private final PacketTimer packetTimer = PacketTimer.getInstance();
+    private final JfrEvents jfr = JfrEvents.getInstance();
+    private final ServerTickRate.Estimator tickEstimator = ServerTickRate.getInstance().newEstimator();
     //
     private BotPlayer player;
     private Server server;
@@ -152,6 +159,31 @@ public class BotListener implements SessionListener {
 
     @Override
     public void packetReceived(PacketReceivedEvent pre) {
+        if (packetTimer.sample()) {
+            long start = System.nanoTime();
+            recordPacket(pre);
+            packetTimer.handled(pre.getSession(), pre.getPacket(), System.nanoTime() - start);
+        } else {
+            recordPacket(pre);
+        }
+    }
+
+    private void recordPacket(PacketReceivedEvent pre) {
+        if (!jfr.isPacketEnabled()) {
+            handlePacket(pre);
+            return;
+        }
+        PacketEvent event = new PacketEvent();
+        event.begin();
+        handlePacket(pre);
+        if (event.shouldCommit()) {
+            event.bot = bot.getName();
+            event.packetType = pre.getPacket().getClass();
+            event.commit();
+        }
+    }
+
+    private void handlePacket(PacketReceivedEvent pre) {
         MinecraftProtocol pro = (MinecraftProtocol) pre.getSession().getPacketProtocol();
 
         if (pro.getSubProtocol() != SubProtocol.GAME) {
@@ -286,6 +318,7 @@ public class BotListener implements SessionListener {
             }
 
             b.setInternalState(r.getBlock());
+            bot.getWorld().fireBlockChange(pos.getX(), pos.getY(), pos.getZ());
 
         } else if (packet instanceof ServerBossBarPacket) {
             // 0x0C Boss Bar
@@ -325,6 +358,7 @@ public class BotListener implements SessionListener {
                 }
 
                 b.setInternalState(r.getBlock());
+                bot.getWorld().fireBlockChange(pos.getX(), pos.getY(), pos.getZ());
             }
 
         } else if (packet instanceof ServerConfirmTransactionPacket) {
@@ -450,6 +484,8 @@ public class BotListener implements SessionListener {
             ServerJoinGamePacket p = (ServerJoinGamePacket) packet;
             // TODO: Reduced debug info field?
 
+            bot.reportConnection("JOINED", null);
+
             // Init the game
             this.world = new World(Dimension.forId(p.getDimension()), p.getWorldType());
             bot.setWorld(world);
@@ -474,6 +510,9 @@ public class BotListener implements SessionListener {
             // 0x28 Entity
 
             ServerEntityMovementPacket p = (ServerEntityMovementPacket) packet;
+            if (tickEstimator != null) {
+                tickEstimator.entityMoved();
+            }
 
             Entity e = world.getEntity(p.getEntityId());
             if (e == null) {
@@ -675,7 +714,9 @@ public class BotListener implements SessionListener {
         } else if (packet instanceof ServerUpdateTimePacket) {
             // 0x44 Time Update
             ServerUpdateTimePacket p = (ServerUpdateTimePacket) packet;
-            // TODO
+            if (tickEstimator != null) {
+                tickEstimator.timeUpdated(p.getWorldAge());
+            }
 
         } else if (packet instanceof ServerTitlePacket) {
             // 0x45 Title
@@ -2,12 +2,10 @@ package nl.tudelft.opencraft.yardstick.bot;
 
 import java.net.InetSocketAddress;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import lombok.Getter;
 import lombok.Setter;
@@ -19,7 +17,9 @@ import nl.tudelft.opencraft.yardstick.game.GameArchitecture;
 import nl.tudelft.opencraft.yardstick.game.SingleServer;
 import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
 import nl.tudelft.opencraft.yardstick.logging.SubLogger;
-import org.apache.commons.collections4.list.UnmodifiableList;
+import nl.tudelft.opencraft.yardstick.util.OverloadDetector;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+import nl.tudelft.opencraft.yardstick.util.VirtualThreads;
 import science.atlarge.opencraft.mcprotocollib.MinecraftProtocol;
 
 /**
@@ -42,8 +42,9 @@ public class BotManager implements Runnable {
     private int playerStepDecrease = 0;
     @Getter
     private final GameArchitecture game;
-    private final List<Bot> connectedBots = Collections.synchronizedList(new ArrayList<>());
-    private final List<Future<Bot>> connectingBots = Collections.synchronizedList(new ArrayList<>());
+    @Getter
+    private final BotRegistry registry = new BotRegistry();
+    private final AtomicInteger pendingConnects = new AtomicInteger();
     private final Policy<Bot> retryPolicy = new RetryPolicy<Bot>()
             .handleResultIf(b -> !b.isConnected())
             .withMaxAttempts(-1)
@@ -54,7 +55,7 @@ public class BotManager implements Runnable {
         var a = Yardstick.LOGGER;
         var addr = new InetSocketAddress("::1", 25565);
         var botmanager = new BotManager(new SingleServer(addr), 2, 2, 1);
-        Yardstick.THREAD_POOL.scheduleAtFixedRate(botmanager, 0, 5, TimeUnit.SECONDS);
+        ThreadPools.getInstance().getScheduled(ThreadPools.IO).scheduleAtFixedRate(botmanager, 0, 5, TimeUnit.SECONDS);
     }
 
     public BotManager(GameArchitecture game, int playerCountTarget, int playerStepIncrease, int playerStepDecrease) {
@@ -72,45 +73,61 @@ public class BotManager implements Runnable {
         this.playerCountTarget = playerCountTarget;
     }
 
+    /**
+     * Copies the connecting, joined and active bots into a new list. Use
+     * {@link #getRegistry()} to iterate over large populations.
+     *
+     * @return the bots.
+     */
     public List<Bot> getConnectedBots() {
-        synchronized (connectedBots) {
-            return UnmodifiableList.unmodifiableList(new ArrayList<>(connectedBots));
-        }
+        return registry.list(BotState.CONNECTING, BotState.JOINED, BotState.ACTIVE);
     }
 
     @Override
     public void run() {
-        connectedBots.removeIf(b -> !b.isConnected());
-        connectingBots.removeIf(Future::isDone);
+        registry.forEach(bot -> {
+            if (!bot.isConnected()) {
+                registry.remove(bot);
+            } else if (bot.isJoined()) {
+                registry.transition(bot, BotState.CONNECTING, BotState.JOINED);
+            }
+        });
 
         int playerCount = getPlayerCount();
         int playerDeficit = playerCountTarget - playerCount;
         int playerSurplus = -playerDeficit;
-        if (playerCount < playerCountTarget) {
+        if (playerCount < playerCountTarget && !OverloadDetector.getInstance().isHealthy()) {
+            logger.info(String.format("Emulator overloaded, not adding bots. Is %d, should be %d", playerCount, playerCountTarget));
+        } else if (playerCount < playerCountTarget) {
             int numPlayersToConnect = playerStepIncrease < 1 ? playerDeficit : Math.min(playerStepIncrease, playerDeficit);
             for (int i = 0; i < numPlayersToConnect; i++) {
                 var username = UUID.randomUUID().toString().substring(0, 8);
-                connectingBots.add(game.getAddressForPlayer().thenApply(a -> Failsafe.with(retryPolicy).get(() -> {
+                // The retry policy sleeps between attempts, so connect on a thread meant for blocking work
+                pendingConnects.incrementAndGet();
+                game.getAddressForPlayer().thenApplyAsync(a -> Failsafe.with(retryPolicy).get(() -> {
                     Bot bot = new Bot(new MinecraftProtocol(username), a.getHostName(), a.getPort());
                     bot.connect();
                     return bot;
-                })).whenComplete((bot, ex) -> {
+                }), VirtualThreads.getInstance().getExecutor()).whenComplete((bot, ex) -> {
                     if (ex != null) {
                         logger.log(Level.WARNING, ex.getMessage(), ex);
                     } else {
-                        connectedBots.add(bot);
+                        registry.register(bot, bot.isJoined() ? BotState.JOINED : BotState.CONNECTING);
                     }
-                }));
+                    pendingConnects.decrementAndGet();
+                });
             }
-        } else if (playerCount > playerCountTarget && connectedBots.size() > 0) {
+        } else if (playerCount > playerCountTarget && registry.size() > 0) {
             int numPlayersToDisconnect = playerStepDecrease < 1 ? playerSurplus : Math.min(playerStepDecrease, playerSurplus);
-            for (int i = 0; i < numPlayersToDisconnect; i++) {
-                connectedBots.remove(0).disconnect(String.format("Too many players connected. Is %d, should be %d", playerCount, playerCountTarget));
+            for (Bot bot : registry.drain(numPlayersToDisconnect)) {
+                bot.disconnect(String.format("Too many players connected. Is %d, should be %d", playerCount, playerCountTarget));
+                registry.transition(bot, BotState.DRAINING, BotState.DISCONNECTED);
             }
         }
     }
 
     private int getPlayerCount() {
-        return connectedBots.size() + connectingBots.size();
+        return pendingConnects.get() + registry.count(BotState.CONNECTING)
+                + registry.count(BotState.JOINED) + registry.count(BotState.ACTIVE);
     }
 }
@@ -0,0 +1,244 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of bots and their {@link BotState}, without locks.
+ * <p>
+ * Every transition is a single compare-and-set on the state of the bot, and
+ * updates a count per state, so counting bots in a state does not iterate
+ * over them. Iterating does not copy the registry: it sees bots registered
+ * or transitioned while iterating, or not, but never fails. Disconnected
+ * bots are removed, so the registry only counts bots in the other states.
+ */
+public class BotRegistry {
+
+    private static final Gauge BOTS = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("bot_registry")
+            .name("bots")
+            .help("Number of bots in each lifecycle state")
+            .labelNames("state")
+            .register();
+    private static final Counter DISCONNECTED = Counter.build()
+            .namespace("yardstick")
+            .subsystem("bot_registry")
+            .name("disconnected_total")
+            .help("Number of bots removed from a registry")
+            .register();
+
+    private final Map<Bot, AtomicReference<BotState>> states = new ConcurrentHashMap<>();
+    private final Map<BotState, AtomicInteger> counts = new EnumMap<>(BotState.class);
+    private final Map<BotState, Gauge.Child> gauges = new EnumMap<>(BotState.class);
+
+    /**
+     * Creates an empty registry.
+     */
+    public BotRegistry() {
+        for (BotState state : BotState.values()) {
+            counts.put(state, new AtomicInteger());
+            gauges.put(state, BOTS.labels(state.getLabel()));
+        }
+    }
+
+    /**
+     * Adds a bot to the registry.
+     *
+     * @param bot   the bot.
+     * @param state the initial state of the bot.
+     * @return false if the bot was already registered.
+     */
+    public boolean register(Bot bot, BotState state) {
+        if (states.putIfAbsent(bot, new AtomicReference<>(state)) != null) {
+            return false;
+        }
+        changeCount(state, 1);
+        return true;
+    }
+
+    /**
+     * Moves a bot from one state to another, if it is in the expected state.
+     *
+     * @param bot  the bot.
+     * @param from the expected current state.
+     * @param to   the new state.
+     * @return true if the bot was in the expected state, and is now in the
+     * new state.
+     */
+    public boolean transition(Bot bot, BotState from, BotState to) {
+        AtomicReference<BotState> state = states.get(bot);
+        if (state == null || !state.compareAndSet(from, to)) {
+            return false;
+        }
+        changeCount(from, -1);
+        if (to == BotState.DISCONNECTED) {
+            states.remove(bot, state);
+            DISCONNECTED.inc();
+        } else {
+            changeCount(to, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Moves a bot to the disconnected state, and removes it, whatever its
+     * current state.
+     *
+     * @param bot the bot.
+     * @return true if the bot was registered.
+     */
+    public boolean remove(Bot bot) {
+        AtomicReference<BotState> state = states.remove(bot);
+        if (state == null) {
+            return false;
+        }
+        BotState previous = state.getAndSet(BotState.DISCONNECTED);
+        if (previous != BotState.DISCONNECTED) {
+            // Otherwise a concurrent transition to disconnected has counted it
+            changeCount(previous, -1);
+            DISCONNECTED.inc();
+        }
+        return true;
+    }
+
+    /**
+     * @return the state of the bot, or {@link BotState#DISCONNECTED} if it is
+     * not registered.
+     */
+    public BotState getState(Bot bot) {
+        AtomicReference<BotState> state = states.get(bot);
+        return state == null ? BotState.DISCONNECTED : state.get();
+    }
+
+    /**
+     * @return the number of bots in the given state.
+     */
+    public int count(BotState state) {
+        return counts.get(state).get();
+    }
+
+    /**
+     * @return the number of registered bots.
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Runs the action for every bot in the given state.
+     *
+     * @param state  the state.
+     * @param action the action.
+     */
+    public void forEach(BotState state, Consumer<Bot> action) {
+        states.forEach((bot, s) -> {
+            if (s.get() == state) {
+                action.accept(bot);
+            }
+        });
+    }
+
+    /**
+     * Runs the action for every registered bot, whatever its state.
+     *
+     * @param action the action.
+     */
+    public void forEach(Consumer<Bot> action) {
+        states.keySet().forEach(action);
+    }
+
+    /**
+     * Runs the action for every joined or active bot. Connecting bots that
+     * have joined the game since they were registered are moved to the
+     * joined state, and joined bots are moved to the active state first.
+     *
+     * @param action the action.
+     */
+    public void forEachActive(Consumer<Bot> action) {
+        states.forEach((bot, s) -> {
+            if (s.get() == BotState.CONNECTING && bot.isJoined()) {
+                transition(bot, BotState.CONNECTING, BotState.JOINED);
+            }
+            if (s.get() == BotState.JOINED) {
+                transition(bot, BotState.JOINED, BotState.ACTIVE);
+            }
+            if (s.get() == BotState.ACTIVE) {
+                action.accept(bot);
+            }
+        });
+    }
+
+    /**
+     * Moves up to the given number of joined or active bots to the draining
+     * state.
+     *
+     * @param max the maximum number of bots.
+     * @return the bots now draining.
+     */
+    public List<Bot> drain(int max) {
+        List<Bot> drained = new ArrayList<>(Math.max(0, Math.min(max, size())));
+        for (Bot bot : states.keySet()) {
+            if (drained.size() >= max) {
+                break;
+            }
+            if (transition(bot, BotState.ACTIVE, BotState.DRAINING)
+                    || transition(bot, BotState.JOINED, BotState.DRAINING)) {
+                drained.add(bot);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Copies the bots in the given states into a new list. Prefer
+     * {@link #forEach(BotState, Consumer)} for large populations.
+     *
+     * @param included the states.
+     * @return the bots.
+     */
+    public List<Bot> list(BotState... included) {
+        List<Bot> bots = new ArrayList<>();
+        states.forEach((bot, s) -> {
+            BotState state = s.get();
+            for (BotState i : included) {
+                if (state == i) {
+                    bots.add(bot);
+                    break;
+                }
+            }
+        });
+        return bots;
+    }
+
+    private void changeCount(BotState state, int delta) {
+        counts.get(state).addAndGet(delta);
+        gauges.get(state).inc(delta);
+    }
+}
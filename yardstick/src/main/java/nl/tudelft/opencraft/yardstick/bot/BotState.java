@@ -0,0 +1,59 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot;
+
+/**
+ * The lifecycle of a bot in a {@link BotRegistry}.
+ */
+public enum BotState {
+    /**
+     * The bot is connected, but has not received its player data yet.
+     */
+    CONNECTING("connecting"),
+    /**
+     * The bot has joined the game, but is not given tasks yet.
+     */
+    JOINED("joined"),
+    /**
+     * The bot has joined the game and is given tasks by the experiment.
+     */
+    ACTIVE("active"),
+    /**
+     * The bot is about to be disconnected, and should not be given new tasks.
+     */
+    DRAINING("draining"),
+    /**
+     * The bot has been disconnected. Disconnected bots are removed from the
+     * registry.
+     */
+    DISCONNECTED("disconnected");
+
+    private final String label;
+
+    BotState(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return the label of this state in metrics.
+     */
+    public String getLabel() {
+        return label;
+    }
+}
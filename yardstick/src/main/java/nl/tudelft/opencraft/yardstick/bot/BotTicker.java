@@ -0,0 +1,313 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+
+/**
+ * Ticks all bots on this node every 50 milliseconds, using a timing wheel.
+ * <p>
+ * Each tick is divided into a fixed number of slots. Every bot is placed in
+ * the slot with the fewest bots, so the bots' ticks, and the packets they
+ * send, are spread evenly over the tick. A single timer thread walks the
+ * wheel and hands the bots of each slot to the tick pool of
+ * {@link ThreadPools} in batches.
+ * <p>
+ * If a slot has not finished by the time it is due again, that tick of the
+ * slot is skipped and counted as an overrun, instead of queueing up behind
+ * it.
+ */
+public class BotTicker {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final double[] SECONDS_BUCKETS = new double[]{
+        0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1};
+
+    private static final Histogram LAG = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("tick")
+            .name("lag_seconds")
+            .help("Time between the moment a slot of bots was due and the moment a batch of its bots started ticking on the tick pool")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+    private static final Histogram SLOT_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("tick")
+            .name("slot_seconds")
+            .help("Time between the moment a slot of bots was due and the moment all its bots were ticked")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+    private static final Counter OVERRUNS = Counter.build()
+            .namespace("yardstick")
+            .subsystem("tick")
+            .name("overruns_total")
+            .help("Ticks of a slot skipped because its previous tick had not finished")
+            .register();
+    private static final Gauge BOTS = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("tick")
+            .name("bots")
+            .help("Number of bots ticked on this node")
+            .register();
+
+    private static BotTicker instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(BotTicker.class.getSimpleName());
+    private final Slot[] slots;
+    private final Map<Bot, Slot> slotOfBot = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final int batchSize;
+    private final Thread timer;
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new ticker and starts its timer thread.
+     *
+     * @param config the tick engine configuration, see reference.conf.
+     */
+    public BotTicker(Config config) {
+        int slotCount = config.getInt("slots");
+        this.batchSize = config.getInt("batch-size");
+
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot();
+        }
+
+        this.workers = ThreadPools.getInstance().get(ThreadPools.TICK);
+        this.timer = new Thread(this::runWheel, "bot-ticker");
+        this.timer.setDaemon(true);
+        this.timer.start();
+        logger.info(String.format("Started with %d slots", slotCount));
+    }
+
+    /**
+     * Sets up the ticker used by all bots on this node.
+     *
+     * @param config the tick engine configuration.
+     * @return the ticker.
+     * @throws IllegalStateException if the ticker has already been set up.
+     */
+    public static synchronized BotTicker setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup bot ticker twice");
+        }
+        instance = new BotTicker(config);
+        return instance;
+    }
+
+    /**
+     * Returns the ticker used by all bots on this node. If the ticker has not
+     * been set up, it is set up using the default configuration.
+     *
+     * @return the ticker.
+     */
+    public static synchronized BotTicker getInstance() {
+        if (instance == null) {
+            instance = new BotTicker(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.tick-engine"));
+        }
+        return instance;
+    }
+
+    /**
+     * Starts ticking the given bot, in the slot with the fewest bots.
+     *
+     * @param bot the bot.
+     */
+    public void register(Bot bot) {
+        Slot emptiest;
+        synchronized (slots) {
+            emptiest = slots[0];
+            for (Slot slot : slots) {
+                if (slot.bots.length < emptiest.bots.length) {
+                    emptiest = slot;
+                }
+            }
+            if (slotOfBot.putIfAbsent(bot, emptiest) != null) {
+                return;
+            }
+            emptiest.add(bot);
+        }
+        BOTS.inc();
+    }
+
+    /**
+     * Stops ticking the given bot. A tick of the bot which is already running
+     * is not interrupted.
+     *
+     * @param bot the bot.
+     */
+    public void unregister(Bot bot) {
+        synchronized (slots) {
+            Slot slot = slotOfBot.remove(bot);
+            if (slot == null) {
+                return;
+            }
+            slot.remove(bot);
+        }
+        BOTS.dec();
+    }
+
+    /**
+     * Returns the largest lag of a slot since the previous call, which is the
+     * time between the moment the slot was due and the moment a batch of its
+     * bots started ticking on the tick pool. A skipped tick of a slot counts
+     * as a lag of a whole tick.
+     *
+     * @return the lag in nanoseconds.
+     */
+    public long drainMaxLagNanos() {
+        return maxLagNanos.getAndSet(0);
+    }
+
+    private void runWheel() {
+        long slotNanos = TICK_NANOS / slots.length;
+        long due = System.nanoTime();
+        int index = 0;
+        while (running) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+
+            runSlot(slots[index], due);
+
+            index = (index + 1) % slots.length;
+            due += slotNanos;
+            if (System.nanoTime() - due > TICK_NANOS) {
+                // The timer fell more than a tick behind. Skip ahead instead of ticking in a burst
+                long behind = (System.nanoTime() - due) / slotNanos;
+                OVERRUNS.inc(behind);
+                maxLagNanos.accumulateAndGet(TICK_NANOS, Math::max);
+                due += behind * slotNanos;
+                index = (int) ((index + behind) % slots.length);
+            }
+        }
+    }
+
+    private void runSlot(Slot slot, long due) {
+        Bot[] bots = slot.bots;
+        if (bots.length == 0) {
+            return;
+        }
+        if (!slot.busy.compareAndSet(false, true)) {
+            OVERRUNS.inc();
+            maxLagNanos.accumulateAndGet(TICK_NANOS, Math::max);
+            return;
+        }
+
+        int batches = (bots.length + batchSize - 1) / batchSize;
+        AtomicInteger remaining = new AtomicInteger(batches);
+        try {
+            for (int batch = 0; batch < batches; batch++) {
+                int from = batch * batchSize;
+                int to = Math.min(bots.length, from + batchSize);
+                workers.execute(() -> {
+                    // Measured on the worker, so a backed up tick pool shows up as lag, not only a late timer
+                    long lag = System.nanoTime() - due;
+                    LAG.observe(lag / 1e9);
+                    maxLagNanos.accumulateAndGet(lag, Math::max);
+                    try {
+                        for (int i = from; i < to; i++) {
+                            tick(bots[i]);
+                        }
+                    } finally {
+                        // Even if a bot threw an Error, so the slot is not stuck busy
+                        if (remaining.decrementAndGet() == 0) {
+                            SLOT_TIME.observe((System.nanoTime() - due) / 1e9);
+                            slot.busy.set(false);
+                        }
+                    }
+                });
+            }
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            slot.busy.set(false);
+        }
+    }
+
+    private void tick(Bot bot) {
+        try {
+            bot.tick();
+        } catch (RuntimeException e) {
+            // Keep ticking the other bots in the batch, and this bot in the next tick
+            bot.getLogger().log(Level.WARNING, "Could not tick bot", e);
+        }
+    }
+
+    /**
+     * Stops the ticker and its workers. Running ticks are finished, no new
+     * ticks are started.
+     */
+    public void shutdown() {
+        running = false;
+        timer.interrupt();
+        workers.shutdown();
+    }
+
+    /**
+     * Represents one slot of the wheel. The array of bots is replaced, not
+     * modified, so the timer can read it without locking.
+     */
+    private static class Slot {
+
+        private final AtomicBoolean busy = new AtomicBoolean(false);
+        private volatile Bot[] bots = new Bot[0];
+
+        void add(Bot bot) {
+            Bot[] updated = Arrays.copyOf(bots, bots.length + 1);
+            updated[bots.length] = bot;
+            bots = updated;
+        }
+
+        void remove(Bot bot) {
+            Bot[] current = bots;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == bot) {
+                    Bot[] updated = new Bot[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    bots = updated;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+import nl.tudelft.opencraft.yardstick.util.Vector3d;
+
+/**
+ * Moves large numbers of bots in straight lines, with the positions,
+ * velocities and waypoints of all bots in primitive arrays.
+ * <p>
+ * Task executors acquire a slot for their bot at its current location, and
+ * give it a waypoint and a speed per leg. From then on, the store owns the
+ * position of the bot, so waypoints do not move it back to a location that
+ * has not been sent yet. Every 50 milliseconds, one pass moves all bots towards their
+ * waypoints. The pass is a loop without branches or objects over contiguous
+ * arrays, which the JIT compiler turns into SIMD instructions. Afterwards,
+ * the new locations of the bots that moved are copied into batches, which
+ * are sent to the server on the tick pool of {@link ThreadPools}; that is
+ * the only work left per bot. As the batches hold copies, the next pass can
+ * move the bots while batches are still being sent.
+ * <p>
+ * Waypoints are handed to the pass through a state per slot, so an executor
+ * never changes a waypoint the pass is reading, and the pass skips waypoints
+ * that are still being written.
+ */
+public class KinematicsStore {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    // States of the waypoint of a slot
+    private static final int IDLE = 0;
+    private static final int READY = 1;
+    private static final int STOP = 2;
+    private static final int WRITING = 3;
+    private static final int READING = 4;
+
+    private static final Histogram PASS_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("kinematics")
+            .name("pass_seconds")
+            .help("Time to move all bots in the kinematics store")
+            .buckets(0.00001, 0.00005, 0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05)
+            .register();
+    private static final Gauge BOTS = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("kinematics")
+            .name("bots")
+            .help("Number of bots moved by the kinematics store")
+            .register();
+
+    private static KinematicsStore instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(KinematicsStore.class.getSimpleName());
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+
+    // Owned by the pass
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double[] velocityX;
+    private final double[] velocityY;
+    private final double[] velocityZ;
+    private final double[] targetX;
+    private final double[] targetY;
+    private final double[] targetZ;
+    private final double[] speed;
+
+    // Written by executors, read by the pass once the slot is READY
+    private final double[] pendingPosition;
+    private final boolean[] pendingPlace;
+    private final double[] pendingTo;
+    private final double[] pendingSpeed;
+    private final AtomicIntegerArray pending;
+
+    private final AtomicReferenceArray<Bot> bots;
+    private final int[] free;
+    private int freeCount;
+    // Slots at or above this index have never been used
+    private volatile int highWater;
+
+    private final Executor workers;
+    private ScheduledFuture<?> pass;
+
+    /**
+     * Creates a new store. If the store is enabled, its pass is started.
+     *
+     * @param config the kinematics configuration, see reference.conf.
+     */
+    public KinematicsStore(Config config) {
+        this(config.getBoolean("enabled"), config.getInt("capacity"), config.getInt("batch-size"),
+                config.getBoolean("enabled") ? ThreadPools.getInstance().get(ThreadPools.TICK) : null);
+        if (enabled) {
+            this.pass = ThreadPools.getInstance().getScheduled(ThreadPools.KINEMATICS)
+                    .scheduleAtFixedRate(this::runPass, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+            logger.info(String.format("Started with room for %d bots", capacity));
+        }
+    }
+
+    /**
+     * Creates a new store without starting its pass.
+     *
+     * @param enabled   whether bots should be moved by the store.
+     * @param capacity  the number of bots the store can hold.
+     * @param batchSize the number of locations sent per task.
+     * @param workers   the executor sending the locations.
+     */
+    KinematicsStore(boolean enabled, int capacity, int batchSize, Executor workers) {
+        this.enabled = enabled;
+        this.capacity = enabled ? capacity : 0;
+        this.batchSize = batchSize;
+        this.workers = workers;
+
+        this.x = new double[this.capacity];
+        this.y = new double[this.capacity];
+        this.z = new double[this.capacity];
+        this.velocityX = new double[this.capacity];
+        this.velocityY = new double[this.capacity];
+        this.velocityZ = new double[this.capacity];
+        this.targetX = new double[this.capacity];
+        this.targetY = new double[this.capacity];
+        this.targetZ = new double[this.capacity];
+        this.speed = new double[this.capacity];
+        this.pendingPosition = new double[this.capacity * 3];
+        this.pendingPlace = new boolean[this.capacity];
+        this.pendingTo = new double[this.capacity * 3];
+        this.pendingSpeed = new double[this.capacity];
+        this.pending = new AtomicIntegerArray(this.capacity);
+        this.bots = new AtomicReferenceArray<>(this.capacity);
+        this.free = new int[this.capacity];
+    }
+
+    /**
+     * Sets up the store used by all bots on this node.
+     *
+     * @param config the kinematics configuration.
+     * @return the store.
+     * @throws IllegalStateException if the store has already been set up.
+     */
+    public static synchronized KinematicsStore setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup kinematics store twice");
+        }
+        instance = new KinematicsStore(config);
+        return instance;
+    }
+
+    /**
+     * Returns the store used by all bots on this node. If the store has not
+     * been set up, it is set up using the default configuration.
+     *
+     * @return the store.
+     */
+    public static synchronized KinematicsStore getInstance() {
+        if (instance == null) {
+            instance = new KinematicsStore(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.kinematics"));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns whether bots should be moved by this store.
+     *
+     * @return true if enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reserves a slot for the given bot, at the given location. The bot does
+     * not move until it is given a waypoint.
+     *
+     * @param bot      the bot.
+     * @param location the current location of the bot.
+     * @return the slot, or -1 if the store is disabled or full.
+     */
+    public synchronized int acquire(Bot bot, Vector3d location) {
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else if (highWater < capacity) {
+            slot = highWater;
+        } else {
+            return -1;
+        }
+        // Place the bot, stopped, before the pass can see it
+        lock(slot);
+        int i = slot * 3;
+        pendingPosition[i] = location.getX();
+        pendingPosition[i + 1] = location.getY();
+        pendingPosition[i + 2] = location.getZ();
+        pendingPlace[slot] = true;
+        pendingTo[i] = location.getX();
+        pendingTo[i + 1] = location.getY();
+        pendingTo[i + 2] = location.getZ();
+        pendingSpeed[slot] = 0;
+        pending.set(slot, READY);
+        bots.set(slot, bot);
+        if (slot == highWater) {
+            highWater = slot + 1;
+        }
+        BOTS.inc();
+        return slot;
+    }
+
+    /**
+     * Stops moving the bot in the given slot, and frees the slot. Does
+     * nothing if the slot is no longer held by the bot, so a stale slot
+     * cannot free the slot of another executor.
+     *
+     * @param slot the slot.
+     * @param bot  the bot holding the slot.
+     */
+    public synchronized void release(int slot, Bot bot) {
+        if (slot < 0 || !bots.compareAndSet(slot, bot, null)) {
+            return;
+        }
+        lock(slot);
+        pending.set(slot, STOP);
+        free[freeCount++] = slot;
+        BOTS.dec();
+    }
+
+    /**
+     * Moves the bot in the given slot from where it is towards the given
+     * waypoint, starting with the next pass. The bot stops once it reaches
+     * the waypoint.
+     *
+     * @param slot  the slot of the bot.
+     * @param toX   the x coordinate of the waypoint.
+     * @param toY   the y coordinate of the waypoint.
+     * @param toZ   the z coordinate of the waypoint.
+     * @param speed the distance moved per tick, in blocks.
+     */
+    public void moveTo(int slot, double toX, double toY, double toZ, double speed) {
+        lock(slot);
+        int i = slot * 3;
+        pendingTo[i] = toX;
+        pendingTo[i + 1] = toY;
+        pendingTo[i + 2] = toZ;
+        pendingSpeed[slot] = speed;
+        pending.set(slot, READY);
+    }
+
+    /**
+     * Marks the waypoint of the slot as being written. A waypoint that was
+     * not taken by the pass yet is replaced. Only waits while the pass copies
+     * the waypoint, which takes nanoseconds.
+     */
+    private void lock(int slot) {
+        while (true) {
+            int state = pending.get(slot);
+            if (state == READING || state == WRITING) {
+                Thread.onSpinWait();
+            } else if (pending.compareAndSet(slot, state, WRITING)) {
+                return;
+            }
+        }
+    }
+
+    void runPass() {
+        long start = System.nanoTime();
+        int n = highWater;
+        try {
+            takeWaypoints(n);
+            integrate(n);
+            send(n);
+        } catch (RuntimeException e) {
+            // Keep the schedule alive
+            logger.log(Level.WARNING, "Could not move bots", e);
+        }
+        PASS_TIME.observe((System.nanoTime() - start) / 1e9);
+    }
+
+    private void takeWaypoints(int n) {
+        for (int slot = 0; slot < n; slot++) {
+            int state = pending.get(slot);
+            // Waypoints still being written are taken in the next pass
+            if ((state != READY && state != STOP) || !pending.compareAndSet(slot, state, READING)) {
+                continue;
+            }
+            if (state == READY) {
+                int i = slot * 3;
+                if (pendingPlace[slot]) {
+                    x[slot] = pendingPosition[i];
+                    y[slot] = pendingPosition[i + 1];
+                    z[slot] = pendingPosition[i + 2];
+                    pendingPlace[slot] = false;
+                }
+                targetX[slot] = pendingTo[i];
+                targetY[slot] = pendingTo[i + 1];
+                targetZ[slot] = pendingTo[i + 2];
+            }
+            speed[slot] = state == READY ? pendingSpeed[slot] : 0;
+            pending.set(slot, IDLE);
+        }
+    }
+
+    /**
+     * Moves every bot at most its speed towards its waypoint. Stopped and
+     * free slots have speed 0, so the loop needs no branches.
+     */
+    private void integrate(int n) {
+        for (int i = 0; i < n; i++) {
+            double dx = targetX[i] - x[i];
+            double dy = targetY[i] - y[i];
+            double dz = targetZ[i] - z[i];
+            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            double fraction = Math.min(speed[i], distance) / Math.max(distance, 1e-9);
+            velocityX[i] = dx * fraction;
+            velocityY[i] = dy * fraction;
+            velocityZ[i] = dz * fraction;
+            x[i] += velocityX[i];
+            y[i] += velocityY[i];
+            z[i] += velocityZ[i];
+        }
+    }
+
+    /**
+     * Copies the locations of the bots that moved into batches, and hands
+     * the batches to the workers. Handing over a batch publishes its copy,
+     * so the workers never read the arrays of the pass.
+     */
+    private void send(int n) {
+        Batch batch = null;
+        for (int i = 0; i < n; i++) {
+            if (velocityX[i] == 0 && velocityY[i] == 0 && velocityZ[i] == 0) {
+                continue;
+            }
+            Bot bot = bots.get(i);
+            if (bot == null) {
+                continue;
+            }
+            if (batch == null) {
+                batch = new Batch(batchSize);
+            }
+            batch.add(bot, x[i], y[i], z[i]);
+            if (batch.size == batchSize) {
+                if (!submit(batch)) {
+                    return;
+                }
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            submit(batch);
+        }
+    }
+
+    private boolean submit(Batch batch) {
+        try {
+            workers.execute(batch::send);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            return false;
+        }
+    }
+
+    /**
+     * Locations of moved bots, copied by the pass.
+     */
+    private static class Batch {
+
+        private final Bot[] bots;
+        private final double[] locations;
+        private int size;
+
+        Batch(int capacity) {
+            this.bots = new Bot[capacity];
+            this.locations = new double[capacity * 3];
+        }
+
+        void add(Bot bot, double x, double y, double z) {
+            bots[size] = bot;
+            locations[size * 3] = x;
+            locations[size * 3 + 1] = y;
+            locations[size * 3 + 2] = z;
+            size++;
+        }
+
+        void send() {
+            for (int i = 0; i < size; i++) {
+                Bot bot = bots[i];
+                // The slot of a disconnected bot is freed when its executor is stopped
+                if (bot.hasBeenDisconnected()) {
+                    continue;
+                }
+                try {
+                    bot.getController().updateLocation(
+                            new Vector3d(locations[i * 3], locations[i * 3 + 1], locations[i * 3 + 2]));
+                } catch (RuntimeException e) {
+                    bot.getLogger().log(Level.WARNING, "Could not send location", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the pass. Bots in the store stop moving.
+     */
+    public void shutdown() {
+        if (pass != null) {
+            pass.cancel(false);
+        }
+    }
+}
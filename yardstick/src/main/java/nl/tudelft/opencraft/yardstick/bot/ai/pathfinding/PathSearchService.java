@@ -0,0 +1,282 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.SimpleAStar;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+
+/**
+ * Runs path searches on a bounded pool of threads, separate from the pool
+ * which ticks the bots. A burst of searches therefore queues up here instead
+ * of delaying bot ticks.
+ * <p>
+ * Searches are started in order of {@link Priority}, so path repairs and
+ * short hops do not wait behind long walks. Each search is bounded by a node
+ * expansion budget instead of a wall-clock timeout. When the queue fills up,
+ * long walks are rejected first. Found paths are shortened by the
+ * {@link PathSmoother}.
+ */
+public class PathSearchService {
+
+    private static final double[] SECONDS_BUCKETS = new double[]{
+        0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private static final Gauge QUEUE_DEPTH = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("pathfinding")
+            .name("queue_depth")
+            .help("Number of path searches waiting for a thread")
+            .register();
+    private static final Histogram WAIT_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("pathfinding")
+            .name("wait_seconds")
+            .help("Time path searches spent queued before starting")
+            .labelNames("priority")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+    private static final Histogram SEARCH_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("pathfinding")
+            .name("search_seconds")
+            .help("Time spent searching a path")
+            .labelNames("priority", "result")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+    private static final Counter SHED = Counter.build()
+            .namespace("yardstick")
+            .subsystem("pathfinding")
+            .name("shed_total")
+            .help("Path searches rejected because the queue was full")
+            .labelNames("priority")
+            .register();
+
+    private static PathSearchService instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(PathSearchService.class.getSimpleName());
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final int shortHopDistance;
+    private final int shortHopBudget;
+    private final int longWalkBudget;
+    private final boolean smoothPaths;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Creates a new service.
+     *
+     * @param config the pathfinding configuration, see reference.conf.
+     */
+    public PathSearchService(Config config) {
+        this.queueCapacity = config.getInt("queue-capacity");
+        this.shortHopDistance = config.getInt("short-hop-distance");
+        this.shortHopBudget = config.getInt("short-hop-budget");
+        this.longWalkBudget = config.getInt("long-walk-budget");
+        this.smoothPaths = config.getBoolean("smooth-paths");
+
+        this.executor = ThreadPools.getInstance().get(ThreadPools.PATHFINDING,
+                new PriorityBlockingQueue<>(queueCapacity),
+                Runtime.getRuntime().availableProcessors() / 2);
+        logger.info(String.format("Started with %d threads and a queue of %d searches",
+                executor.getCorePoolSize(), queueCapacity));
+    }
+
+    /**
+     * Sets up the service used by all bots on this node.
+     *
+     * @param config the pathfinding configuration.
+     * @return the service.
+     * @throws IllegalStateException if the service has already been set up.
+     */
+    public static synchronized PathSearchService setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup path search service twice");
+        }
+        instance = new PathSearchService(config);
+        return instance;
+    }
+
+    /**
+     * Returns the service used by all bots on this node. If the service has not
+     * been set up, it is set up using the default configuration.
+     *
+     * @return the service.
+     */
+    public static synchronized PathSearchService getInstance() {
+        if (instance == null) {
+            instance = new PathSearchService(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.pathfinding"));
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a search for a path from start to end. The priority and budget of
+     * the search are derived from the distance between start and end.
+     *
+     * @param finder the path finder of the bot.
+     * @param start  the start location.
+     * @param end    the destination.
+     * @return the future path. Fails with a {@link SearchBudgetExceededException}
+     * if the search ran out of budget, or with a
+     * {@link RejectedExecutionException} if the search was shed.
+     */
+    public Future<PathNode> submit(SimpleAStar finder, Vector3i start, Vector3i end) {
+        Priority priority = start.distanceSquared(end) <= shortHopDistance * shortHopDistance
+                ? Priority.SHORT
+                : Priority.LONG;
+        return submit(finder, start, end, priority);
+    }
+
+    /**
+     * Queues a search for a path from start to end with the given priority.
+     *
+     * @param finder   the path finder of the bot.
+     * @param start    the start location.
+     * @param end      the destination.
+     * @param priority the priority of the search.
+     * @return the future path.
+     * @see #submit(SimpleAStar, Vector3i, Vector3i)
+     */
+    public Future<PathNode> submit(SimpleAStar finder, Vector3i start, Vector3i end, Priority priority) {
+        int budget = priority == Priority.LONG ? longWalkBudget : shortHopBudget;
+        SearchTask task = new SearchTask(finder, start, end, priority, new SearchBudget(budget));
+
+        int queued = executor.getQueue().size();
+        if (queued >= admissionLimit(priority) || executor.isShutdown()) {
+            SHED.labels(priority.label).inc();
+            task.reject(new RejectedExecutionException(String.format(
+                    "Path search from %s to %s shed, %d searches queued", start, end, queued)));
+            return task;
+        }
+
+        executor.execute(task);
+        QUEUE_DEPTH.set(executor.getQueue().size());
+        return task;
+    }
+
+    /**
+     * Long walks are only admitted while the queue is at most half full, so
+     * the remaining capacity is kept for short hops.
+     */
+    private int admissionLimit(Priority priority) {
+        return priority == Priority.LONG ? queueCapacity / 2 : queueCapacity;
+    }
+
+    /**
+     * Stops the service. Queued searches are not started.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Represents the priority class of a path search. Classes are started in
+     * declaration order.
+     */
+    public enum Priority {
+        REPAIR("repair"),
+        SHORT("short"),
+        LONG("long");
+
+        private final String label;
+
+        Priority(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private class SearchTask extends FutureTask<PathNode> implements Comparable<SearchTask> {
+
+        private final Priority priority;
+        private final SearchBudget budget;
+        private final long submitNanos = System.nanoTime();
+        private final long order = sequence.getAndIncrement();
+
+        SearchTask(SimpleAStar finder, Vector3i start, Vector3i end, Priority priority, SearchBudget budget) {
+            super(() -> {
+                long startNanos = System.nanoTime();
+                String result = "found";
+                try {
+                    PathNode path = finder.search(start, end, budget);
+                    if (path == null && budget.isExhausted()) {
+                        result = "budget_exceeded";
+                        throw new SearchBudgetExceededException(start, end, budget.getExpansions());
+                    } else if (path == null) {
+                        result = budget.isCancelled() ? "cancelled" : "not_found";
+                    } else if (smoothPaths) {
+                        path = PathSmoother.smooth(finder.getWorldPhysics(), path);
+                    }
+                    return path;
+                } catch (Exception e) {
+                    if (!(e instanceof SearchBudgetExceededException)) {
+                        result = "error";
+                    }
+                    throw e;
+                } finally {
+                    SEARCH_TIME.labels(priority.label, result).observe((System.nanoTime() - startNanos) / 1e9);
+                }
+            });
+            this.priority = priority;
+            this.budget = budget;
+        }
+
+        @Override
+        public void run() {
+            QUEUE_DEPTH.set(executor.getQueue().size());
+            WAIT_TIME.labels(priority.label).observe((System.nanoTime() - submitNanos) / 1e9);
+            super.run();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            budget.cancel();
+            executor.remove(this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        void reject(RejectedExecutionException e) {
+            setException(e);
+        }
+
+        @Override
+        public int compareTo(SearchTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding;
+
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.WorldPhysics;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+
+/**
+ * Shortens paths by removing the nodes a bot can skip by walking in a
+ * straight line. Only level runs are collapsed, so jumps and falls keep their
+ * nodes.
+ */
+public final class PathSmoother {
+
+    /**
+     * Maximum length of a straight segment, in blocks. Keeps waypoints close
+     * enough together for the walk executor to detect a bot straying.
+     */
+    private static final int MAX_SEGMENT_LENGTH = 16;
+
+    private PathSmoother() {
+    }
+
+    /**
+     * Removes the nodes of the given path which lie on a walkable straight
+     * line between two other nodes at the same height.
+     *
+     * @param physics the physics of the world the path is in.
+     * @param path    the first node of the path.
+     * @return the first node of the smoothed path.
+     * @throws ChunkNotLoadedException if a line crosses an unloaded chunk.
+     */
+    public static PathNode smooth(WorldPhysics physics, PathNode path) throws ChunkNotLoadedException {
+        PathNode anchor = path;
+        while (anchor != null && anchor.getNext() != null) {
+            Vector3i from = anchor.getLocation();
+            PathNode furthest = anchor.getNext();
+            PathNode candidate = furthest.getNext();
+            while (candidate != null
+                    && furthest.getLocation().getY() == from.getY()
+                    && candidate.getLocation().getY() == from.getY()
+                    && candidate.getLocation().distanceSquared(from) <= MAX_SEGMENT_LENGTH * MAX_SEGMENT_LENGTH
+                    && canWalkStraight(physics, from, candidate.getLocation())) {
+                furthest = candidate;
+                candidate = candidate.getNext();
+            }
+
+            if (furthest != anchor.getNext()) {
+                anchor.setNext(furthest);
+                furthest.setPrevious(anchor);
+            }
+            anchor = furthest;
+        }
+        return path;
+    }
+
+    /**
+     * Determines if a bot can walk in a straight line from one location to
+     * another. Adjacent locations are checked directly. Other locations must
+     * be at the same height, and every block the line crosses must be
+     * walkable from the one before it.
+     *
+     * @param physics the physics of the world.
+     * @param from    the origin.
+     * @param to      the destination.
+     * @return true if the bot can walk the line.
+     * @throws ChunkNotLoadedException if the line crosses an unloaded chunk.
+     */
+    public static boolean canWalkStraight(WorldPhysics physics, Vector3i from, Vector3i to) throws ChunkNotLoadedException {
+        int dx = to.getX() - from.getX(), dy = to.getY() - from.getY(), dz = to.getZ() - from.getZ();
+        if (Math.abs(dx) <= 1 && Math.abs(dy) <= 1 && Math.abs(dz) <= 1) {
+            return physics.canWalk(from, to);
+        }
+        if (dy != 0) {
+            return false;
+        }
+
+        // Visit the blocks crossed by the line between the block centres, in order
+        int stepX = Integer.signum(dx), stepZ = Integer.signum(dz);
+        int lengthX = Math.abs(dx), lengthZ = Math.abs(dz);
+        int x = from.getX(), z = from.getZ();
+        Vector3i current = from;
+        for (int ix = 0, iz = 0; ix < lengthX || iz < lengthZ; ) {
+            // Compare where the line crosses the next x and z block borders
+            long crossX = (1 + 2L * ix) * lengthZ;
+            long crossZ = (1 + 2L * iz) * lengthX;
+            if (crossX == crossZ) {
+                ix++;
+                iz++;
+                x += stepX;
+                z += stepZ;
+            } else if (crossX < crossZ) {
+                ix++;
+                x += stepX;
+            } else {
+                iz++;
+                z += stepZ;
+            }
+
+            Vector3i next = new Vector3i(x, from.getY(), z);
+            if (!physics.canWalk(current, next)) {
+                return false;
+            }
+            current = next;
+        }
+        return true;
+    }
+}
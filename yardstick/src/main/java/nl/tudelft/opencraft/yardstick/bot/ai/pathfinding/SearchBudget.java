@@ -0,0 +1,102 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding;
+
+/**
+ * Represents the amount of work a single path search may perform, expressed as
+ * a number of node expansions. A budget can also be cancelled, which makes the
+ * search stop at its next expansion.
+ */
+public class SearchBudget {
+
+    private final int maxExpansions;
+    private int expansions = 0;
+    private boolean exhausted = false;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a new budget.
+     *
+     * @param maxExpansions the maximum number of nodes the search may expand.
+     */
+    public SearchBudget(int maxExpansions) {
+        if (maxExpansions < 1) {
+            throw new IllegalArgumentException("Budget must allow at least one expansion, got " + maxExpansions);
+        }
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Returns a budget which never runs out.
+     *
+     * @return the budget.
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Claims one node expansion from this budget. Should be called by the
+     * search before expanding a node.
+     *
+     * @return true if the search may expand the node; false if the budget is
+     * spent or the search was cancelled.
+     */
+    public boolean tryExpand() {
+        if (cancelled) {
+            return false;
+        }
+        if (expansions >= maxExpansions) {
+            exhausted = true;
+            return false;
+        }
+        expansions++;
+        return true;
+    }
+
+    /**
+     * Cancels the search using this budget. Safe to call from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns true if the search stopped because it was refused an expansion
+     * after using up all expansions. A search which ran out of nodes on its
+     * last allowed expansion did not exhaust its budget.
+     *
+     * @return true if exhausted.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    public int getExpansions() {
+        return expansions;
+    }
+
+    public int getMaxExpansions() {
+        return maxExpansions;
+    }
+}
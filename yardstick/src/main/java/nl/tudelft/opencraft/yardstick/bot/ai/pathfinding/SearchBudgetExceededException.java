@@ -0,0 +1,32 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding;
+
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+
+/**
+ * Thrown when a path search expands all nodes its {@link SearchBudget} allows
+ * without reaching the destination.
+ */
+public class SearchBudgetExceededException extends Exception {
+
+    public SearchBudgetExceededException(Vector3i start, Vector3i end, int expansions) {
+        super("Path search from " + start + " to " + end + " exceeded its budget of " + expansions + " expansions");
+    }
+}
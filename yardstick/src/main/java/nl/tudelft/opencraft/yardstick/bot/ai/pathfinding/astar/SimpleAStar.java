@@ -26,15 +26,26 @@ import java.util.PriorityQueue;
 import java.util.Set;
 import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.BlockPathNode;
 import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.PathNode;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.SearchBudget;
 import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.heuristic.Heuristic;
 import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
 import nl.tudelft.opencraft.yardstick.bot.world.WorldPhysics;
+import nl.tudelft.opencraft.yardstick.jfr.JfrEvents;
+import nl.tudelft.opencraft.yardstick.jfr.PathSearchEvent;
 import nl.tudelft.opencraft.yardstick.util.Vector3i;
 
 public class SimpleAStar {
 
+    /**
+     * Costs of a step along one axis and of a diagonal step. Costs are scaled
+     * by ten to keep them integral. Heuristics estimate in units of a straight
+     * step.
+     */
+    public static final int STRAIGHT_COST = 10, DIAGONAL_COST = 14;
+
     private final Heuristic heuristic;
     private final WorldPhysics worldPhysics;
+    private final JfrEvents jfr = JfrEvents.getInstance();
 
     public SimpleAStar(Heuristic heuristic, WorldPhysics physics) {
         this.heuristic = heuristic;
@@ -42,11 +53,57 @@ public class SimpleAStar {
     }
 
     public PathNode search(Vector3i start, Vector3i end) throws ChunkNotLoadedException {
+        return search(start, end, SearchBudget.unlimited());
+    }
+
+    /**
+     * Searches a path from start to end, expanding at most as many nodes as
+     * the given budget allows.
+     *
+     * @param start  the start location.
+     * @param end    the destination.
+     * @param budget the budget of the search.
+     * @return the first node of the path, or null if no path was found. Check
+     * the budget to see whether the search was refused an expansion or was
+     * cancelled.
+     * @throws ChunkNotLoadedException if the search reached an unloaded chunk.
+     */
+    public PathNode search(Vector3i start, Vector3i end, SearchBudget budget) throws ChunkNotLoadedException {
+        if (!jfr.isPathSearchEnabled()) {
+            return doSearch(start, end, budget);
+        }
+        PathSearchEvent event = new PathSearchEvent();
+        event.begin();
+        String result = "CHUNK_NOT_LOADED";
+        try {
+            PathNode path = doSearch(start, end, budget);
+            if (path != null) {
+                result = "FOUND";
+            } else if (budget.isCancelled()) {
+                result = "CANCELLED";
+            } else if (budget.isExhausted()) {
+                result = "BUDGET_EXCEEDED";
+            } else {
+                result = "NOT_FOUND";
+            }
+            return path;
+        } finally {
+            if (event.shouldCommit()) {
+                event.start = start.toString();
+                event.end = end.toString();
+                event.expansions = budget.getExpansions();
+                event.result = result;
+                event.commit();
+            }
+        }
+    }
+
+    private PathNode doSearch(Vector3i start, Vector3i end, SearchBudget budget) throws ChunkNotLoadedException {
         Map<Vector3i, PathNode> nodeMap = new HashMap<>();
         Set<PathNode> visited = new HashSet<>();
 
         PriorityQueue<PathNode> toVisit = new PriorityQueue<>(Comparator.comparingDouble(thisNode
-                -> thisNode.getCost() + heuristic.calculateCost(thisNode.getLocation().doubleVector(), end.doubleVector())
+                -> thisNode.getCost() + STRAIGHT_COST * heuristic.calculateCost(thisNode.getLocation().doubleVector(), end.doubleVector())
         ));
 
         PathNode startNode = new PathNode(start);
@@ -54,43 +111,32 @@ public class SimpleAStar {
         nodeMap.put(start, startNode);
         toVisit.add(startNode);
 
-        while (!toVisit.isEmpty() && !Thread.interrupted()) {
+        while (!toVisit.isEmpty() && !Thread.interrupted() && budget.tryExpand()) {
             PathNode current = toVisit.poll();
             visited.add(current);
 
-            if (current.getLocation().distanceSquared(end) <= 1 && worldPhysics.canWalk(current.getLocation(), end)) {
+            if (current.getLocation().distanceSquared(end) <= 2 && worldPhysics.canWalk(current.getLocation(), end)) {
                 PathNode endNode = new PathNode(end, current, null);
                 return buildPath(endNode);
             }
 
-            Set<PathNode> neigborNodes = new HashSet<>();
             for (Vector3i vec : worldPhysics.findWalkable(current.getLocation())) {
                 if (vec == null) {
                     continue;
                 }
 
-                // Discover neighbour
-                if (nodeMap.containsKey(vec)) {
-                    neigborNodes.add(nodeMap.get(vec));
-                } else {
-                    BlockPathNode node = new BlockPathNode(vec);
-                    node.setCost(current.getCost() + 1);
-                    node.setPrevious(current);
-                    neigborNodes.add(node);
-                    nodeMap.put(vec, node);
-                }
-            }
-
-            for (PathNode neighbor : neigborNodes) {
-                if (visited.contains(neighbor)) {
-                    continue;
-                }
-
-                if (!toVisit.contains(neighbor)) {
+                int cost = current.getCost() + stepCost(current.getLocation(), vec);
+                PathNode neighbor = nodeMap.get(vec);
+                if (neighbor == null) {
+                    // Discover neighbour
+                    neighbor = new BlockPathNode(vec);
+                    neighbor.setCost(cost);
+                    neighbor.setPrevious(current);
+                    nodeMap.put(vec, neighbor);
                     toVisit.add(neighbor);
-                } else if (toVisit.contains(neighbor) && neighbor.getCost() > current.getCost() + 1) {
+                } else if (!visited.contains(neighbor) && neighbor.getCost() > cost) {
                     toVisit.remove(neighbor);
-                    neighbor.setCost(current.getCost() + 1);
+                    neighbor.setCost(cost);
                     neighbor.setPrevious(current);
                     toVisit.add(neighbor);
                 }
@@ -99,6 +145,10 @@ public class SimpleAStar {
         return null;
     }
 
+    private static int stepCost(Vector3i from, Vector3i to) {
+        return from.getX() != to.getX() && from.getZ() != to.getZ() ? DIAGONAL_COST : STRAIGHT_COST;
+    }
+
     private PathNode buildPath(PathNode end) {
         PathNode pointer = end;
         while (pointer.getPrevious() != null) {
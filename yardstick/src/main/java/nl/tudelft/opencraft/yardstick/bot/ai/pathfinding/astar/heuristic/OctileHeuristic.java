@@ -0,0 +1,43 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.heuristic;
+
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.SimpleAStar;
+import nl.tudelft.opencraft.yardstick.util.Vector3d;
+
+/**
+ * Estimates the cost of a path which may move diagonally on the horizontal
+ * plane, and up or down one block with every step. Diagonal steps are
+ * estimated at the cost the {@link SimpleAStar} charges for them, so the
+ * estimate never exceeds the cost of the path.
+ */
+public class OctileHeuristic implements Heuristic {
+
+    private static final double DIAGONAL_EXTRA
+            = (SimpleAStar.DIAGONAL_COST - SimpleAStar.STRAIGHT_COST) / (double) SimpleAStar.STRAIGHT_COST;
+
+    @Override
+    public double calculateCost(Vector3d from, Vector3d to) {
+        double dx = Math.abs(from.getX() - to.getX());
+        double dy = Math.abs(from.getY() - to.getY());
+        double dz = Math.abs(from.getZ() - to.getZ());
+        // A step may change the height as well, so climbing only adds steps when it outlasts the horizontal moves
+        return Math.max(Math.max(dx, dz) + DIAGONAL_EXTRA * Math.min(dx, dz), dy);
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.flowfield;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import nl.tudelft.opencraft.yardstick.bot.world.BlockChangeListener;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.World;
+import nl.tudelft.opencraft.yardstick.bot.world.WorldPhysics;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+
+/**
+ * Represents the cheapest way to a single destination from every walkable
+ * block around it.
+ * <p>
+ * The field is built once with a backwards Dijkstra search from the
+ * destination over the loaded chunks of a world, and stores for every block
+ * the cost to the destination and the next block to walk to. Any number of
+ * bots can then follow the field with a single lookup per step.
+ * <p>
+ * Block changes are queued as they arrive and applied in batches by
+ * {@link #update()}. Only the blocks whose way to the destination led through
+ * a changed block are recomputed, together with the blocks a change made
+ * cheaper to reach.
+ */
+public class FlowField implements BlockChangeListener {
+
+    private static final int STRAIGHT_COST = 10, DIAGONAL_COST = 14;
+
+    private final World world;
+    private final WorldPhysics physics;
+    private final Vector3i destination;
+    private final int radius;
+    private final int maxCells;
+
+    private final Map<Vector3i, Cell> cells = new ConcurrentHashMap<>();
+    private final Queue<Vector3i> changes = new ConcurrentLinkedQueue<>();
+    private volatile boolean ready = false;
+
+    /**
+     * Creates a new, empty field. Call {@link #build()} to fill it.
+     *
+     * @param world       the world to navigate.
+     * @param destination the block to navigate to.
+     * @param radius      the maximum horizontal distance of a block to the
+     *                    destination.
+     * @param maxCells    the maximum number of blocks in the field.
+     */
+    public FlowField(World world, Vector3i destination, int radius, int maxCells) {
+        this.world = world;
+        this.physics = world.getPhysics();
+        this.destination = destination;
+        this.radius = radius;
+        this.maxCells = maxCells;
+    }
+
+    /**
+     * Computes the field and starts listening for block changes.
+     */
+    public void build() {
+        world.addBlockChangeListener(this);
+        PriorityQueue<Open> open = new PriorityQueue<>();
+        cells.put(destination, new Cell(0, null));
+        open.add(new Open(destination, 0));
+        expand(open);
+        ready = true;
+    }
+
+    /**
+     * Applies the block changes received since the previous update.
+     *
+     * @return true if there were changes to apply.
+     */
+    public boolean update() {
+        Set<Vector3i> affected = new HashSet<>();
+        Vector3i change;
+        while ((change = changes.poll()) != null) {
+            // A block is part of the moves from the blocks around it, from the blocks
+            // whose head or floor it is, and from the blocks it is the support below
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -2; dy <= 3; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        affected.add(change.add(new Vector3i(dx, dy, dz)));
+                    }
+                }
+            }
+        }
+        if (affected.isEmpty()) {
+            return false;
+        }
+
+        // Raise: forget every block whose way to the destination leads through an affected block
+        Map<Vector3i, Boolean> invalid = new HashMap<>();
+        for (Vector3i location : affected) {
+            if (cells.containsKey(location)) {
+                invalid.put(location, true);
+            }
+        }
+        List<Vector3i> chain = new ArrayList<>();
+        for (Map.Entry<Vector3i, Cell> entry : cells.entrySet()) {
+            Vector3i location = entry.getKey();
+            Cell cell = entry.getValue();
+            chain.clear();
+            while (location != null && !invalid.containsKey(location)) {
+                chain.add(location);
+                location = cell.next;
+                cell = location == null ? null : cells.get(location);
+                if (location != null && cell == null) {
+                    break;
+                }
+            }
+            boolean through = location != null && invalid.getOrDefault(location, true);
+            for (Vector3i visited : chain) {
+                invalid.put(visited, through);
+            }
+        }
+
+        Set<Vector3i> reseed = new HashSet<>(affected);
+        for (Map.Entry<Vector3i, Boolean> entry : invalid.entrySet()) {
+            if (entry.getValue()) {
+                cells.remove(entry.getKey());
+                reseed.add(entry.getKey());
+            }
+        }
+
+        // Lower: recompute the forgotten and affected blocks from their neighbours,
+        // and spread any cheaper costs from there
+        PriorityQueue<Open> open = new PriorityQueue<>();
+        if (!cells.containsKey(destination)) {
+            cells.put(destination, new Cell(0, null));
+            open.add(new Open(destination, 0));
+        }
+        for (Vector3i location : reseed) {
+            if (!inBounds(location) || location.equals(destination)) {
+                continue;
+            }
+            Cell best = cells.get(location);
+            for (Vector3i neighbour : physics.findAdjacent(location)) {
+                Cell next = cells.get(neighbour);
+                if (next == null || !canMove(location, neighbour)) {
+                    continue;
+                }
+                int cost = next.cost + stepCost(location, neighbour);
+                if (best == null || cost < best.cost) {
+                    best = new Cell(cost, neighbour);
+                }
+            }
+            if (best != null) {
+                cells.put(location, best);
+                open.add(new Open(location, best.cost));
+            }
+        }
+        expand(open);
+        return true;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm backwards from the queued blocks, over the
+     * moves which lead into them.
+     */
+    private void expand(PriorityQueue<Open> open) {
+        while (!open.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            Open current = open.poll();
+            Cell cell = cells.get(current.location);
+            if (cell == null || cell.cost < current.cost) {
+                // Outdated entry
+                continue;
+            }
+
+            for (Vector3i neighbour : physics.findAdjacent(current.location)) {
+                if (!inBounds(neighbour) || !canMove(neighbour, current.location)) {
+                    continue;
+                }
+                int cost = current.cost + stepCost(neighbour, current.location);
+                Cell existing = cells.get(neighbour);
+                if (existing == null && cells.size() >= maxCells) {
+                    continue;
+                }
+                if (existing == null || cost < existing.cost) {
+                    cells.put(neighbour, new Cell(cost, current.location));
+                    open.add(new Open(neighbour, cost));
+                }
+            }
+        }
+    }
+
+    private boolean canMove(Vector3i from, Vector3i to) {
+        try {
+            return physics.canWalk(from, to);
+        } catch (IllegalArgumentException | ChunkNotLoadedException e) {
+            // Not a block a bot can stand in, or not known
+            return false;
+        }
+    }
+
+    private boolean inBounds(Vector3i location) {
+        return location.getY() > 0 && location.getY() < 256
+                && Math.abs(location.getX() - destination.getX()) <= radius
+                && Math.abs(location.getZ() - destination.getZ()) <= radius;
+    }
+
+    private static int stepCost(Vector3i from, Vector3i to) {
+        return from.getX() != to.getX() && from.getZ() != to.getZ() ? DIAGONAL_COST : STRAIGHT_COST;
+    }
+
+    @Override
+    public void onBlockChange(int x, int y, int z) {
+        if (Math.abs(x - destination.getX()) <= radius + 1 && Math.abs(z - destination.getZ()) <= radius + 1) {
+            changes.add(new Vector3i(x, y, z));
+        }
+    }
+
+    /**
+     * @return true if there are block changes which have not been applied.
+     */
+    public boolean hasChanges() {
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Stops listening for block changes.
+     */
+    public void close() {
+        world.removeBlockChangeListener(this);
+    }
+
+    /**
+     * Returns the block to walk to from the given block.
+     *
+     * @param location the block the bot stands in.
+     * @return the next block, or null if the block is the destination or is
+     * not covered by the field.
+     */
+    public Vector3i getNext(Vector3i location) {
+        Cell cell = cells.get(location);
+        return cell == null ? null : cell.next;
+    }
+
+    /**
+     * @return true if the given block has a way to the destination.
+     */
+    public boolean covers(Vector3i location) {
+        return cells.containsKey(location);
+    }
+
+    /**
+     * @return true once the field has been built.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Vector3i getDestination() {
+        return destination;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * @return the number of blocks in the field.
+     */
+    public int size() {
+        return cells.size();
+    }
+
+    private static class Cell {
+
+        private final int cost;
+        private final Vector3i next;
+
+        Cell(int cost, Vector3i next) {
+            this.cost = cost;
+            this.next = next;
+        }
+    }
+
+    private static class Open implements Comparable<Open> {
+
+        private final Vector3i location;
+        private final int cost;
+
+        Open(Vector3i location, int cost) {
+            this.location = location;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Open other) {
+            return Integer.compare(cost, other.cost);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.flowfield;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import nl.tudelft.opencraft.yardstick.bot.Bot;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+
+/**
+ * Keeps one {@link FlowField} per destination region, shared by all bots on
+ * this node. Fields are built and updated on the flow-field pool of
+ * {@link ThreadPools}.
+ * <p>
+ * A field is built over the world of the first bot that asks for it. If that
+ * bot disconnects, its world no longer receives block changes, and the field
+ * is rebuilt over the world of the next bot that asks for it.
+ */
+public class FlowFieldService {
+
+    private static final double[] SECONDS_BUCKETS = new double[]{
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    private static final Gauge FIELDS = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("flowfield")
+            .name("fields")
+            .help("Number of flow fields kept on this node")
+            .register();
+    private static final Gauge CELLS = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("flowfield")
+            .name("cells")
+            .help("Number of blocks covered by all flow fields")
+            .register();
+    private static final Histogram BUILD_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("flowfield")
+            .name("build_seconds")
+            .help("Time spent building a flow field")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+    private static final Histogram UPDATE_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("flowfield")
+            .name("update_seconds")
+            .help("Time spent applying a batch of block changes to a flow field")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+
+    private static FlowFieldService instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(FlowFieldService.class.getSimpleName());
+    private final ScheduledExecutorService executor;
+    private final ScheduledFuture<?> updates;
+    private final Map<Vector3i, RegionField> fields = new ConcurrentHashMap<>();
+    private final int regionSize;
+    private final int radius;
+    private final int maxCells;
+
+    /**
+     * Creates a new service.
+     *
+     * @param config the flow field configuration, see reference.conf.
+     */
+    public FlowFieldService(Config config) {
+        this.regionSize = config.getInt("region-size");
+        this.radius = config.getInt("radius");
+        this.maxCells = config.getInt("max-cells");
+
+        this.executor = ThreadPools.getInstance().getScheduled(ThreadPools.FLOW_FIELD);
+        long interval = config.getDuration("update-interval", TimeUnit.MILLISECONDS);
+        this.updates = executor.scheduleWithFixedDelay(this::updateFields, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets up the service used by all bots on this node.
+     *
+     * @param config the flow field configuration.
+     * @return the service.
+     * @throws IllegalStateException if the service has already been set up.
+     */
+    public static synchronized FlowFieldService setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup flow field service twice");
+        }
+        instance = new FlowFieldService(config);
+        return instance;
+    }
+
+    /**
+     * Returns the service used by all bots on this node. If the service has not
+     * been set up, it is set up using the default configuration.
+     *
+     * @return the service.
+     */
+    public static synchronized FlowFieldService getInstance() {
+        if (instance == null) {
+            instance = new FlowFieldService(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.pathfinding.flow-field"));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the field leading to the region of the given destination. If
+     * there is no such field yet, it is built in the background over the world
+     * of the given bot. Check {@link FlowField#isReady()} before following it.
+     *
+     * @param bot         the bot asking for the field.
+     * @param destination the destination of the bot.
+     * @return the field. Its destination may differ from the given
+     * destination, but lies in the same region.
+     */
+    public FlowField getField(Bot bot, Vector3i destination) {
+        Vector3i region = new Vector3i(
+                Math.floorDiv(destination.getX(), regionSize),
+                Math.floorDiv(destination.getY(), regionSize),
+                Math.floorDiv(destination.getZ(), regionSize));
+
+        return fields.compute(region, (key, existing) -> {
+            if (existing != null && !existing.source.hasBeenDisconnected()) {
+                return existing;
+            }
+            if (existing != null) {
+                existing.field.close();
+            }
+            FlowField field = new FlowField(bot.getWorld(), destination, radius, maxCells);
+            executor.execute(() -> build(field));
+            return new RegionField(bot, field);
+        }).field;
+    }
+
+    private void build(FlowField field) {
+        if (updates.isCancelled()) {
+            // Shut down while queued; building would register the field with the world again
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            field.build();
+        } catch (RuntimeException e) {
+            logger.warning(String.format("Could not build flow field to %s: %s", field.getDestination(), e));
+            return;
+        }
+        BUILD_TIME.observe((System.nanoTime() - start) / 1e9);
+        logger.info(String.format("Built flow field to %s covering %d blocks in %d ms",
+                field.getDestination(), field.size(), (System.nanoTime() - start) / 1_000_000));
+        updateGauges();
+    }
+
+    private void updateFields() {
+        try {
+            for (RegionField regionField : fields.values()) {
+                FlowField field = regionField.field;
+                if (!field.isReady() || !field.hasChanges()) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                field.update();
+                UPDATE_TIME.observe((System.nanoTime() - start) / 1e9);
+            }
+            updateGauges();
+        } catch (RuntimeException e) {
+            // Keep the periodic update scheduled
+            logger.warning("Could not update flow fields: " + e);
+        }
+    }
+
+    private void updateGauges() {
+        FIELDS.set(fields.size());
+        CELLS.set(fields.values().stream().mapToInt(f -> f.field.size()).sum());
+    }
+
+    /**
+     * Stops the service. Fields are no longer updated.
+     */
+    public void shutdown() {
+        updates.cancel(false);
+        for (RegionField regionField : fields.values()) {
+            regionField.field.close();
+        }
+    }
+
+    private static class RegionField {
+
+        private final Bot source;
+        private final FlowField field;
+
+        RegionField(Bot source, FlowField field) {
+            this.source = source;
+            this.field = field;
+        }
+    }
+}
@@ -20,6 +20,8 @@ package nl.tudelft.opencraft.yardstick.bot.ai.task;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import nl.tudelft.opencraft.yardstick.bot.Bot;
+import nl.tudelft.opencraft.yardstick.jfr.JfrEvents;
+import nl.tudelft.opencraft.yardstick.jfr.TaskTransitionEvent;
 import nl.tudelft.opencraft.yardstick.logging.SubLogger;
 
 public abstract class AbstractTaskExecutor implements TaskExecutor {
@@ -29,6 +31,8 @@ public abstract class AbstractTaskExecutor implements TaskExecutor {
     protected final String shortName;
     @JsonIgnore
     protected final SubLogger logger;
+    @JsonIgnore
+    private final JfrEvents jfr = JfrEvents.getInstance();
     protected TaskStatus lastStatus;
 
     public AbstractTaskExecutor(Bot bot) {
@@ -44,7 +48,24 @@ public abstract class AbstractTaskExecutor implements TaskExecutor {
 
     @Override
     public final TaskStatus tick() {
-        return this.lastStatus = onTick();
+        TaskStatus previous = this.lastStatus;
+        this.lastStatus = onTick();
+        if (jfr.isTaskEnabled() && (previous == null || previous.getType() != lastStatus.getType())) {
+            reportTransition(previous, lastStatus);
+        }
+        return lastStatus;
+    }
+
+    private void reportTransition(TaskStatus from, TaskStatus to) {
+        TaskTransitionEvent event = new TaskTransitionEvent();
+        if (event.shouldCommit()) {
+            event.bot = bot.getName();
+            event.task = shortName;
+            event.from = from == null ? "NEW" : from.getType().name();
+            event.to = to.getType().name();
+            event.message = to.getMessage();
+            event.commit();
+        }
     }
 
     @Override
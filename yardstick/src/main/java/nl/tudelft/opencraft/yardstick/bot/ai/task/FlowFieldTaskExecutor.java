@@ -0,0 +1,122 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.ai.task;
+
+import nl.tudelft.opencraft.yardstick.bot.Bot;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.flowfield.FlowField;
+import nl.tudelft.opencraft.yardstick.util.Vector3d;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+
+/**
+ * Walks the bot towards the destination of a {@link FlowField}, looking up
+ * the next block to walk to at every step instead of searching a path.
+ */
+public class FlowFieldTaskExecutor extends AbstractTaskExecutor {
+
+    private static final int MAX_TICKS_PER_STEP = 80;
+    private static final int MAX_TICKS_WITHOUT_STEP = 40;
+
+    private final FlowField field;
+    private final int arrivalDistance;
+
+    private Vector3i step;
+    private int ticksOnStep = 0;
+    private int ticksWithoutStep = 0;
+
+    /**
+     * Creates a new executor.
+     *
+     * @param bot             the bot.
+     * @param field           the field to follow.
+     * @param arrivalDistance the horizontal distance to the destination at
+     *                        which the bot has arrived.
+     */
+    public FlowFieldTaskExecutor(Bot bot, FlowField field, int arrivalDistance) {
+        super(bot);
+        this.field = field;
+        this.arrivalDistance = arrivalDistance;
+    }
+
+    @Override
+    protected TaskStatus onTick() {
+        Vector3d location = bot.getPlayer().getLocation();
+
+        if (step == null) {
+            Vector3i block = location.intVector();
+            Vector3i destination = field.getDestination();
+            if (Math.abs(block.getX() - destination.getX()) <= arrivalDistance
+                    && Math.abs(block.getZ() - destination.getZ()) <= arrivalDistance
+                    && Math.abs(block.getY() - destination.getY()) <= 1) {
+                return TaskStatus.forSuccess();
+            }
+
+            step = field.getNext(block);
+            if (step == null) {
+                // The block is not covered by the field, or is being updated
+                if (++ticksWithoutStep > MAX_TICKS_WITHOUT_STEP) {
+                    return TaskStatus.forFailure(String.format("No flow towards %s from %s", destination, block));
+                }
+                return TaskStatus.forInProgress();
+            }
+            ticksWithoutStep = 0;
+            ticksOnStep = 0;
+        }
+
+        if (++ticksOnStep > MAX_TICKS_PER_STEP) {
+            return TaskStatus.forFailure(String.format("Stalled on step %s -> %s", location, step));
+        }
+
+        // Stand on the center of a block
+        Vector3d target = step.doubleVector().add(0.5, 0, 0.5);
+        double speed = WalkTaskExecutor.getDefaultSpeed();
+
+        double y = location.getY();
+        if (y < target.getY()) {
+            y = Math.min(target.getY(), y + speed * WalkTaskExecutor.getDefaultJumpFactor());
+        } else if (y > target.getY()) {
+            y = Math.max(target.getY(), y - speed * WalkTaskExecutor.getDefaultFallFactor());
+        }
+
+        double offsetX = target.getX() - location.getX(), offsetZ = target.getZ() - location.getZ();
+        double distanceXZ = Math.sqrt(offsetX * offsetX + offsetZ * offsetZ);
+        Vector3d next;
+        if (distanceXZ <= speed) {
+            next = new Vector3d(target.getX(), y, target.getZ());
+        } else {
+            double scale = speed / distanceXZ;
+            next = new Vector3d(location.getX() + offsetX * scale, y, location.getZ() + offsetZ * scale);
+        }
+
+        bot.getController().updateLocation(next);
+
+        if (next.equals(target)) {
+            step = null;
+        }
+        return TaskStatus.forInProgress();
+    }
+
+    @Override
+    protected void onStop() {
+        step = null;
+    }
+
+    public FlowField getField() {
+        return field;
+    }
+}
@@ -1,6 +1,7 @@
 package nl.tudelft.opencraft.yardstick.bot.ai.task;
 
 import nl.tudelft.opencraft.yardstick.bot.Bot;
+import nl.tudelft.opencraft.yardstick.bot.KinematicsStore;
 import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
 import nl.tudelft.opencraft.yardstick.util.Vector3d;
 import nl.tudelft.opencraft.yardstick.util.Vector3i;
@@ -8,6 +9,9 @@ import nl.tudelft.opencraft.yardstick.util.Vector3i;
 /**
  * In order to avoid obstacles, the bot first flies to the maximum altitude,
  * then flies to the target (X, Z) coordinates, then descends to meet the Y target
+ * <p>
+ * If the {@link KinematicsStore} is enabled, this executor only picks the
+ * waypoint of each leg, and the store moves the bot.
  */
 public class FlyTaskExecutor extends AbstractTaskExecutor {
 
@@ -16,6 +20,9 @@ public class FlyTaskExecutor extends AbstractTaskExecutor {
     private final double speedXZ;
 
     private Vector3i target;
+    private final KinematicsStore store = KinematicsStore.getInstance();
+    private int slot = -1;
+    private double waypointX = Double.NaN, waypointY = Double.NaN, waypointZ = Double.NaN;
 
     public FlyTaskExecutor(final Bot bot, Vector3i targetLocation, double speed) {
         super(bot);
@@ -26,18 +33,25 @@ public class FlyTaskExecutor extends AbstractTaskExecutor {
         }
 
         speedXZ = speed;
+        if (store.isEnabled()) {
+            // Falls back to moving the bot itself if the store is full
+            slot = store.acquire(bot, bot.getPlayer().getLocation());
+        }
     }
 
     @Override
     protected TaskStatus onTick() {
         // todo: perform additional checks for flying into objects
+        if (slot >= 0) {
+            return tickBatched();
+        }
 
-        Vector3d nextLocation = bot.getPlayer().getLocation();
-        Vector3i currentLocation = nextLocation.intVector();
-        int currX = currentLocation.getX(), currZ = currentLocation.getZ();
+        Vector3d location = bot.getPlayer().getLocation();
+        double nextX = location.getX(), nextY = location.getY(), nextZ = location.getZ();
+        int currX = (int) Math.floor(nextX), currY = (int) Math.floor(nextY), currZ = (int) Math.floor(nextZ);
 
         // check we have arrived
-        if (currentLocation.equals(target)) {
+        if (currX == target.getX() && currY == target.getY() && currZ == target.getZ()) {
             return TaskStatus.forSuccess();
         }
 
@@ -50,19 +64,17 @@ public class FlyTaskExecutor extends AbstractTaskExecutor {
                     target = new Vector3i(currX, highestY, currZ);
                 }
             } catch (ChunkNotLoadedException ex) {
-                return TaskStatus.forFailure(String.format("Chunk that contains block %s not loaded", currentLocation));
+                return TaskStatus.forFailure(String.format("Chunk that contains block %s not loaded", location.intVector()));
             }
 
-            double toDescend = -Math.min(nextLocation.getY() - (double) target.getY(), speedY);
-            nextLocation = nextLocation.add(0, toDescend, 0);
-        } else if (currentLocation.getY() < maxY) {
+            nextY -= Math.min(nextY - (double) target.getY(), speedY);
+        } else if (currY < maxY) {
             // we have to ascend
-            double toAscend = Math.min((double) maxY - nextLocation.getY(), speedY);
-            nextLocation = nextLocation.add(0, toAscend, 0);
+            nextY += Math.min((double) maxY - nextY, speedY);
         } else {
             // calculate delta movement
-            double diffX = Math.abs((double) target.getX() - nextLocation.getX());
-            double diffZ = Math.abs((double) target.getZ() - nextLocation.getZ());
+            double diffX = Math.abs((double) target.getX() - nextX);
+            double diffZ = Math.abs((double) target.getZ() - nextZ);
             double moveX = Math.min(diffX, speedXZ);
             double moveZ = Math.min(diffZ, speedXZ);
 
@@ -74,17 +86,72 @@ public class FlyTaskExecutor extends AbstractTaskExecutor {
             }
 
             // account for direction
-            if (target.getX() < nextLocation.getX()) moveX *= -1;
-            if (target.getZ() < nextLocation.getZ()) moveZ *= -1;
+            if (target.getX() < nextX) moveX *= -1;
+            if (target.getZ() < nextZ) moveZ *= -1;
 
-            nextLocation = nextLocation.add(moveX, 0, moveZ);
+            nextX += moveX;
+            nextZ += moveZ;
         }
 
         // report location to server
-        bot.getController().updateLocation(nextLocation);
+        bot.getController().updateLocation(new Vector3d(nextX, nextY, nextZ));
+        return TaskStatus.forInProgress();
+    }
+
+    private TaskStatus tickBatched() {
+        Vector3d location = bot.getPlayer().getLocation();
+        int currX = (int) Math.floor(location.getX()), currY = (int) Math.floor(location.getY()), currZ = (int) Math.floor(location.getZ());
+
+        // check we have arrived
+        if (currX == target.getX() && currY == target.getY() && currZ == target.getZ()) {
+            releaseSlot();
+            return TaskStatus.forSuccess();
+        }
+
+        if (currX == target.getX() && currZ == target.getZ()) {
+            // descend
+            try {
+                int highestY = bot.getWorld().getHighestBlockAt(currX, currZ).getY();
+                if (highestY > target.getY()) {
+                    target = new Vector3i(currX, highestY, currZ);
+                }
+            } catch (ChunkNotLoadedException ex) {
+                releaseSlot();
+                return TaskStatus.forFailure(String.format("Chunk that contains block %s not loaded", location.intVector()));
+            }
+            moveTo(location.getX(), target.getY(), location.getZ(), speedY);
+        } else if (currY < maxY) {
+            // ascend
+            moveTo(location.getX(), maxY, location.getZ(), speedY);
+        } else {
+            moveTo(target.getX(), location.getY(), target.getZ(), speedXZ);
+        }
         return TaskStatus.forInProgress();
     }
 
+    /**
+     * Hands a new waypoint to the store. The store keeps moving the bot
+     * towards the current waypoint, so this only happens once per leg. The
+     * store keeps the position of the bot, which may be ahead of the location
+     * the bot has been sent so far.
+     */
+    private void moveTo(double x, double y, double z, double speed) {
+        if (x == waypointX && y == waypointY && z == waypointZ) {
+            return;
+        }
+        waypointX = x;
+        waypointY = y;
+        waypointZ = z;
+        store.moveTo(slot, x, y, z, speed);
+    }
+
+    private void releaseSlot() {
+        store.release(slot, bot);
+        slot = -1;
+    }
+
     @Override
-    protected void onStop() {}
+    protected void onStop() {
+        releaseSlot();
+    }
 }
@@ -23,6 +23,10 @@ package nl.tudelft.opencraft.yardstick.bot.ai.task;
  */
 public class TaskStatus {
 
+    // Statuses without a message of their own are shared, so ticks do not allocate them
+    private static final TaskStatus IN_PROGRESS = new TaskStatus(StatusType.IN_PROGRESS, "In progress.");
+    private static final TaskStatus SUCCESS = new TaskStatus(StatusType.SUCCESS, "Success!");
+
     private final StatusType type;
     private final String message;
     private final Throwable throwable;
@@ -85,21 +89,21 @@ public class TaskStatus {
     }
 
     /**
-     * Creates a new success status.
+     * Returns the success status.
      *
      * @return the status.
      */
     public static TaskStatus forSuccess() {
-        return new TaskStatus(StatusType.SUCCESS, "Success!");
+        return SUCCESS;
     }
 
     /**
-     * Creates a new in-progress status.
+     * Returns the in-progress status.
      *
      * @return the status.
      */
     public static TaskStatus forInProgress() {
-        return new TaskStatus(StatusType.IN_PROGRESS, "In progress.");
+        return IN_PROGRESS;
     }
 
     /**
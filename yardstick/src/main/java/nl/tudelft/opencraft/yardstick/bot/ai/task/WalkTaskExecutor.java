@@ -41,73 +41,91 @@
 
 package nl.tudelft.opencraft.yardstick.bot.ai.task;
 
+import io.prometheus.client.Counter;
 import java.text.MessageFormat;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import nl.tudelft.opencraft.yardstick.Yardstick;
 import nl.tudelft.opencraft.yardstick.bot.Bot;
 import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.PathNode;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.PathSearchService;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.PathSmoother;
 import nl.tudelft.opencraft.yardstick.bot.entity.BotPlayer;
-import nl.tudelft.opencraft.yardstick.bot.world.Block;
+import nl.tudelft.opencraft.yardstick.bot.world.BlockChangeListener;
 import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
 import nl.tudelft.opencraft.yardstick.bot.world.Material;
+import nl.tudelft.opencraft.yardstick.bot.world.World;
+import nl.tudelft.opencraft.yardstick.bot.world.WorldPhysics;
 import nl.tudelft.opencraft.yardstick.util.Vector3d;
 import nl.tudelft.opencraft.yardstick.util.Vector3i;
 
+/**
+ * Walks the bot to a target along a path found by the
+ * {@link PathSearchService}.
+ * <p>
+ * When the bot strays from its path, stalls on a step, or a block change
+ * makes the remaining path unwalkable, the executor does not fail. Instead it
+ * searches a short path from where the bot is to a node further along the
+ * path, and splices it in. The task fails only after {@link #MAX_REPAIRS}
+ * repairs, or if a repair cannot be found.
+ */
 public class WalkTaskExecutor extends AbstractTaskExecutor {
 
+    private static final int MAX_REPAIRS = 3;
+    private static final int MAX_TICKS_PER_STEP = 80;
+    private static final int REJOIN_LOOKAHEAD = 16;
+    private static final int REJOIN_SKIP = 2;
+
+    private static final Counter REPAIRS = Counter.build()
+            .namespace("yardstick")
+            .subsystem("walk")
+            .name("repairs_total")
+            .help("Number of path repairs started by walking bots")
+            .labelNames("reason")
+            .register();
+
     private static double speed = 0.15, jumpFactor = 3, fallFactor = 4, liquidFactor = 0.5;
-    private static int defaultTimeout = 6000;
 
     private final Vector3i target;
-
-    private final long startTime;
+    private final BlockChangeListener blockChangeListener = this::onBlockChange;
 
     private Future<PathNode> pathFuture;
     private PathNode nextStep;
     private int ticksSinceStepChange = 0;
-    private int timeout = defaultTimeout;
 
-    private Callable<PathNode> task = new Callable<>() {
-        @Override
-        public PathNode call() throws Exception {
-            BotPlayer player = bot.getPlayer();
-            PathNode start = bot.getPathFinder().search(player.getLocation().intVector(), target);
-            return start;
-        }
-    };
+    private World world;
+    private volatile int[] pathBounds;
+    private volatile boolean pathChanged = false;
+
+    private Future<PathNode> repairFuture;
+    private PathNode repairFrom;
+    private PathNode rejoinNode;
+    private int repairs = 0;
 
     public WalkTaskExecutor(final Bot bot, final Vector3i target) {
         super(bot);
         this.target = target;
 
-        if (bot.getPlayer().getLocation().intVector().equals(target)) {
+        Vector3i start = bot.getPlayer().getLocation().intVector();
+        if (start.equals(target)) {
             logger.warning("Useless walk task. Bot and given target location equal.");
         }
-        pathFuture = Yardstick.THREAD_POOL.submit(task);
-        startTime = System.currentTimeMillis();
+        // The search is bounded by the expansion budget of the service, not by wall-clock time
+        pathFuture = PathSearchService.getInstance().submit(bot.getPathFinder(), start, target);
     }
 
     @Override
     protected TaskStatus onTick() {
 
         if (pathFuture != null && !pathFuture.isDone()) {
-            // If we're still calculating the path:
-            // Check timeout
-            if (timeout > 0 && System.currentTimeMillis() - startTime > timeout) {
-                pathFuture.cancel(true);
-                nextStep = null;
-                return TaskStatus.forFailure(String.format("Path search from %s to %s timed out (%s ms)", bot.getPlayer().getLocation(), target, timeout));
-            } else {
-                return TaskStatus.forInProgress();
-            }
+            // If we're still calculating the path
+            return TaskStatus.forInProgress();
 
         } else if (pathFuture != null && pathFuture.isDone() && !pathFuture.isCancelled()) {
             // If we've found a path successfully
             try {
                 nextStep = pathFuture.get();
                 ticksSinceStepChange = 0;
+                startListening();
                 logger.info(MessageFormat.format("bot {0} walking towards {1}", bot.getName(), target));
             } catch (InterruptedException e) {
                 return TaskStatus.forFailure(e.getMessage(), e);
@@ -122,48 +140,73 @@ public class WalkTaskExecutor extends AbstractTaskExecutor {
             }
         }
 
+        if (repairFuture != null && repairFuture.isDone()) {
+            TaskStatus status = spliceRepair();
+            if (status != null) {
+                return status;
+            }
+        }
+
         // If we have no more steps to do, we're done
         if (nextStep == null) {
+            pathBounds = null;
             return TaskStatus.forSuccess();
         }
 
         BotPlayer player = bot.getPlayer();
 
+        if (repairFuture != null) {
+            // Keep walking the intact part of the path while the repair is searched
+            if (repairFrom == null || nextStep == repairFrom.getNext()) {
+                return TaskStatus.forInProgress();
+            }
+        } else if (pathChanged) {
+            // Revalidate the remaining path against the blocks that changed
+            pathChanged = false;
+            PathNode broken = findUnwalkableStep();
+            if (broken != null) {
+                logger.info(String.format("Path blocked at %s -> %s", broken.getLocation(), broken.getNext().getLocation()));
+                boolean fromBot = broken == nextStep || broken.getNext() == nextStep;
+                return repair("blocked", fromBot ? null : broken, advance(broken.getNext(), REJOIN_SKIP));
+            }
+        }
+
+        // The rest of the tick works on primitives, so a steady walk allocates nothing but the new location
+        Vector3d location = player.getLocation();
+        double x = location.getX(), y = location.getY(), z = location.getZ();
+
         // Skip the step if the next step is close by
-        if (nextStep.getNext() != null && player.getLocation().distanceSquared(nextStep.getNext().getLocation().doubleVector()) < 0.05) {
+        if (nextStep.getNext() != null && distanceSquared(x, y, z, nextStep.getNext().getLocation()) < 0.05) {
             nextStep = nextStep.getNext();
             ticksSinceStepChange = 0;
         }
 
-        // If the player is too far away from the next step
-        // Abort for now
-        if (player.getLocation().distanceSquared(nextStep.getLocation().doubleVector()) > 5.0) {
-            logger.info(String.format("Strayed from path. %s -> %s", player.getLocation(), nextStep.getLocation()));
-            // TODO: Fix later
-            //TaskStatus status = TaskStatus.forInProgress();
-            //pathFuture = service.submit(task);
-            return TaskStatus.forFailure("Strayed from path. %s -> %s");
-        }
+        if (repairFuture == null) {
+            // If the player is too far away from the current segment, find a way back onto the path
+            if (distanceSquaredToStep(x, y, z) > 5.0) {
+                logger.info(String.format("Strayed from path. %s -> %s", player.getLocation(), nextStep.getLocation()));
+                return repair("strayed", null, findRejoinNode(player.getLocation()));
+            }
 
-        // Keep track of how many ticks a step takes
-        // If a step takes too many ticks, abort
-        ticksSinceStepChange++;
-        if (ticksSinceStepChange > 80) {
-            nextStep = null;
-            return TaskStatus.forFailure("Too many ticks since step change");
+            // Keep track of how many ticks a step takes
+            // If a step takes too many ticks, find another way to the path
+            ticksSinceStepChange++;
+            if (ticksSinceStepChange > MAX_TICKS_PER_STEP * Math.max(1, Math.ceil(stepLength()))) {
+                logger.info(String.format("Stalled on step. %s -> %s", player.getLocation(), nextStep.getLocation()));
+                return repair("stalled", null, findRejoinNode(player.getLocation()));
+            }
         }
 
         // Get locations
-        Vector3d moveLoc = player.getLocation();
-        Vector3i blockLoc = moveLoc.intVector().add(new Vector3i(0, -1, 0));
-        Block thisBlock;
+        int blockX = (int) Math.floor(x), blockY = (int) Math.floor(y), blockZ = (int) Math.floor(z);
+        int typeBelow;
 
         try {
-            thisBlock = bot.getWorld().getBlockAt(blockLoc);
+            typeBelow = bot.getWorld().getTypeIdAt(blockX, blockY - 1, blockZ);
         } catch (ChunkNotLoadedException e) {
             // TODO: Fix: Wait until chunk is loaded.
-            logger.warning(String.format("Block under player: %s", blockLoc));
-            logger.warning(String.format("Player at %s", moveLoc));
+            logger.warning(String.format("Block under player: %s", new Vector3i(blockX, blockY - 1, blockZ)));
+            logger.warning(String.format("Player at %s", location));
             return TaskStatus.forFailure(e.getMessage());
         }
 
@@ -172,36 +215,32 @@ public class WalkTaskExecutor extends AbstractTaskExecutor {
         if (stepTargetBlock == null) {
             return TaskStatus.forFailure("No next step");
         }
-        Vector3d stepTarget = stepTargetBlock.doubleVector();
 
         // Stand on the center of a block
-        stepTarget = stepTarget.add(0.5, 0, 0.5);
+        double stepX = stepTargetBlock.getX() + 0.5, stepY = stepTargetBlock.getY(), stepZ = stepTargetBlock.getZ() + 0.5;
 
         // Calculate speed
         double moveSpeed = this.speed;
         boolean inLiquid = false; // TODO: player.isInLiquid();
-        if (Material.getById(thisBlock.getTypeId()) == Material.SOUL_SAND) {
-            if (Material.getById(thisBlock.getTypeId()) == Material.SOUL_SAND) {
-                // Soulsand makes us shorter 8D
-                stepTarget = stepTarget.add(0, -0.12, 0);
-            }
+        if (Material.getById(typeBelow) == Material.SOUL_SAND) {
+            // Soulsand makes us shorter 8D
+            stepY -= 0.12;
             moveSpeed *= liquidFactor;
         } else if (inLiquid) {
             moveSpeed *= liquidFactor;
         }
 
-        double stepX = stepTarget.getX(), stepY = stepTarget.getY(), stepZ = stepTarget.getZ();
-
         // See if we're climbing, or jumping
-        if (moveLoc.getY() != stepY) {
+        double moveX = x, moveY = y, moveZ = z;
+        if (y != stepY) {
             boolean canClimbBlock = false;
             try {
-                canClimbBlock = bot.getPathFinder().getWorldPhysics().canClimb(moveLoc.intVector());
+                canClimbBlock = bot.getPathFinder().getWorldPhysics().canClimb(blockX, blockY, blockZ);
             } catch (ChunkNotLoadedException e) {
                 return TaskStatus.forInProgress();
             }
             if (!inLiquid && !canClimbBlock) {
-                if (moveLoc.getY() < stepY) {
+                if (y < stepY) {
                     moveSpeed *= jumpFactor;
                 } else {
                     moveSpeed *= fallFactor;
@@ -209,24 +248,25 @@ public class WalkTaskExecutor extends AbstractTaskExecutor {
             }
 
             // Set new Y-coord
-            double offsetY = moveLoc.getY() < stepY ? Math.min(moveSpeed, stepY - moveLoc.getY()) : Math.max(-moveSpeed, stepY - moveLoc.getY());
-            moveLoc = moveLoc.add(new Vector3d(0, offsetY, 0));
-        }
-
-        if (moveLoc.getX() != stepX) {
-            double offsetX = moveLoc.getX() < stepX ? Math.min(moveSpeed, stepX - moveLoc.getX()) : Math.max(-moveSpeed, stepX - moveLoc.getX());
-            moveLoc = moveLoc.add(new Vector3d(offsetX, 0, 0));
+            moveY += y < stepY ? Math.min(moveSpeed, stepY - y) : Math.max(-moveSpeed, stepY - y);
         }
 
-        if (moveLoc.getZ() != stepZ) {
-            double offsetZ = moveLoc.getZ() < stepZ ? Math.min(moveSpeed, stepZ - moveLoc.getZ()) : Math.max(-moveSpeed, stepZ - moveLoc.getZ());
-            moveLoc = moveLoc.add(new Vector3d(0, 0, offsetZ));
+        // Move straight towards the step over the ground, so diagonal and long steps keep the same speed
+        double offsetX = stepX - x, offsetZ = stepZ - z;
+        double distanceXZ = Math.sqrt(offsetX * offsetX + offsetZ * offsetZ);
+        if (distanceXZ <= moveSpeed) {
+            moveX = stepX;
+            moveZ = stepZ;
+        } else {
+            double scale = moveSpeed / distanceXZ;
+            moveX += offsetX * scale;
+            moveZ += offsetZ * scale;
         }
 
         // Send new player location to server
-        bot.getController().updateLocation(moveLoc);
+        bot.getController().updateLocation(new Vector3d(moveX, moveY, moveZ));
 
-        if (moveLoc.equals(stepTarget)) {
+        if (moveX == stepX && moveY == stepY && moveZ == stepZ) {
             nextStep = nextStep.getNext();
             ticksSinceStepChange = 0;
         }
@@ -239,15 +279,244 @@ public class WalkTaskExecutor extends AbstractTaskExecutor {
         if (pathFuture != null && !pathFuture.isDone()) {
             pathFuture.cancel(true);
         }
+        if (repairFuture != null && !repairFuture.isDone()) {
+            repairFuture.cancel(true);
+        }
+        if (world != null) {
+            world.removeBlockChangeListener(blockChangeListener);
+        }
+        pathBounds = null;
         nextStep = null;
     }
 
-    public Vector3i getTarget() {
-        return target;
+    /**
+     * Starts a search for a path from the given node, or from the bot if the
+     * node is null, to the node where the bot rejoins its path.
+     */
+    private TaskStatus repair(String reason, PathNode from, PathNode rejoin) {
+        if (++repairs > MAX_REPAIRS) {
+            nextStep = null;
+            return TaskStatus.forFailure("Too many path repairs");
+        }
+        REPAIRS.labels(reason).inc();
+
+        Vector3i start = from == null ? bot.getPlayer().getLocation().intVector() : from.getLocation();
+        if (from == null && start.equals(rejoin.getLocation())) {
+            // Already back on the path
+            link(null, rejoin);
+            ticksSinceStepChange = 0;
+            return TaskStatus.forInProgress();
+        }
+
+        repairFrom = from;
+        rejoinNode = rejoin;
+        repairFuture = PathSearchService.getInstance().submit(bot.getPathFinder(), start, rejoin.getLocation(),
+                PathSearchService.Priority.REPAIR);
+        return TaskStatus.forInProgress();
+    }
+
+    /**
+     * Replaces the part of the path between the repair start and the rejoin
+     * node with the repaired path.
+     *
+     * @return null if the path was repaired, or the failure status otherwise.
+     */
+    private TaskStatus spliceRepair() {
+        PathNode head;
+        try {
+            head = repairFuture.get();
+        } catch (InterruptedException e) {
+            return TaskStatus.forFailure(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            nextStep = null;
+            return TaskStatus.forFailure("Could not repair path: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            repairFuture = null;
+        }
+
+        if (head == null) {
+            nextStep = null;
+            return TaskStatus.forFailure(String.format("No path back to %s", rejoinNode.getLocation()));
+        }
+
+        // The repaired path ends on the location of the rejoin node, which it is replaced by
+        PathNode tail = head;
+        while (tail.getNext() != null) {
+            tail = tail.getNext();
+        }
+        PathNode first = repairFrom == null ? head : head.getNext();
+        if (first == null || first == tail) {
+            link(repairFrom, rejoinNode);
+        } else {
+            PathNode last = tail.getPrevious();
+            last.setNext(rejoinNode);
+            rejoinNode.setPrevious(last);
+            link(repairFrom, first);
+        }
+
+        repairFrom = null;
+        rejoinNode = null;
+        ticksSinceStepChange = 0;
+        updatePathBounds();
+        return null;
     }
 
-    public void setTimeout(int timeout) {
-        this.timeout = timeout;
+    private void link(PathNode from, PathNode to) {
+        if (from == null) {
+            to.setPrevious(null);
+            nextStep = to;
+        } else {
+            from.setNext(to);
+            to.setPrevious(from);
+        }
+    }
+
+    /**
+     * @return the first node of the remaining path from which the next node
+     * can no longer be reached, or null if the remaining path is walkable.
+     */
+    private PathNode findUnwalkableStep() {
+        WorldPhysics physics = bot.getPathFinder().getWorldPhysics();
+        PathNode node = nextStep.getPrevious() != null ? nextStep.getPrevious() : nextStep;
+        for (; node.getNext() != null; node = node.getNext()) {
+            try {
+                if (!PathSmoother.canWalkStraight(physics, node.getLocation(), node.getNext().getLocation())) {
+                    return node;
+                }
+            } catch (IllegalArgumentException e) {
+                // The node itself can no longer be stood on
+                return node;
+            } catch (ChunkNotLoadedException e) {
+                // The rest of the path cannot be checked until the chunk is loaded
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the node a few steps past the node closest to the given
+     * location, within the next {@link #REJOIN_LOOKAHEAD} nodes of the path.
+     */
+    private PathNode findRejoinNode(Vector3d location) {
+        PathNode closest = nextStep;
+        double closestDistance = Double.MAX_VALUE;
+        PathNode node = nextStep;
+        for (int i = 0; node != null && i < REJOIN_LOOKAHEAD; i++, node = node.getNext()) {
+            double distance = location.distanceSquared(node.getLocation().doubleVector());
+            if (distance < closestDistance) {
+                closest = node;
+                closestDistance = distance;
+            }
+        }
+        return advance(closest, REJOIN_SKIP);
+    }
+
+    /**
+     * @return the squared distance from the given location to the segment of
+     * the path leading to the next step.
+     */
+    private double distanceSquaredToStep(double x, double y, double z) {
+        Vector3i end = nextStep.getLocation();
+        if (nextStep.getPrevious() == null) {
+            return distanceSquared(x, y, z, end);
+        }
+        return distanceSquaredToSegment(x, y, z, nextStep.getPrevious().getLocation(), end);
+    }
+
+    /**
+     * @return the length of the segment of the path leading to the next step.
+     */
+    private double stepLength() {
+        if (nextStep.getPrevious() == null) {
+            return 1;
+        }
+        return Math.sqrt(distanceSquared(nextStep.getLocation().getX(), nextStep.getLocation().getY(),
+                nextStep.getLocation().getZ(), nextStep.getPrevious().getLocation()));
+    }
+
+    /**
+     * @return the squared distance between the given point and the corner of
+     * the given block.
+     */
+    static double distanceSquared(double x, double y, double z, Vector3i block) {
+        double dx = x - block.getX(), dy = y - block.getY(), dz = z - block.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * @return the squared distance between the given point and the closest
+     * point on the segment between the corners of the given blocks.
+     */
+    static double distanceSquaredToSegment(double x, double y, double z, Vector3i start, Vector3i end) {
+        double segmentX = end.getX() - start.getX();
+        double segmentY = end.getY() - start.getY();
+        double segmentZ = end.getZ() - start.getZ();
+        double lengthSquared = segmentX * segmentX + segmentY * segmentY + segmentZ * segmentZ;
+        if (lengthSquared == 0) {
+            return distanceSquared(x, y, z, end);
+        }
+        double offsetX = x - start.getX(), offsetY = y - start.getY(), offsetZ = z - start.getZ();
+        double t = (offsetX * segmentX + offsetY * segmentY + offsetZ * segmentZ) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double dx = offsetX - segmentX * t, dy = offsetY - segmentY * t, dz = offsetZ - segmentZ * t;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static PathNode advance(PathNode node, int steps) {
+        while (steps-- > 0 && node.getNext() != null) {
+            node = node.getNext();
+        }
+        return node;
+    }
+
+    private void startListening() {
+        if (nextStep == null) {
+            return;
+        }
+        world = bot.getWorld();
+        world.addBlockChangeListener(blockChangeListener);
+        updatePathBounds();
+    }
+
+    private void updatePathBounds() {
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        PathNode node = nextStep.getPrevious() != null ? nextStep.getPrevious() : nextStep;
+        for (; node != null; node = node.getNext()) {
+            Vector3i loc = node.getLocation();
+            bounds[0] = Math.min(bounds[0], loc.getX());
+            bounds[1] = Math.min(bounds[1], loc.getY());
+            bounds[2] = Math.min(bounds[2], loc.getZ());
+            bounds[3] = Math.max(bounds[3], loc.getX());
+            bounds[4] = Math.max(bounds[4], loc.getY());
+            bounds[5] = Math.max(bounds[5], loc.getZ());
+        }
+        // Include the blocks next to the path, the floor below it, and the headroom above it
+        bounds[0]--;
+        bounds[1]--;
+        bounds[2]--;
+        bounds[3]++;
+        bounds[4] += 2;
+        bounds[5]++;
+        pathBounds = bounds;
+    }
+
+    /**
+     * Called on the network thread. Only marks the path for revalidation on
+     * the next tick.
+     */
+    private void onBlockChange(int x, int y, int z) {
+        int[] bounds = pathBounds;
+        if (bounds != null
+                && x >= bounds[0] && y >= bounds[1] && z >= bounds[2]
+                && x <= bounds[3] && y <= bounds[4] && z <= bounds[5]) {
+            pathChanged = true;
+        }
+    }
+
+    public Vector3i getTarget() {
+        return target;
     }
 
     /**
@@ -325,12 +594,4 @@ public class WalkTaskExecutor extends AbstractTaskExecutor {
     public static void setDefaultLiquidFactor(double defaultLiquidFactor) {
         WalkTaskExecutor.liquidFactor = defaultLiquidFactor;
     }
-
-    public static int getDefaultTimeout() {
-        return defaultTimeout;
-    }
-
-    public static void setDefaultTimeout(int defaultTimeout) {
-        WalkTaskExecutor.defaultTimeout = defaultTimeout;
-    }
 }
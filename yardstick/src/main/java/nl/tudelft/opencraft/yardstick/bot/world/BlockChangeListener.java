@@ -0,0 +1,38 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.world;
+
+/**
+ * Receives the block changes the server sends for a {@link World}.
+ * <p>
+ * Listeners are called on the network thread of the bot, so implementations
+ * should only record the change and act on it during the next tick.
+ */
+@FunctionalInterface
+public interface BlockChangeListener {
+
+    /**
+     * Called after the state of the block at the given location has changed.
+     *
+     * @param x the x-coordinate of the block.
+     * @param y the y-coordinate of the block.
+     * @param z the z-coordinate of the block.
+     */
+    void onBlockChange(int x, int y, int z);
+}
@@ -49,6 +49,23 @@ public class Chunk {
         return this.location;
     }
 
+    /**
+     * Returns the type of the block at the given world location, which must
+     * be in this chunk.
+     *
+     * @return the type id, 0 for air or outside the world height.
+     */
+    public int getTypeId(int x, int y, int z) {
+        if (y < 0 || y >= 256) {
+            return 0;
+        }
+        science.atlarge.opencraft.mcprotocollib.data.game.chunk.Chunk section = handle.getChunks()[y >> 4];
+        if (section == null) {
+            return 0;
+        }
+        return section.getBlocks().get(x & 15, y & 15, z & 15).getId();
+    }
+
     // TODO block operations
     @Override
     public int hashCode() {
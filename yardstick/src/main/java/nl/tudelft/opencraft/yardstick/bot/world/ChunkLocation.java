@@ -18,8 +18,6 @@
 
 package nl.tudelft.opencraft.yardstick.bot.world;
 
-import java.util.Objects;
-
 public class ChunkLocation {
 
     private final int x, z;
@@ -39,7 +37,7 @@ public class ChunkLocation {
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, z);
+        return 31 * x + z;
     }
 
     @Override
@@ -294,12 +294,25 @@ public enum Material {
     }
 
     public static Material getById(int id) {
+        if (id < 0 || id >= BY_ID.length || BY_ID[id] == null) {
+            return UNKNOWN;
+        }
+        return BY_ID[id];
+    }
+
+    private static final Material[] BY_ID;
+
+    static {
+        int max = 0;
+        for (Material type : values()) {
+            max = Math.max(max, type.getId());
+        }
+        BY_ID = new Material[max + 1];
         for (Material type : values()) {
-            if (type.getId() == id) {
-                return type;
+            if (type.getId() >= 0 && BY_ID[type.getId()] == null) {
+                BY_ID[type.getId()] = type;
             }
         }
-        return UNKNOWN;
     }
 
     /**
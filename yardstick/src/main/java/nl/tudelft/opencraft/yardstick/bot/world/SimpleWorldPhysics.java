@@ -180,16 +180,25 @@ public class SimpleWorldPhysics implements WorldPhysics {
         valid = valid && lowerMat != Material.SPRUCE_FENCE;
         valid = valid && lowerMat != Material.SPRUCE_FENCE_GATE;
 
-        // Only one coord at a time
         boolean movingX = origX != destX;
         boolean movingY = origY != destY;
         boolean movingZ = origZ != destZ;
 
-        // Only allow single axis movement for now
+        // Allow single axis movement, and diagonal movement while staying level
+        boolean diagonal = movingX && movingZ && !movingY;
         valid = valid
                 && ((movingX && !movingY && !movingZ)
                 || (!movingX && movingY && !movingZ)
-                || (!movingX && !movingY && movingZ));
+                || (!movingX && !movingY && movingZ)
+                || diagonal);
+
+        // Diagonal moves may not cut corners: both blocks beside the move must be passable
+        if (valid && diagonal) {
+            valid = isTraversable(destX, origY, origZ)
+                    && isTraversable(destX, origY + 1, origZ)
+                    && isTraversable(origX, origY, destZ)
+                    && isTraversable(origX, origY + 1, destZ);
+        }
 
         // If we're staying level
         if (destY == origY) {
@@ -230,14 +239,19 @@ public class SimpleWorldPhysics implements WorldPhysics {
 
     @Override
     public boolean canClimb(Vector3i location) throws ChunkNotLoadedException {
-        int id = world.getBlockAt(location).getTypeId();
+        return canClimb(location.getX(), location.getY(), location.getZ());
+    }
+
+    @Override
+    public boolean canClimb(int x, int y, int z) throws ChunkNotLoadedException {
+        int id = world.getTypeIdAt(x, y, z);
         if (id == 8 || id == 9 || id == 65) // Water / Moving Water / Ladder
         {
             return true;
         }
         if (id == 106) { // Vines (which require an adjacent solid block)
-            if (!isTraversable(location.getX(), location.getY(), location.getZ() + 1) || !isTraversable(location.getX(), location.getY(), location.getZ() - 1)
-                    || !isTraversable(location.getX() + 1, location.getY(), location.getZ()) || !isTraversable(location.getX() - 1, location.getY(), location.getZ())) {
+            if (!isTraversable(x, y, z + 1) || !isTraversable(x, y, z - 1)
+                    || !isTraversable(x + 1, y, z) || !isTraversable(x - 1, y, z)) {
                 return true;
             }
         }
@@ -254,11 +268,7 @@ public class SimpleWorldPhysics implements WorldPhysics {
      * @throws ChunkNotLoadedException If the block is outside viewing range.
      */
     public boolean isTraversable(int x, int y, int z) throws ChunkNotLoadedException {
-        Block block = world.getBlockAt(x, y, z);
-        if (block.getChunk() == null) {
-            throw new ChunkNotLoadedException(new ChunkLocation(x, z));
-        }
-        return block.getMaterial().isTraversable();
+        return Material.getById(world.getTypeIdAt(x, y, z)).isTraversable();
     }
 
     public boolean canStand(Vector3i location) throws ChunkNotLoadedException {
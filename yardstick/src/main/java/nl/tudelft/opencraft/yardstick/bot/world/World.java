@@ -20,7 +20,10 @@ package nl.tudelft.opencraft.yardstick.bot.world;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import nl.tudelft.opencraft.yardstick.bot.entity.Entity;
 import nl.tudelft.opencraft.yardstick.util.Vector3i;
 import org.jetbrains.annotations.NotNull;
@@ -39,6 +42,11 @@ public class World {
     private final Map<ChunkLocation, Chunk> chunks = new HashMap<>();
     private final Map<ChunkLocation, Chunk> unloadedChunks = new HashMap<>();
     private final Map<Integer, Entity> entities = new HashMap<>();
+    private final List<BlockChangeListener> blockChangeListeners = new CopyOnWriteArrayList<>();
+    // Most lookups of a bot fall in the chunk of the previous lookup. Loading
+    // or unloading a chunk bumps the version, which invalidates the cache
+    private final AtomicInteger chunkVersion = new AtomicInteger();
+    private volatile CachedChunk lastChunk;
     private Position spawnPoint;
 
     public World(Dimension dimension, WorldType type) {
@@ -65,6 +73,7 @@ public class World {
 
     public void loadChunk(Chunk chunk) {
         chunks.put(chunk.getLocation(), chunk);
+        chunkVersion.incrementAndGet();
     }
 
     public void unloadChunk(Chunk chunk) {
@@ -77,6 +86,7 @@ public class World {
         if (chunk != null) {
             unloadedChunks.put(chunk.getLocation(), chunk);
         }
+        chunkVersion.incrementAndGet();
     }
 
     public ChunkLocation getChunkLocation(int x, int z) {
@@ -105,15 +115,49 @@ public class World {
         return chunk;
     }
 
+    /**
+     * Returns the chunk with the given chunk coordinates. Does not allocate if
+     * the chunk is the same as in the previous lookup.
+     *
+     * @param chunkX the x coordinate of the chunk.
+     * @param chunkZ the z coordinate of the chunk.
+     * @return the chunk.
+     * @throws ChunkNotLoadedException if the chunk is not loaded
+     */
+    @NotNull
+    public Chunk getChunk(int chunkX, int chunkZ) throws ChunkNotLoadedException {
+        int version = chunkVersion.get();
+        CachedChunk cached = lastChunk;
+        if (cached != null && cached.version == version
+                && cached.chunk.getLocation().getX() == chunkX && cached.chunk.getLocation().getZ() == chunkZ) {
+            return cached.chunk;
+        }
+        // Read before the lookup, so a chunk replaced meanwhile is cached with an outdated version
+        Chunk chunk = getChunk(new ChunkLocation(chunkX, chunkZ));
+        lastChunk = new CachedChunk(chunk, version);
+        return chunk;
+    }
+
     public Block getBlockAt(Vector3i v) throws ChunkNotLoadedException {
         return getBlockAt(v.getX(), v.getY(), v.getZ());
     }
 
     public Block getBlockAt(int x, int y, int z) throws ChunkNotLoadedException {
-        Chunk chunk = getChunk(getChunkLocation(x, z));
+        Chunk chunk = getChunk(Math.floorDiv(x, 16), Math.floorDiv(z, 16));
         return new Block(x, y, z, chunk);
     }
 
+    /**
+     * Returns the type of the block at the given location, without creating a
+     * {@link Block}.
+     *
+     * @return the type id, 0 for air.
+     * @throws ChunkNotLoadedException if the chunk of the block is not loaded.
+     */
+    public int getTypeIdAt(int x, int y, int z) throws ChunkNotLoadedException {
+        return getChunk(Math.floorDiv(x, 16), Math.floorDiv(z, 16)).getTypeId(x, y, z);
+    }
+
     public Block getHighestBlockAt(int x, int z) throws ChunkNotLoadedException {
         for (int y = 200; y > 0; y--) { // TODO: Fix world height
             if (physics.canStand(new Vector3i(x, y, z))) {
@@ -123,6 +167,24 @@ public class World {
         return getBlockAt(x, 0, z);
     }
 
+    public void addBlockChangeListener(BlockChangeListener listener) {
+        blockChangeListeners.add(listener);
+    }
+
+    public void removeBlockChangeListener(BlockChangeListener listener) {
+        blockChangeListeners.remove(listener);
+    }
+
+    /**
+     * Notifies the registered listeners that the block at the given location
+     * has changed.
+     */
+    public void fireBlockChange(int x, int y, int z) {
+        for (BlockChangeListener listener : blockChangeListeners) {
+            listener.onBlockChange(x, y, z);
+        }
+    }
+
     public Collection<Entity> getVisibleEntities() {
         return entities.values();
     }
@@ -154,4 +216,15 @@ public class World {
     public void setSpawnPoint(Position spawnPoint) {
         this.spawnPoint = spawnPoint;
     }
+
+    private static class CachedChunk {
+
+        private final Chunk chunk;
+        private final int version;
+
+        CachedChunk(Chunk chunk, int version) {
+            this.chunk = chunk;
+            this.version = version;
+        }
+    }
 }
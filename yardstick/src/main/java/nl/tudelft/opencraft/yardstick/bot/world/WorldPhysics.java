@@ -53,6 +53,8 @@ public interface WorldPhysics {
 
     public boolean canClimb(Vector3i location) throws ChunkNotLoadedException;
 
+    public boolean canClimb(int x, int y, int z) throws ChunkNotLoadedException;
+
     public boolean canStand(Vector3i location) throws ChunkNotLoadedException;
 
     public World getWorld();
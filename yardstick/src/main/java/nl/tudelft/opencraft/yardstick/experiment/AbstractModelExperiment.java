@@ -20,11 +20,8 @@ package nl.tudelft.opencraft.yardstick.experiment;
 
 import java.text.MessageFormat;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 import nl.tudelft.opencraft.yardstick.bot.Bot;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.TaskExecutor;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.TaskStatus;
@@ -34,7 +31,7 @@ import nl.tudelft.opencraft.yardstick.model.BotModel;
 
 public abstract class AbstractModelExperiment extends Experiment {
 
-    private final List<Bot> botList = Collections.synchronizedList(new ArrayList<>());
+    private final BotPartitions bots = new BotPartitions();
     private final BotModel model;
 
     private long startMillis;
@@ -55,23 +52,14 @@ public abstract class AbstractModelExperiment extends Experiment {
 
     @Override
     protected void tick() {
-        synchronized (botList) {
-            List<Bot> disconnectedBots = botList.stream()
-                    .filter(Bot::hasBeenDisconnected)
-                    .collect(Collectors.toList());
-            disconnectedBots.forEach(bot -> bot.disconnect("Bot is not connected"));
-            if (disconnectedBots.size() > 0) {
-                logger.warning("Bots disconnected: "
-                        + disconnectedBots.stream().map(Bot::getName).reduce("", (a, b) -> a + ", " + b));
-                botList.removeAll(disconnectedBots);
-            }
+        List<Bot> disconnectedBots = bots.removeIf(Bot::hasBeenDisconnected);
+        disconnectedBots.forEach(bot -> bot.disconnect("Bot is not connected"));
+        if (disconnectedBots.size() > 0) {
+            logger.warning("Bots disconnected: "
+                    + disconnectedBots.stream().map(Bot::getName).reduce("", (a, b) -> a + ", " + b));
         }
 
-        synchronized (botList) {
-            for (Bot bot : botList) {
-                botTick(bot);
-            }
-        }
+        bots.tick(this::botTick);
     }
 
     private void botTick(Bot bot) {
@@ -122,21 +110,15 @@ public abstract class AbstractModelExperiment extends Experiment {
         boolean timeUp = System.currentTimeMillis() - this.startMillis > this.experimentDuration.toMillis();
         if (timeUp) {
             return true;
-        } else if (botList.size() > 0) {
-            boolean allBotsDisconnected;
-            synchronized (botList) {
-                allBotsDisconnected = botList.stream().allMatch(Bot::hasBeenDisconnected);
-            }
-            if (allBotsDisconnected) {
-                return true;
-            }
+        } else if (bots.size() > 0 && bots.allMatch(Bot::hasBeenDisconnected)) {
+            return true;
         }
         return false;
     }
 
     @Override
     protected void after() {
-        for (Bot bot : botList) {
+        for (Bot bot : bots.snapshot()) {
             bot.disconnect("disconnect");
         }
     }
@@ -0,0 +1,193 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.experiment;
+
+import io.prometheus.client.Histogram;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import nl.tudelft.opencraft.yardstick.bot.Bot;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+
+/**
+ * Holds the bots of an experiment in a fixed number of partitions, so the
+ * experiment can tick them in parallel without a lock on the whole
+ * population.
+ * <p>
+ * New bots join the partition with the fewest bots. Each partition is a
+ * copy-on-write list, so bots can be added and removed while a tick is
+ * running. {@link #tick(Consumer)} runs one task per partition on the tick
+ * pool of {@link ThreadPools}, and returns when all partitions are done.
+ */
+public class BotPartitions {
+
+    private static final double[] SECONDS_BUCKETS = new double[]{
+        0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1};
+
+    private static final Histogram PARTITION_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("experiment")
+            .name("partition_seconds")
+            .help("Time spent on the bots of one partition in an experiment tick")
+            .labelNames("partition")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+    private static final Histogram TICK_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("experiment")
+            .name("tick_seconds")
+            .help("Time spent on all bots in an experiment tick")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+
+    private final List<List<Bot>> partitions;
+    private final String[] labels;
+
+    /**
+     * Creates partitions for twice as many threads as there are processors.
+     */
+    public BotPartitions() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Creates the given number of empty partitions.
+     *
+     * @param partitionCount the number of partitions.
+     */
+    public BotPartitions(int partitionCount) {
+        this.partitions = new ArrayList<>(partitionCount);
+        this.labels = new String[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new CopyOnWriteArrayList<>());
+            labels[i] = String.valueOf(i);
+        }
+    }
+
+    /**
+     * Adds a bot to the partition with the fewest bots.
+     *
+     * @param bot the bot.
+     */
+    public synchronized void add(Bot bot) {
+        List<Bot> smallest = partitions.get(0);
+        for (List<Bot> partition : partitions) {
+            if (partition.size() < smallest.size()) {
+                smallest = partition;
+            }
+        }
+        smallest.add(bot);
+    }
+
+    /**
+     * Removes the bots matching the given predicate.
+     *
+     * @param filter the predicate.
+     * @return the removed bots.
+     */
+    public synchronized List<Bot> removeIf(Predicate<Bot> filter) {
+        List<Bot> removed = new ArrayList<>();
+        for (List<Bot> partition : partitions) {
+            for (Bot bot : partition) {
+                if (filter.test(bot)) {
+                    removed.add(bot);
+                }
+            }
+            if (!removed.isEmpty()) {
+                partition.removeAll(removed);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return true if all bots match the given predicate.
+     */
+    public boolean allMatch(Predicate<Bot> predicate) {
+        for (List<Bot> partition : partitions) {
+            for (Bot bot : partition) {
+                if (!predicate.test(bot)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of bots.
+     */
+    public int size() {
+        int size = 0;
+        for (List<Bot> partition : partitions) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return a copy of the bots in all partitions.
+     */
+    public List<Bot> snapshot() {
+        List<Bot> bots = new ArrayList<>(size());
+        for (List<Bot> partition : partitions) {
+            bots.addAll(partition);
+        }
+        return bots;
+    }
+
+    /**
+     * Runs the given action for every bot, with the partitions in parallel.
+     * An exception thrown for one bot is logged, and does not stop the
+     * action for the other bots.
+     *
+     * @param action the action. Called from multiple threads at once.
+     */
+    public void tick(Consumer<Bot> action) {
+        long start = System.nanoTime();
+        List<Callable<Void>> tasks = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            List<Bot> partition = partitions.get(i);
+            String label = labels[i];
+            tasks.add(() -> {
+                long partitionStart = System.nanoTime();
+                for (Bot bot : partition) {
+                    try {
+                        action.accept(bot);
+                    } catch (RuntimeException e) {
+                        bot.getLogger().log(Level.WARNING, "Could not tick bot in experiment", e);
+                    }
+                }
+                PARTITION_TIME.labels(label).observe((System.nanoTime() - partitionStart) / 1e9);
+                return null;
+            });
+        }
+        try {
+            // Not the pool of the bot ticker, so waiting for the partitions cannot hold up or wait on bot ticks
+            ThreadPools.getInstance().get(ThreadPools.PARTITION).invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        TICK_TIME.observe((System.nanoTime() - start) / 1e9);
+    }
+}
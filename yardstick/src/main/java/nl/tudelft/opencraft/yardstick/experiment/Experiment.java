@@ -46,6 +46,7 @@ public abstract class Experiment implements Runnable {
     protected long tick = 0;
     private Statistics stats;
     private WorkloadDumper dumper;
+    private Scheduler.OverrunPolicy overrunPolicy = Scheduler.OverrunPolicy.CATCH_UP;
 
     protected final GameArchitecture game;
 
@@ -65,7 +66,7 @@ public abstract class Experiment implements Runnable {
 
     /**
      * Runs the experiment. The experiment will use the {@link WorkloadDumper}
-     * and {@link Statistics} if they have been set. A new scheduler will be
+     * if it has been set. A new scheduler will be
      * created to handle tick tasks for this experiment, such as model
      * interaction.
      */
@@ -77,17 +78,16 @@ public abstract class Experiment implements Runnable {
             dumper.start();
         }
 
-        if (stats != null) {
-            stats.start();
-        }
-
         try {
-            Scheduler sched = new Scheduler(TICK_MS);
+            Scheduler sched = new Scheduler(TICK_MS, overrunPolicy);
             sched.start();
             before();
             do {
                 tick();
-                sched.sleepTick();
+                if (!sched.sleepTick()) {
+                    logger.fine("Tick " + tick + " took longer than " + TICK_MS + " ms");
+                }
+                tick = sched.getTick();
             } while (!isDone());
             after();
             logger.info("Experiment complete, exiting");
@@ -97,10 +97,6 @@ public abstract class Experiment implements Runnable {
             if (dumper != null) {
                 dumper.stop();
             }
-
-            if (stats != null) {
-                stats.stop();
-            }
         }
         System.out.println("Goodbye.");
         System.exit(0);
@@ -140,6 +136,16 @@ public abstract class Experiment implements Runnable {
         this.dumper = dumper;
     }
 
+    /**
+     * Sets what the scheduler of this experiment does when a tick overruns.
+     * Defaults to {@link Scheduler.OverrunPolicy#CATCH_UP}.
+     *
+     * @param overrunPolicy the overrun policy.
+     */
+    public void setTickOverrunPolicy(Scheduler.OverrunPolicy overrunPolicy) {
+        this.overrunPolicy = overrunPolicy;
+    }
+
     /**
      * Creates a new {@link Bot} in this experiment. If a {@link Statistics} has
      * been set, the statistics will listen to bot events. If a
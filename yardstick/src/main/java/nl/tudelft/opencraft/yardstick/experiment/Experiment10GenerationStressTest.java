@@ -2,27 +2,27 @@ package nl.tudelft.opencraft.yardstick.experiment;
 
 import com.typesafe.config.Config;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import nl.tudelft.opencraft.yardstick.bot.Bot;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.FlyTaskExecutor;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.TaskExecutor;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.TaskStatus;
 import nl.tudelft.opencraft.yardstick.game.GameArchitecture;
+import nl.tudelft.opencraft.yardstick.util.VirtualThreads;
 import nl.tudelft.opencraft.yardstick.util.Vector3i;
 
 public class Experiment10GenerationStressTest extends Experiment {
 
     private final Config behaviorConfig;
-    private final List<Bot> botList = Collections.synchronizedList(new ArrayList<>());
-    private final Set<Bot> targetSet = Collections.synchronizedSet(new HashSet<>());
+    private final BotPartitions bots = new BotPartitions();
+    private final Set<Bot> targetSet = ConcurrentHashMap.newKeySet();
 
-    private double angle = 0;
+    // Bots are ticked in parallel, so each bot takes the next angle from a shared counter.
+    private final AtomicInteger targetsAssigned = new AtomicInteger();
     private double increment;
     private double targetDistance;
     private double botSpeed;
@@ -46,14 +46,12 @@ public class Experiment10GenerationStressTest extends Experiment {
         this.increment = 2 * Math.PI / botsTotal;
         this.targetDistance = ((int) (1000 / TICK_MS) * experimentDuration.getSeconds()) * botSpeed;
 
-        // connect the bots; todo: synchronized?
+        // connect the bots, each on its own (virtual) thread
+        // these threads are daemons; the experiment thread keeps the JVM alive until the run ends with System.exit
         for (int i = 0; i < botsTotal; i++) {
             Bot bot = createBot();
-            Thread connector = new Thread(newBotConnector(bot));
-            connector.setName("Connector-" + bot.getName());
-            connector.setDaemon(false);
-            connector.start();
-            botList.add(bot);
+            VirtualThreads.getInstance().start("Connector-" + bot.getName(), newBotConnector(bot));
+            bots.add(bot);
         }
     }
 
@@ -63,23 +61,14 @@ public class Experiment10GenerationStressTest extends Experiment {
             return;
         }
 
-        synchronized (botList) {
-            List<Bot> disconnectedBots = botList.stream()
-                    .filter(Bot::hasBeenDisconnected)
-                    .collect(Collectors.toList());
-            disconnectedBots.forEach(bot -> bot.disconnect("Bot is not connected"));
-            if (disconnectedBots.size() > 0) {
-                logger.warning("Bots disconnected: "
-                        + disconnectedBots.stream().map(Bot::getName).reduce("", (a, b) -> a + ", " + b));
-                botList.removeAll(disconnectedBots);
-            }
+        List<Bot> disconnectedBots = bots.removeIf(Bot::hasBeenDisconnected);
+        disconnectedBots.forEach(bot -> bot.disconnect("Bot is not connected"));
+        if (disconnectedBots.size() > 0) {
+            logger.warning("Bots disconnected: "
+                    + disconnectedBots.stream().map(Bot::getName).reduce("", (a, b) -> a + ", " + b));
         }
 
-        synchronized (botList) {
-            for (Bot bot : botList) {
-                botTick(bot);
-            }
-        }
+        bots.tick(this::botTick);
     }
 
     private void botTick(Bot bot) {
@@ -88,18 +77,17 @@ public class Experiment10GenerationStressTest extends Experiment {
         }
 
         // calculate bot target location if not already done
-        if (!targetSet.contains(bot)) {
+        if (targetSet.add(bot)) {
             // calculate target
+            double angle = targetsAssigned.getAndIncrement() * increment;
             Vector3i startLocation = bot.getPlayer().getLocation().intVector();
             int finalX = (int) Math.floor(targetDistance * Math.cos(angle)) + startLocation.getX();
             int finalZ = (int) Math.floor(targetDistance * Math.sin(angle)) + startLocation.getZ();
-            angle += increment;
             Vector3i botTarget = new Vector3i(finalX, FlyTaskExecutor.maxY, finalZ);
 
             // move bot towards target
             bot.getLogger().info(String.format("Moving bot towards final target (%d, %d)", finalX, finalZ));
             bot.setTaskExecutor(new FlyTaskExecutor(bot, botTarget, botSpeed));
-            targetSet.add(bot);
         }
 
         // disconnect bot if arrived
@@ -139,21 +127,15 @@ public class Experiment10GenerationStressTest extends Experiment {
         boolean timeUp = System.currentTimeMillis() - this.startMillis > this.experimentDuration.toMillis();
         if (timeUp) {
             return true;
-        } else if (botList.size() > 0) {
-            boolean allBotsDisconnected;
-            synchronized (botList) {
-                allBotsDisconnected = botList.stream().allMatch(Bot::hasBeenDisconnected);
-            }
-            if (allBotsDisconnected) {
-                return true;
-            }
+        } else if (bots.size() > 0 && bots.allMatch(Bot::hasBeenDisconnected)) {
+            return true;
         }
         return false;
     }
 
     @Override
     protected void after() {
-        for (Bot bot : botList) {
+        for (Bot bot : bots.snapshot()) {
             bot.disconnect("disconnect");
         }
     }
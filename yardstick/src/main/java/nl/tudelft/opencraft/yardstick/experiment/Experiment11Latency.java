@@ -8,12 +8,14 @@ import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import nl.tudelft.opencraft.yardstick.Yardstick;
 import nl.tudelft.opencraft.yardstick.bot.Bot;
 import nl.tudelft.opencraft.yardstick.bot.BotManager;
 import nl.tudelft.opencraft.yardstick.bot.world.ChunkLocation;
 import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
 import nl.tudelft.opencraft.yardstick.game.GameArchitecture;
+import nl.tudelft.opencraft.yardstick.statistic.LatencyRecorder;
+import nl.tudelft.opencraft.yardstick.util.OverloadDetector;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
 import nl.tudelft.opencraft.yardstick.util.Vector3i;
 import org.jetbrains.annotations.NotNull;
 import science.atlarge.opencraft.mcprotocollib.data.game.entity.metadata.ItemStack;
@@ -43,7 +45,8 @@ public class Experiment11Latency extends Experiment {
 
     private BotManager botManager;
     private ScheduledFuture<?> runningBotManager;
-    private long packetSent = 0L;
+    private long packetSentNanos = 0L;
+    private LatencyRecorder latency;
     private boolean waitingForReply = false;
     private int countReceived;
     private int countSent;
@@ -52,6 +55,7 @@ public class Experiment11Latency extends Experiment {
 
     private Duration experimentDuration;
     private long startMillis;
+    private final Config latencyConfig;
 
     private final SessionListener listener = new SessionListener() {
         @Override
@@ -71,8 +75,17 @@ public class Experiment11Latency extends Experiment {
                 }
                 if (blockPositions.stream().anyMatch(b -> b.equals(blockPos))) {
                     countReceived++;
-                    var duration = System.currentTimeMillis() - packetSent;
-                    logger.info(String.format("latency %d ms", duration));
+                    long receivedNanos = System.nanoTime();
+                    var duration = TimeUnit.NANOSECONDS.toMillis(receivedNanos - packetSentNanos);
+                    if (latency.record(packetSentNanos, receivedNanos)) {
+                        // The emulator paused while waiting, so the sample includes the pause
+                        logger.info(String.format("latency %d ms (emulator paused)", duration));
+                    } else if (OverloadDetector.getInstance().isHealthy()) {
+                        logger.info(String.format("latency %d ms", duration));
+                    } else {
+                        // Keep the sample, but mark it, so it can be left out of the results
+                        logger.info(String.format("latency %d ms (emulator overloaded)", duration));
+                    }
                     waitingForReply = false;
                 } else {
                     for (Position blockPosition : blockPositions) {
@@ -108,8 +121,9 @@ public class Experiment11Latency extends Experiment {
         }
     };
 
-    public Experiment11Latency(int nodeID, GameArchitecture game, Config config) {
+    public Experiment11Latency(int nodeID, GameArchitecture game, Config config, Config latencyConfig) {
         super(11, nodeID, game, "latency experiment");
+        this.latencyConfig = latencyConfig;
         this.startMillis = System.currentTimeMillis();
         this.experimentDuration = config.getDuration("duration");
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -120,12 +134,15 @@ public class Experiment11Latency extends Experiment {
 
     @Override
     protected void before() throws InterruptedException {
+        // A block change is only sent after the previous one was seen, so the probe stalls with the server. Without a
+        // stall, a change is sent every tick, so a latency above a tick is corrected for the probes that were held back.
+        latency = new LatencyRecorder("block-change", Duration.ofMillis(TICK_MS), latencyConfig);
         botManager = new BotManager(game);
         int numberOfBots = 2;
         botManager.setPlayerStepIncrease(numberOfBots);
         botManager.setPlayerCountTarget(numberOfBots);
         int secondsBetweenJoin = 5;
-        runningBotManager = Yardstick.THREAD_POOL.scheduleAtFixedRate(botManager, 0, secondsBetweenJoin, TimeUnit.SECONDS);
+        runningBotManager = ThreadPools.getInstance().getScheduled(ThreadPools.IO).scheduleAtFixedRate(botManager, 0, secondsBetweenJoin, TimeUnit.SECONDS);
     }
 
     @Override
@@ -143,7 +160,7 @@ public class Experiment11Latency extends Experiment {
                 }
                 waitingForReply = true;
                 CompletableFuture.delayedExecutor(random.nextInt(TICK_MS + 1), TimeUnit.MILLISECONDS).execute(() -> {
-                    packetSent = System.currentTimeMillis();
+                    packetSentNanos = System.nanoTime();
                     var playerLoc = botB.getPlayer().getLocation().intVector();
                     var placePos = new Position(playerLoc.getX() + 1, playerLoc.getY() - 1, playerLoc.getZ());
                     blockPos = new Position(playerLoc.getX() + 1, playerLoc.getY(), playerLoc.getZ());
@@ -205,5 +222,6 @@ public class Experiment11Latency extends Experiment {
         botManager.setPlayerCountTarget(0);
         botManager.setPlayerStepDecrease(0);
         botManager.run();
+        latency.close();
     }
 }
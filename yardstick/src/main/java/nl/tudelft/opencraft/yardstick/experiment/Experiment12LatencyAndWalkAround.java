@@ -8,9 +8,9 @@ public class Experiment12LatencyAndWalkAround extends Experiment {
     private final Experiment11Latency latencyExperiment;
     private final Experiment8BoxWalkAround walkExperiment;
 
-    public Experiment12LatencyAndWalkAround(int nodeID, GameArchitecture game, Config config) {
+    public Experiment12LatencyAndWalkAround(int nodeID, GameArchitecture game, Config config, Config latencyConfig) {
         super(12, nodeID, game, "latency and walk experiment");
-        latencyExperiment = new Experiment11Latency(nodeID, game, config);
+        latencyExperiment = new Experiment11Latency(nodeID, game, config, latencyConfig);
         walkExperiment = new Experiment8BoxWalkAround(nodeID, game, config);
     }
 
@@ -21,11 +21,10 @@ package nl.tudelft.opencraft.yardstick.experiment;
 import com.typesafe.config.Config;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.stream.Collectors;
@@ -38,11 +37,12 @@ import nl.tudelft.opencraft.yardstick.game.GameArchitecture;
 import nl.tudelft.opencraft.yardstick.model.SimpleMovementModel;
 import nl.tudelft.opencraft.yardstick.util.Vector3d;
 import nl.tudelft.opencraft.yardstick.util.Vector3i;
+import nl.tudelft.opencraft.yardstick.util.VirtualThreads;
 
 public class Experiment4MultiWalkAround extends Experiment {
 
     private final Config behaviorConfig;
-    private final List<Bot> botList = Collections.synchronizedList(new ArrayList<>());
+    private final BotPartitions bots = new BotPartitions();
     private final List<Future<Bot>> connectingBots = new ArrayList<>();
     private SimpleMovementModel movement;
 
@@ -51,7 +51,7 @@ public class Experiment4MultiWalkAround extends Experiment {
     private Duration experimentDuration;
     private Duration timeBetweenJoins;
     private int numberOfBotsPerJoin;
-    private final Map<Bot, Vector3d> botSpawnLocations = new HashMap<>();
+    private final Map<Bot, Vector3d> botSpawnLocations = new ConcurrentHashMap<>();
     private long lastJoin = System.currentTimeMillis();
 
     public Experiment4MultiWalkAround(int nodeID, GameArchitecture game, Config behaviorConfig) {
@@ -80,39 +80,33 @@ public class Experiment4MultiWalkAround extends Experiment {
 
     @Override
     protected void tick() {
-        synchronized (botList) {
-            // Remove all bots that are not connected.
-            List<Bot> disconnectedBots = botList.stream()
-                    .filter(bot -> !bot.isJoined())
-                    .collect(Collectors.toList());
-            disconnectedBots.forEach(bot -> bot.disconnect("Bot is not connected"));
-            botList.removeAll(disconnectedBots);
-
-            // Add all new bots that are connected.
-            List<Future<Bot>> newlyConnectedBots = connectingBots.stream()
-                    .filter(Future::isDone)
-                    .collect(Collectors.toList());
-            newlyConnectedBots.forEach(fb -> {
-                connectingBots.remove(fb);
-                try {
-                    botList.add(fb.get());
-                } catch (InterruptedException | ExecutionException e) {
-                    // ignore
+        // Remove all bots that are not connected.
+        List<Bot> disconnectedBots = bots.removeIf(bot -> !bot.isJoined());
+        disconnectedBots.forEach(bot -> bot.disconnect("Bot is not connected"));
+
+        // Add all new bots that are connected. Only the tick thread touches connectingBots.
+        List<Future<Bot>> newlyConnectedBots = connectingBots.stream()
+                .filter(Future::isDone)
+                .collect(Collectors.toList());
+        newlyConnectedBots.forEach(fb -> {
+            connectingBots.remove(fb);
+            try {
+                Bot bot = fb.get();
+                if (bot != null) {
+                    bots.add(bot);
                 }
-            });
-        }
+            } catch (InterruptedException | ExecutionException e) {
+                // ignore
+            }
+        });
         if (System.currentTimeMillis() - this.lastJoin > timeBetweenJoins.toMillis() * 1000
-                && botList.size() <= this.botsTotal) {
+                && bots.size() <= this.botsTotal) {
             int botsToConnect = Math.min(this.numberOfBotsPerJoin, this.botsTotal - currentNumberOfBots());
             for (int i = 0; i < botsToConnect; i++) {
                 connectNewBot();
             }
         }
-        synchronized (botList) {
-            for (Bot bot : botList) {
-                botTick(bot);
-            }
-        }
+        bots.tick(this::botTick);
     }
 
     void connectNewBot() {
@@ -127,7 +121,7 @@ public class Experiment4MultiWalkAround extends Experiment {
                         System.currentTimeMillis() - startTime));
             }
             return null;
-        }));
+        }, VirtualThreads.getInstance().getExecutor()));
         lastJoin = System.currentTimeMillis();
     }
 
@@ -146,21 +140,15 @@ public class Experiment4MultiWalkAround extends Experiment {
         boolean timeUp = System.currentTimeMillis() - this.startMillis > this.experimentDuration.toMillis();
         if (timeUp) {
             return true;
-        } else if (botList.size() > 0) {
-            boolean allBotsDisconnected;
-            synchronized (botList) {
-                allBotsDisconnected = botList.stream().noneMatch(Bot::isJoined);
-            }
-            if (allBotsDisconnected) {
-                return true;
-            }
+        } else if (bots.size() > 0 && bots.allMatch(bot -> !bot.isJoined())) {
+            return true;
         }
         return false;
     }
 
     @Override
     protected void after() {
-        for (Bot bot : botList) {
+        for (Bot bot : bots.snapshot()) {
             bot.disconnect("disconnect");
         }
     }
@@ -174,7 +162,7 @@ public class Experiment4MultiWalkAround extends Experiment {
     }
 
     public int currentNumberOfBots() {
-        return botList.size() + connectingBots.size();
+        return bots.size() + connectingBots.size();
     }
 
     public long getLastJoined() {
@@ -190,8 +178,9 @@ public class Experiment4MultiWalkAround extends Experiment {
     }
 
     public void disconnectBots(int num, String reason) {
-        for (int i = 0; i < Math.min(num, botList.size()); i++) {
-            botList.get(i).disconnect(reason);
+        List<Bot> snapshot = bots.snapshot();
+        for (int i = 0; i < Math.min(num, snapshot.size()); i++) {
+            snapshot.get(i).disconnect(reason);
         }
     }
 }
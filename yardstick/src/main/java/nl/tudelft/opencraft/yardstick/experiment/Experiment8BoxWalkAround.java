@@ -20,10 +20,8 @@ package nl.tudelft.opencraft.yardstick.experiment;
 
 import com.typesafe.config.Config;
 import java.time.Duration;
-import java.util.List;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import nl.tudelft.opencraft.yardstick.Yardstick;
 import nl.tudelft.opencraft.yardstick.bot.Bot;
 import nl.tudelft.opencraft.yardstick.bot.BotManager;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.TaskExecutor;
@@ -31,6 +29,7 @@ import nl.tudelft.opencraft.yardstick.bot.ai.task.TaskStatus;
 import nl.tudelft.opencraft.yardstick.game.GameArchitecture;
 import nl.tudelft.opencraft.yardstick.model.box.BoundingBoxMovementBuilder;
 import nl.tudelft.opencraft.yardstick.model.box.BoundingBoxMovementModel;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
 
 // TODO remove this class once we have a good BotModel interface.
 public class Experiment8BoxWalkAround extends Experiment {
@@ -61,15 +60,17 @@ public class Experiment8BoxWalkAround extends Experiment {
         botManager = new BotManager(game);
         botManager.setPlayerStepIncrease(numberOfBotsPerJoin);
         botManager.setPlayerCountTarget(botsTotal);
-        runningBotManager = Yardstick.THREAD_POOL.scheduleAtFixedRate(botManager, 0, timeBetweenJoins.getSeconds(),
+        runningBotManager = ThreadPools.getInstance().getScheduled(ThreadPools.IO).scheduleAtFixedRate(botManager, 0, timeBetweenJoins.getSeconds(),
                 TimeUnit.SECONDS);
     }
 
     @Override
     protected void tick() {
-        botManager.getConnectedBots().stream()
-                .filter(Bot::isJoined)
-                .forEach(this::botTick);
+        botManager.getRegistry().forEachActive(bot -> {
+            if (bot.isJoined()) {
+                botTick(bot);
+            }
+        });
     }
 
     private void botTick(Bot bot) {
@@ -88,9 +89,6 @@ public class Experiment8BoxWalkAround extends Experiment {
     @Override
     protected void after() {
         runningBotManager.cancel(false);
-        List<Bot> botList = botManager.getConnectedBots();
-        for (Bot bot : botList) {
-            bot.disconnect("disconnect");
-        }
+        botManager.getRegistry().forEach(bot -> bot.disconnect("disconnect"));
     }
 }
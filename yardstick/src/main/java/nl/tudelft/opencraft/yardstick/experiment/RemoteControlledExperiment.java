@@ -29,10 +29,13 @@ import io.javalin.core.validation.Validator;
 import io.javalin.http.Context;
 import io.javalin.plugin.json.JavalinJson;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
 import nl.tudelft.opencraft.yardstick.bot.Bot;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.Task;
 import nl.tudelft.opencraft.yardstick.bot.world.ConnectException;
 import nl.tudelft.opencraft.yardstick.game.GameArchitecture;
+import nl.tudelft.opencraft.yardstick.util.VirtualThreads;
 
 public class RemoteControlledExperiment extends Experiment {
 
@@ -107,15 +110,25 @@ public class RemoteControlledExperiment extends Experiment {
     }
 
     private void addPlayer(Context context) {
-        try {
-            Bot bot = createBot();
-            synchronized (bots) {
-                bots.put(bot.getName(), bot);
+        // Connecting blocks until the bot has joined, so do not hold up the HTTP worker
+        context.result(CompletableFuture.supplyAsync(() -> {
+            try {
+                Bot bot = createBot();
+                synchronized (bots) {
+                    bots.put(bot.getName(), bot);
+                }
+                return bot.getName();
+            } catch (ConnectException e) {
+                logger.log(Level.WARNING, "Could not add player", e);
+                context.status(502);
+                return "Could not connect player: " + e.getMessage();
+            } catch (InterruptedException e) {
+                logger.log(Level.WARNING, "Interrupted while adding player", e);
+                Thread.currentThread().interrupt();
+                context.status(503);
+                return "Interrupted while connecting player";
             }
-            context.result(bot.getName());
-        } catch (ConnectException | InterruptedException e) {
-            e.printStackTrace();
-        }
+        }, VirtualThreads.getInstance().getExecutor()));
     }
 
     @Override
@@ -0,0 +1,53 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A bot entering a phase of its connection to the server.
+ */
+@Name("yardstick.Connection")
+@Label("Connection Phase")
+@Category({"Yardstick", "Network"})
+@Description("A bot started connecting, joined the game, or disconnected")
+@StackTrace(false)
+public class ConnectionEvent extends Event {
+
+    @Label("Bot")
+    public String bot;
+
+    @Label("Phase")
+    @Description("CONNECTING, JOINED, DISCONNECTING or DISCONNECTED")
+    public String phase;
+
+    @Label("Since Connect")
+    @Description("Time since the bot started connecting")
+    @Timespan(Timespan.NANOSECONDS)
+    public long sinceConnect;
+
+    @Label("Reason")
+    public String reason;
+}
@@ -0,0 +1,120 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.jfr;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import jdk.jfr.EventType;
+
+/**
+ * Switches for the JDK Flight Recorder events of the emulator.
+ * <p>
+ * An event is only created if it is enabled in the configuration, and a
+ * running recording includes it, for example one started with
+ * {@code -XX:StartFlightRecording} or {@code jcmd <pid> JFR.start}. Until
+ * then, an enabled event costs a check and no allocation.
+ */
+public final class JfrEvents {
+
+    private static JfrEvents instance;
+
+    private final EventType packets;
+    private final EventType ticks;
+    private final EventType pathSearches;
+    private final EventType tasks;
+    private final EventType connections;
+
+    private JfrEvents(Config config) {
+        boolean enabled = config.getBoolean("enabled");
+        this.packets = enabled && config.getBoolean("packets") ? EventType.getEventType(PacketEvent.class) : null;
+        this.ticks = enabled && config.getBoolean("ticks") ? EventType.getEventType(BotTickEvent.class) : null;
+        this.pathSearches = enabled && config.getBoolean("path-searches")
+                ? EventType.getEventType(PathSearchEvent.class) : null;
+        this.tasks = enabled && config.getBoolean("tasks") ? EventType.getEventType(TaskTransitionEvent.class) : null;
+        this.connections = enabled && config.getBoolean("connections")
+                ? EventType.getEventType(ConnectionEvent.class) : null;
+    }
+
+    /**
+     * Sets up the events of this node.
+     *
+     * @param config the event configuration.
+     * @return the events.
+     * @throws IllegalStateException if the events have already been set up.
+     */
+    public static synchronized JfrEvents setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup JFR events twice");
+        }
+        instance = new JfrEvents(config);
+        return instance;
+    }
+
+    /**
+     * Returns the events of this node. If the events have not been set up,
+     * they are set up using the default configuration.
+     *
+     * @return the events.
+     */
+    public static synchronized JfrEvents getInstance() {
+        if (instance == null) {
+            instance = new JfrEvents(ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.jfr"));
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if a {@link PacketEvent} should be created.
+     */
+    public boolean isPacketEnabled() {
+        return isRecorded(packets);
+    }
+
+    /**
+     * @return true if a {@link BotTickEvent} should be created.
+     */
+    public boolean isTickEnabled() {
+        return isRecorded(ticks);
+    }
+
+    /**
+     * @return true if a {@link PathSearchEvent} should be created.
+     */
+    public boolean isPathSearchEnabled() {
+        return isRecorded(pathSearches);
+    }
+
+    /**
+     * @return true if a {@link TaskTransitionEvent} should be created.
+     */
+    public boolean isTaskEnabled() {
+        return isRecorded(tasks);
+    }
+
+    /**
+     * @return true if a {@link ConnectionEvent} should be created.
+     */
+    public boolean isConnectionEnabled() {
+        return isRecorded(connections);
+    }
+
+    private static boolean isRecorded(EventType type) {
+        return type != null && type.isEnabled();
+    }
+}
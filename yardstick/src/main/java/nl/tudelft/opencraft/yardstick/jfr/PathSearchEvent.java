@@ -0,0 +1,51 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A path search of the A* search.
+ */
+@Name("yardstick.PathSearch")
+@Label("Path Search")
+@Category({"Yardstick", "Pathfinding"})
+@Description("An A* search for a path between two blocks")
+@StackTrace(false)
+public class PathSearchEvent extends Event {
+
+    @Label("Start")
+    public String start;
+
+    @Label("End")
+    public String end;
+
+    @Label("Expansions")
+    @Description("Number of nodes expanded by the search")
+    public int expansions;
+
+    @Label("Result")
+    @Description("FOUND, NOT_FOUND, BUDGET_EXCEEDED, CANCELLED or CHUNK_NOT_LOADED")
+    public String result;
+}
@@ -0,0 +1,53 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A change of the status of a task of a bot.
+ */
+@Name("yardstick.TaskTransition")
+@Label("Task Transition")
+@Category({"Yardstick", "Tick"})
+@Description("The status of a task changed")
+@StackTrace(false)
+public class TaskTransitionEvent extends Event {
+
+    @Label("Bot")
+    public String bot;
+
+    @Label("Task")
+    public String task;
+
+    @Label("From")
+    @Description("The previous status, or NEW for the first tick of the task")
+    public String from;
+
+    @Label("To")
+    public String to;
+
+    @Label("Message")
+    public String message;
+}
@@ -19,8 +19,11 @@
 package nl.tudelft.opencraft.yardstick.model;
 
 import science.atlarge.opencraft.mcprotocollib.data.game.entity.metadata.Position;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import nl.tudelft.opencraft.yardstick.bot.Bot;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.flowfield.FlowField;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.flowfield.FlowFieldService;
+import nl.tudelft.opencraft.yardstick.bot.ai.task.FlowFieldTaskExecutor;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.TaskExecutor;
 import nl.tudelft.opencraft.yardstick.bot.ai.task.WalkTaskExecutor;
 import nl.tudelft.opencraft.yardstick.bot.world.Block;
@@ -36,10 +39,8 @@ import nl.tudelft.opencraft.yardstick.util.ZigZagRange;
  */
 public class SimpleMovementModel implements BotModel {
 
-    private static final Random RANDOM = new Random(System.nanoTime());
-
     private final boolean anchored;
-    private Vector3d anchor;
+    private volatile Vector3d anchor;
     private final int boxDiameter;
 
     public SimpleMovementModel() {
@@ -59,11 +60,38 @@ public class SimpleMovementModel implements BotModel {
 
     @Override
     public TaskExecutor newTask(Bot bot) {
+        if (anchored) {
+            // Bots returning to the anchor share one flow field instead of each searching a path
+            TaskExecutor returnTask = newReturnTask(bot);
+            if (returnTask != null) {
+                return returnTask;
+            }
+        }
         return new WalkTaskExecutor(bot, newTargetLocation(bot));
     }
 
+    /**
+     * @return a task following the flow field to the anchor, or null if the
+     * bot is already in the field around the anchor, or the flow field does
+     * not cover the bot yet.
+     */
+    private TaskExecutor newReturnTask(Bot bot) {
+        Vector3d anchor = getStartLocation(bot);
+        Vector3d location = bot.getPlayer().getLocation();
+        if (Math.abs(location.getX() - anchor.getX()) <= boxDiameter / 2.0
+                && Math.abs(location.getZ() - anchor.getZ()) <= boxDiameter / 2.0) {
+            return null;
+        }
+
+        FlowField field = FlowFieldService.getInstance().getField(bot, anchor.intVector());
+        if (!field.isReady() || !field.covers(location.intVector())) {
+            return null;
+        }
+        return new FlowFieldTaskExecutor(bot, field, boxDiameter / 2);
+    }
+
     public Vector3i newTargetLocation(Bot bot) {
-        if (RANDOM.nextDouble() < 0.1) {
+        if (ThreadLocalRandom.current().nextDouble() < 0.1) {
             return getNewLongDistanceTarget(bot);
         } else {
             return getNewFieldLocation(bot);
@@ -83,8 +111,8 @@ public class SimpleMovementModel implements BotModel {
         int maxz = ((int) originalLocation.getZ()) + boxDiameter / 2;
         int minz = ((int) originalLocation.getZ()) - boxDiameter / 2;
 
-        int newX = (int) (Math.floor(RANDOM.nextInt(maxx - minx) + minx) + 0.5);
-        int newZ = (int) (Math.floor(RANDOM.nextInt(maxz - minz) + minz) + 0.5);
+        int newX = (int) (Math.floor(ThreadLocalRandom.current().nextInt(maxx - minx) + minx) + 0.5);
+        int newZ = (int) (Math.floor(ThreadLocalRandom.current().nextInt(maxz - minz) + minz) + 0.5);
 
         return getTargetAt(bot, newX, newZ);
     }
@@ -104,8 +132,8 @@ public class SimpleMovementModel implements BotModel {
         // TODO make param for this value.
         int maxDist = 64 * 5;
         int minDist = 64 * 1;
-        int distance = RANDOM.nextInt(maxDist - minDist) + minDist;
-        int angle = RANDOM.nextInt(360);
+        int distance = ThreadLocalRandom.current().nextInt(maxDist - minDist) + minDist;
+        int angle = ThreadLocalRandom.current().nextInt(360);
 
         Vector3d location = getStartLocation(bot);
         int newX = (int) (Math.floor(location.getX() + (distance * Math.cos(angle))) + 0.5);
@@ -1,6 +1,6 @@
 package nl.tudelft.opencraft.yardstick.model;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import nl.tudelft.opencraft.yardstick.bot.Bot;
 import nl.tudelft.opencraft.yardstick.bot.world.Block;
 import nl.tudelft.opencraft.yardstick.bot.world.BlockFace;
@@ -13,8 +13,6 @@ import org.jetbrains.annotations.NotNull;
 
 public class TargetLocation {
 
-    private static final Random random = new Random();
-
     /**
      * Function to make bot walk in a specific area.
      *
@@ -28,8 +26,8 @@ public class TargetLocation {
         int maxz = center.getZ() + radius;
         int minz = center.getZ() - radius;
 
-        int newX = (int) (Math.floor(random.nextInt(maxx - minx) + minx) + 0.5);
-        int newZ = (int) (Math.floor(random.nextInt(maxz - minz) + minz) + 0.5);
+        int newX = (int) (Math.floor(ThreadLocalRandom.current().nextInt(maxx - minx) + minx) + 0.5);
+        int newZ = (int) (Math.floor(ThreadLocalRandom.current().nextInt(maxz - minz) + minz) + 0.5);
 
         return getTargetAt(bot, newX, newZ);
     }
@@ -0,0 +1,152 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.tudelft.opencraft.yardstick.Yardstick;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+
+/**
+ * Utility class to merge the histogram snapshots of several nodes, written
+ * by {@link HistogramSnapshots}, into percentiles of the whole experiment.
+ * <p>
+ * Snapshots are put in windows by the middle of their interval, and all
+ * snapshots of a distribution in the same window are added. As the
+ * histograms are added rather than their percentiles, the percentiles of
+ * the merged histogram are those of all values of all nodes, within the
+ * precision of the histograms. The result is a CSV file with one row per
+ * window and distribution, followed by one row per distribution for the
+ * whole experiment. Each row counts the nodes that contributed to it.
+ */
+public class HistogramMerger {
+
+    private static final Logger LOGGER = Yardstick.LOGGER.newSubLogger("Histogram Merger");
+    private static final String TOTAL = "total";
+
+    private HistogramMerger() {
+    }
+
+    /**
+     * Merges histogram snapshot logs into a CSV-formatted file. The input
+     * files must exist, the output file may.
+     *
+     * @param inFileNames   the input filenames, separated by commas.
+     * @param outFileName   the output filename.
+     * @param windowSeconds the length of the windows in seconds.
+     * @return true if all input files were merged into the output file.
+     */
+    public static boolean merge(String inFileNames, String outFileName, int windowSeconds) {
+        long windowMillis = Math.max(1, windowSeconds) * 1000L;
+        // Distribution -> window start -> merged histogram
+        Map<String, Map<Long, Histogram>> merged = new TreeMap<>();
+        Map<String, Histogram> totals = new TreeMap<>();
+        // Distribution -> window start -> nodes
+        Map<String, Map<Long, Set<String>>> windowNodes = new TreeMap<>();
+        Map<String, Set<String>> totalNodes = new TreeMap<>();
+
+        List<File> inFiles = new ArrayList<>();
+        for (String inFileName : inFileNames.split(",")) {
+            File inFile = new File(inFileName.trim());
+            if (!inFile.exists() || !inFile.isFile()) {
+                LOGGER.severe("File does not exist: " + inFileName);
+                return false;
+            }
+            inFiles.add(inFile);
+        }
+
+        for (File inFile : inFiles) {
+            LOGGER.info("Reading: " + inFile);
+            try {
+                HistogramLogReader reader = new HistogramLogReader(inFile);
+                EncodableHistogram encoded;
+                while ((encoded = reader.nextIntervalHistogram()) != null) {
+                    if (!(encoded instanceof Histogram)) {
+                        continue;
+                    }
+                    Histogram histogram = (Histogram) encoded;
+                    String tag = histogram.getTag() == null ? "untagged" : histogram.getTag();
+                    long middle = (histogram.getStartTimeStamp() + histogram.getEndTimeStamp()) / 2;
+                    long window = middle - middle % windowMillis;
+
+                    add(merged.computeIfAbsent(tag, t -> new TreeMap<>()), window, histogram);
+                    add(totals, tag, histogram);
+                    windowNodes.computeIfAbsent(tag, t -> new TreeMap<>())
+                            .computeIfAbsent(window, w -> new HashSet<>()).add(inFile.getPath());
+                    totalNodes.computeIfAbsent(tag, t -> new HashSet<>()).add(inFile.getPath());
+                }
+            } catch (FileNotFoundException e) {
+                LOGGER.log(Level.SEVERE, "Could not read " + inFile, e);
+                return false;
+            }
+        }
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFileName), StandardCharsets.UTF_8))) {
+            out.write("window,distribution,nodes,count,min,mean,p50,p90,p99,p99.9,max\n");
+            for (Map.Entry<String, Map<Long, Histogram>> distribution : merged.entrySet()) {
+                String tag = distribution.getKey();
+                for (Map.Entry<Long, Histogram> window : distribution.getValue().entrySet()) {
+                    int nodeCount = windowNodes.get(tag).get(window.getKey()).size();
+                    writeRow(out, Long.toString(window.getKey()), tag, nodeCount, window.getValue());
+                }
+                writeRow(out, TOTAL, tag, totalNodes.get(tag).size(), totals.get(tag));
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not write " + outFileName, e);
+            return false;
+        }
+        LOGGER.info("Merged " + merged.size() + " distributions into " + outFileName);
+        return true;
+    }
+
+    private static <K> void add(Map<K, Histogram> histograms, K key, Histogram histogram) {
+        Histogram sum = histograms.get(key);
+        if (sum == null) {
+            sum = new Histogram(histogram.getNumberOfSignificantValueDigits());
+            histograms.put(key, sum);
+        }
+        sum.add(histogram);
+    }
+
+    private static void writeRow(Writer out, String window, String distribution, int nodes, Histogram histogram)
+            throws IOException {
+        out.write(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%d,%d,%d,%d,%d\n", window, distribution, nodes,
+                histogram.getTotalCount(), histogram.getMinValue(), histogram.getMean(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue()));
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Writes periodic HdrHistogram snapshots of the latency and size
+ * distributions of this node, so they can be merged across nodes.
+ * <p>
+ * Prometheus summaries cannot be merged, and histograms with fixed buckets
+ * only give approximate percentiles. Instead, every distribution records
+ * into an HdrHistogram {@link Recorder}. Once per interval, the histogram of
+ * each distribution is appended to one interval log per node,
+ * {@code histograms-<nodeID>.hlog}, tagged with the name of the
+ * distribution. The intervals start at multiples of the interval on the
+ * wall clock, so the windows of all nodes line up. {@link HistogramMerger}
+ * merges the logs of all nodes into exact percentiles per window.
+ * <p>
+ * Values are recorded in the unit of the distribution: nanoseconds for
+ * durations, bytes for sizes.
+ */
+public class HistogramSnapshots {
+
+    private static HistogramSnapshots instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(HistogramSnapshots.class.getSimpleName());
+    private final boolean enabled;
+    private final int digits;
+    private final Map<String, Distribution> distributions = new ConcurrentHashMap<>();
+    private PrintStream logStream;
+    private HistogramLogWriter logWriter;
+    private ScheduledFuture<?> snapshots;
+
+    /**
+     * Creates new snapshots, and starts writing them.
+     *
+     * @param config the histogram configuration, see reference.conf.
+     * @param file   the interval log to write to.
+     */
+    public HistogramSnapshots(Config config, File file) {
+        this.digits = config.getInt("significant-digits");
+        boolean enabled = config.getBoolean("enabled");
+        if (enabled) {
+            try {
+                logStream = new PrintStream(file);
+                logWriter = new HistogramLogWriter(logStream);
+                logWriter.outputLogFormatVersion();
+                logWriter.outputStartTime(System.currentTimeMillis());
+                logWriter.outputLegend();
+            } catch (FileNotFoundException e) {
+                logger.log(Level.WARNING, "Could not write histogram snapshots to " + file, e);
+                enabled = false;
+            }
+        }
+        this.enabled = enabled;
+        if (!enabled) {
+            return;
+        }
+
+        long intervalMillis = config.getDuration("interval", TimeUnit.MILLISECONDS);
+        long delayMillis = intervalMillis - System.currentTimeMillis() % intervalMillis;
+        snapshots = ThreadPools.getInstance().getScheduled(ThreadPools.IO)
+                .scheduleAtFixedRate(this::snapshot, delayMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "histogram-snapshots-close"));
+        logger.info("Writing histogram snapshots to " + file);
+    }
+
+    /**
+     * Sets up the snapshots of this node.
+     *
+     * @param config the histogram configuration.
+     * @param nodeID the ID of this node, used in the file name.
+     * @return the snapshots.
+     * @throws IllegalStateException if the snapshots have already been set
+     *                               up.
+     */
+    public static synchronized HistogramSnapshots setup(Config config, int nodeID) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup histogram snapshots twice");
+        }
+        instance = new HistogramSnapshots(config, new File(String.format(config.getString("file"), nodeID)));
+        return instance;
+    }
+
+    /**
+     * Returns the snapshots of this node. If they have not been set up,
+     * disabled snapshots are returned, so that nothing is written.
+     *
+     * @return the snapshots.
+     */
+    public static synchronized HistogramSnapshots getInstance() {
+        if (instance == null) {
+            Config config = ConfigFactory.defaultReference()
+                    .getConfig("yardstick.player-emulation.arguments.metrics.histograms")
+                    .withValue("enabled", ConfigValueFactory.fromAnyRef(false));
+            instance = new HistogramSnapshots(config, new File(String.format(config.getString("file"), 0)));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the distribution with the given name, creating it if needed.
+     * If snapshots are disabled, the distribution ignores its values.
+     *
+     * @param name             the name of the distribution, used as tag in
+     *                         the log. Characters other than letters, digits,
+     *                         '-', '_' and '.' are replaced.
+     * @param highestTrackable the highest value that can be recorded. Higher
+     *                         values are recorded as this value.
+     * @return the distribution.
+     */
+    public Distribution register(String name, long highestTrackable) {
+        String tag = name.replaceAll("[^A-Za-z0-9_.-]", "_");
+        return distributions.computeIfAbsent(tag, t -> new Distribution(t, highestTrackable));
+    }
+
+    private synchronized void snapshot() {
+        if (logWriter == null) {
+            return;
+        }
+        try {
+            for (Distribution distribution : distributions.values()) {
+                distribution.interval = distribution.recorder.getIntervalHistogram(distribution.interval);
+                if (distribution.interval.getTotalCount() > 0) {
+                    distribution.interval.setTag(distribution.tag);
+                    logWriter.outputIntervalHistogram(distribution.interval);
+                }
+            }
+            logStream.flush();
+        } catch (RuntimeException e) {
+            // Keep the schedule alive
+            logger.log(Level.WARNING, "Could not write histogram snapshots", e);
+        }
+    }
+
+    /**
+     * Writes the last snapshot, and closes the log.
+     */
+    public synchronized void close() {
+        if (logWriter == null) {
+            return;
+        }
+        if (snapshots != null) {
+            snapshots.cancel(false);
+        }
+        snapshot();
+        logStream.close();
+        logWriter = null;
+    }
+
+    /**
+     * A distribution of values of this node. May be recorded from any
+     * thread.
+     */
+    public final class Distribution {
+
+        private final String tag;
+        private final long highestTrackable;
+        private final Recorder recorder;
+        private Histogram interval;
+
+        private Distribution(String tag, long highestTrackable) {
+            this.tag = tag;
+            this.highestTrackable = highestTrackable;
+            this.recorder = enabled ? new Recorder(highestTrackable, digits) : null;
+        }
+
+        /**
+         * Records a value.
+         *
+         * @param value the value.
+         */
+        public void record(long value) {
+            if (recorder != null) {
+                recorder.recordValue(Math.max(0, Math.min(value, highestTrackable)));
+            }
+        }
+
+        /**
+         * Records a value, and fills in the values that were missed if
+         * values were expected at the given interval, like
+         * {@link Recorder#recordValueWithExpectedInterval(long, long)}.
+         *
+         * @param value            the value.
+         * @param expectedInterval the interval at which values are expected.
+         */
+        public void recordWithExpectedInterval(long value, long expectedInterval) {
+            if (recorder != null) {
+                recorder.recordValueWithExpectedInterval(Math.max(0, Math.min(value, highestTrackable)), expectedInterval);
+            }
+        }
+    }
+}
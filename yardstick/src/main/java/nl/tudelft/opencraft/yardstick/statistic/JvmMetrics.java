@@ -0,0 +1,240 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.OperatingSystemMXBean;
+import com.sun.management.ThreadMXBean;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+
+/**
+ * Exports the health of the emulator JVM next to the game metrics, so every
+ * run shows whether the emulator itself ran smoothly while it measured the
+ * game.
+ * <p>
+ * Collections are reported by GC notifications: their durations go into
+ * {@code yardstick_jvm_gc_pause_seconds}, per collector and action, and the
+ * heap in use after each collection into
+ * {@code yardstick_jvm_heap_after_gc_bytes}. Collectors that mostly run
+ * concurrently, such as {@code G1 Concurrent GC} or {@code ZGC Cycles},
+ * report the length of their cycle rather than a pause. Time spent in
+ * safepoints, to reach them and at them, is read from the JDK Flight
+ * Recorder. Allocated bytes, thread counts and CPU load are read from the
+ * management beans whenever the metrics are collected.
+ */
+public class JvmMetrics {
+
+    private static final String SAFEPOINT_BEGIN_EVENT = "jdk.SafepointBegin";
+    private static final String VM_OPERATION_EVENT = "jdk.ExecuteVMOperation";
+
+    private static final Histogram GC_PAUSE = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("jvm")
+            .name("gc_pause_seconds")
+            .help("Duration of garbage collections of the emulator, per collector and action")
+            .labelNames("gc", "action")
+            .buckets(0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+            .register();
+    private static final Gauge HEAP_AFTER_GC = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("jvm")
+            .name("heap_after_gc_bytes")
+            .help("Heap in use by the emulator after its last garbage collection")
+            .register();
+    private static final Counter SAFEPOINT_TIME = Counter.build()
+            .namespace("yardstick")
+            .subsystem("jvm")
+            .name("safepoint_seconds_total")
+            .help("Time the emulator threads were stopped for safepoints, to reach them (sync) and at them (operation)")
+            .labelNames("phase")
+            .register();
+
+    private static JvmMetrics instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(JvmMetrics.class.getSimpleName());
+    private final Set<String> heapPools = new HashSet<>();
+    private final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final OperatingSystemMXBean os;
+
+    /**
+     * Creates new JVM metrics and starts listening for collections.
+     *
+     * @param config the JVM metrics configuration, see reference.conf.
+     */
+    public JvmMetrics(Config config) {
+        java.lang.management.OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        this.os = bean instanceof OperatingSystemMXBean ? (OperatingSystemMXBean) bean : null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+
+        if (config.getBoolean("enabled")) {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    ((NotificationEmitter) collector).addNotificationListener(
+                            (notification, handback) -> collected(notification), null, null);
+                }
+            }
+            new JvmCollector().register(CollectorRegistry.defaultRegistry);
+            if (config.getBoolean("safepoints")) {
+                startSafepointRecording();
+            }
+        }
+    }
+
+    /**
+     * Sets up the JVM metrics of this node.
+     *
+     * @param config the JVM metrics configuration.
+     * @return the JVM metrics.
+     * @throws IllegalStateException if the JVM metrics have already been set
+     *                               up.
+     */
+    public static synchronized JvmMetrics setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup JVM metrics twice");
+        }
+        instance = new JvmMetrics(config);
+        return instance;
+    }
+
+    /**
+     * Returns the JVM metrics of this node. If they have not been set up,
+     * they are set up using the default configuration.
+     *
+     * @return the JVM metrics.
+     */
+    public static synchronized JvmMetrics getInstance() {
+        if (instance == null) {
+            instance = new JvmMetrics(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.jvm-metrics"));
+        }
+        return instance;
+    }
+
+    private void collected(Notification notification) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                (CompositeData) notification.getUserData());
+        GC_PAUSE.labels(info.getGcName(), info.getGcAction()).observe(info.getGcInfo().getDuration() / 1e3);
+
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) {
+                used += pool.getValue().getUsed();
+            }
+        }
+        HEAP_AFTER_GC.set(used);
+    }
+
+    private void startSafepointRecording() {
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable(SAFEPOINT_BEGIN_EVENT);
+            recording.enable(VM_OPERATION_EVENT);
+            recording.onEvent(SAFEPOINT_BEGIN_EVENT, this::reportSafepoint);
+            recording.onEvent(VM_OPERATION_EVENT, this::reportSafepoint);
+            recording.startAsync();
+        } catch (IllegalStateException | SecurityException e) {
+            logger.log(Level.WARNING, "Could not record safepoints", e);
+        }
+    }
+
+    private void reportSafepoint(RecordedEvent event) {
+        double seconds = event.getDuration().toNanos() / 1e9;
+        if (event.getEventType().getName().equals(SAFEPOINT_BEGIN_EVENT)) {
+            SAFEPOINT_TIME.labels("sync").inc(seconds);
+        } else if (event.hasField("safepoint") && event.getBoolean("safepoint")) {
+            SAFEPOINT_TIME.labels("operation").inc(seconds);
+        }
+    }
+
+    /**
+     * Reads the management beans when the metrics are collected.
+     */
+    private class JvmCollector extends Collector {
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            List<MetricFamilySamples> families = new ArrayList<>();
+            if (threads instanceof ThreadMXBean) {
+                families.add(single("yardstick_jvm_allocated_bytes_total", Type.COUNTER,
+                        "Bytes allocated on the heap by the emulator. Its rate is the allocation rate",
+                        ((ThreadMXBean) threads).getTotalThreadAllocatedBytes()));
+            }
+
+            List<MetricFamilySamples.Sample> threadSamples = new ArrayList<>();
+            List<String> state = Collections.singletonList("state");
+            threadSamples.add(new MetricFamilySamples.Sample("yardstick_jvm_threads", state,
+                    Collections.singletonList("live"), threads.getThreadCount()));
+            threadSamples.add(new MetricFamilySamples.Sample("yardstick_jvm_threads", state,
+                    Collections.singletonList("daemon"), threads.getDaemonThreadCount()));
+            threadSamples.add(new MetricFamilySamples.Sample("yardstick_jvm_threads", state,
+                    Collections.singletonList("peak"), threads.getPeakThreadCount()));
+            families.add(new MetricFamilySamples("yardstick_jvm_threads", Type.GAUGE,
+                    "Platform threads of the emulator", threadSamples));
+            families.add(single("yardstick_jvm_threads_started_total", Type.COUNTER,
+                    "Platform threads started by the emulator", threads.getTotalStartedThreadCount()));
+
+            if (os != null) {
+                families.add(single("yardstick_jvm_process_cpu_seconds_total", Type.COUNTER,
+                        "CPU time used by the emulator", os.getProcessCpuTime() / 1e9));
+                families.add(single("yardstick_jvm_process_cpu_ratio", Type.GAUGE,
+                        "Recent CPU load of the emulator process, from 0 to 1", os.getProcessCpuLoad()));
+                families.add(single("yardstick_jvm_system_cpu_ratio", Type.GAUGE,
+                        "Recent CPU load of the whole machine running the emulator, from 0 to 1", os.getCpuLoad()));
+            }
+            return families;
+        }
+
+        private MetricFamilySamples single(String name, Type type, String help, double value) {
+            return new MetricFamilySamples(name, type, help, Collections.singletonList(
+                    new MetricFamilySamples.Sample(name, Collections.emptyList(), Collections.emptyList(), value)));
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.typesafe.config.Config;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+import nl.tudelft.opencraft.yardstick.util.OverloadDetector;
+import nl.tudelft.opencraft.yardstick.util.PauseTracker;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Records latencies in an HdrHistogram, for use by any experiment.
+ * <p>
+ * Latencies are measured in nanoseconds, with {@link System#nanoTime()}.
+ * Each latency is recorded with the interval at which the probe is sent
+ * while the server keeps up. When the server stalls, a probe which waits for
+ * the previous reply stalls with it, so the samples that were not taken
+ * meanwhile are filled in, instead of being left out (coordinated omission).
+ * An expected interval of zero records the latencies as measured.
+ * <p>
+ * Once per window, the histogram of the window is appended to an interval
+ * histogram log, {@code latency-<name>.hlog}, and its p50, p99, p99.9 and
+ * max are logged and exported to Prometheus. The log can be processed with
+ * the HdrHistogram tools, such as HistogramLogProcessor. The latencies are
+ * also part of the {@link HistogramSnapshots} of the node, to be merged with
+ * those of other nodes.
+ * <p>
+ * Samples taken while the emulator itself was paused, according to the
+ * {@link PauseTracker}, measure the pause as much as the game. They are
+ * counted, and also recorded in a second histogram, which is written to the
+ * log with the tag {@code paused}. If {@code exclude-paused} is set, they are
+ * left out of the main histogram.
+ */
+public class LatencyRecorder implements AutoCloseable {
+
+    private static final Gauge LATENCY = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("latency")
+            .name("seconds")
+            .help("Latency in the last window, per recorder and quantile")
+            .labelNames("recorder", "quantile")
+            .register();
+    private static final Counter SAMPLES = Counter.build()
+            .namespace("yardstick")
+            .subsystem("latency")
+            .name("samples_total")
+            .help("Number of latencies measured, without the samples filled in for coordinated omission")
+            .labelNames("recorder")
+            .register();
+    private static final Counter PAUSED_SAMPLES = Counter.build()
+            .namespace("yardstick")
+            .subsystem("latency")
+            .name("paused_samples_total")
+            .help("Number of latencies measured while the emulator was paused")
+            .labelNames("recorder")
+            .register();
+    private static final String PAUSED_TAG = "paused";
+
+    private final SubLogger logger;
+    private final String name;
+    private final long expectedIntervalNanos;
+    private final long highestTrackableNanos;
+    private final boolean excludePaused;
+    private final PauseTracker pauses = PauseTracker.getInstance();
+    private final Recorder recorder;
+    private final Recorder pausedRecorder;
+    private final HistogramSnapshots.Distribution snapshot;
+    private final Histogram total;
+    private final Histogram pausedTotal;
+    private final PrintStream logStream;
+    private final HistogramLogWriter logWriter;
+    private final ScheduledFuture<?> window;
+    private Histogram interval;
+    private Histogram pausedInterval;
+    private boolean closed;
+
+    /**
+     * Creates a new recorder, and starts writing its interval histogram log.
+     *
+     * @param name             the name of the recorder, used in the log file
+     *                         name and metric labels.
+     * @param expectedInterval the interval at which latencies are measured if
+     *                         the server does not stall, or zero to record
+     *                         latencies without correction.
+     * @param config           the latency configuration, see reference.conf.
+     */
+    public LatencyRecorder(String name, Duration expectedInterval, Config config) {
+        this.logger = GlobalLogger.getLogger().newSubLogger("Latency " + name);
+        this.name = name;
+        this.expectedIntervalNanos = expectedInterval.toNanos();
+        this.highestTrackableNanos = config.getDuration("highest-trackable", TimeUnit.NANOSECONDS);
+        int digits = config.getInt("significant-digits");
+        this.excludePaused = config.getBoolean("exclude-paused");
+        this.recorder = new Recorder(highestTrackableNanos, digits);
+        this.pausedRecorder = new Recorder(highestTrackableNanos, digits);
+        this.total = new Histogram(highestTrackableNanos, digits);
+        this.pausedTotal = new Histogram(highestTrackableNanos, digits);
+        this.snapshot = HistogramSnapshots.getInstance().register("latency-" + name, highestTrackableNanos);
+
+        long startMillis = System.currentTimeMillis();
+        File file = new File(config.getString("log-directory"), "latency-" + name + ".hlog");
+        PrintStream stream = null;
+        HistogramLogWriter writer = null;
+        try {
+            stream = new PrintStream(file);
+            writer = new HistogramLogWriter(stream);
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(startMillis);
+            writer.setBaseTime(startMillis);
+            writer.outputLegend();
+        } catch (FileNotFoundException e) {
+            logger.log(Level.WARNING, "Could not create latency log " + file + ", only reporting windows", e);
+        }
+        this.logStream = stream;
+        this.logWriter = writer;
+
+        long windowNanos = config.getDuration("window", TimeUnit.NANOSECONDS);
+        this.window = ThreadPools.getInstance().getScheduled(ThreadPools.IO)
+                .scheduleAtFixedRate(this::rollWindow, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a latency which ended just now. May be called from any thread.
+     *
+     * @param latencyNanos the latency in nanoseconds.
+     */
+    public void record(long latencyNanos) {
+        long end = System.nanoTime();
+        record(end - latencyNanos, end);
+    }
+
+    /**
+     * Records the latency between the given start and end. May be called
+     * from any thread.
+     *
+     * @param startNanos the start, from {@link System#nanoTime()}.
+     * @param endNanos   the end, from {@link System#nanoTime()}.
+     * @return true if the emulator was paused during the latency, so the
+     * sample was counted as paused.
+     */
+    public boolean record(long startNanos, long endNanos) {
+        long clamped = Math.max(0, Math.min(endNanos - startNanos, highestTrackableNanos));
+        SAMPLES.labels(name).inc();
+        boolean paused = pauses.overlaps(startNanos, endNanos);
+        if (paused) {
+            PAUSED_SAMPLES.labels(name).inc();
+            pausedRecorder.recordValueWithExpectedInterval(clamped, expectedIntervalNanos);
+        }
+        if (!paused || !excludePaused) {
+            recorder.recordValueWithExpectedInterval(clamped, expectedIntervalNanos);
+            snapshot.recordWithExpectedInterval(clamped, expectedIntervalNanos);
+        }
+        return paused;
+    }
+
+    private synchronized void rollWindow() {
+        if (closed) {
+            return;
+        }
+        try {
+            interval = recorder.getIntervalHistogram(interval);
+            pausedInterval = pausedRecorder.getIntervalHistogram(pausedInterval);
+            pausedInterval.setTag(PAUSED_TAG);
+            total.add(interval);
+            pausedTotal.add(pausedInterval);
+            if (logWriter != null) {
+                logWriter.outputIntervalHistogram(interval);
+                if (pausedInterval.getTotalCount() > 0) {
+                    logWriter.outputIntervalHistogram(pausedInterval);
+                }
+                logStream.flush();
+            }
+            report("window", interval, pausedInterval.getTotalCount());
+        } catch (RuntimeException e) {
+            // Keep the schedule alive
+            logger.log(Level.WARNING, "Could not write latency window", e);
+        }
+    }
+
+    private void report(String what, Histogram histogram, long paused) {
+        if (histogram.getTotalCount() == 0) {
+            return;
+        }
+        double p50 = histogram.getValueAtPercentile(50) / 1e6;
+        double p99 = histogram.getValueAtPercentile(99) / 1e6;
+        double p999 = histogram.getValueAtPercentile(99.9) / 1e6;
+        double max = histogram.getMaxValue() / 1e6;
+        LATENCY.labels(name, "0.5").set(p50 / 1e3);
+        LATENCY.labels(name, "0.99").set(p99 / 1e3);
+        LATENCY.labels(name, "0.999").set(p999 / 1e3);
+        LATENCY.labels(name, "1").set(max / 1e3);
+        logger.info(String.format("latency %s n=%d p50=%.3f ms p99=%.3f ms p99.9=%.3f ms max=%.3f ms paused=%d%s%s",
+                what, histogram.getTotalCount(), p50, p99, p999, max, paused,
+                excludePaused ? " (excluded)" : "",
+                OverloadDetector.getInstance().isHealthy() ? "" : " (emulator overloaded)"));
+    }
+
+    /**
+     * Writes the last window, reports the latencies of the whole run, and
+     * closes the log.
+     */
+    @Override
+    public void close() {
+        window.cancel(false);
+        rollWindow();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            report("total", total, pausedTotal.getTotalCount());
+            if (logStream != null) {
+                logStream.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import nl.tudelft.opencraft.yardstick.Yardstick;
+
+/**
+ * Utility class to convert metrics recorded by {@link MetricsRecorder} to
+ * CSV-formatted files, with one row per sample of a series.
+ */
+public class MetricsCsvConverter {
+
+    private static final Logger LOGGER = Yardstick.LOGGER.newSubLogger("Metrics CSV Converter");
+
+    private MetricsCsvConverter() {
+    }
+
+    /**
+     * Convert a metrics recording to a CSV-formatted file. The input file
+     * must exist, the output file may.
+     *
+     * @param inFileName  the input filename.
+     * @param outFileName the output filename.
+     */
+    public static void convertCsv(String inFileName, String outFileName) {
+        File inFile = new File(inFileName);
+        File outFile = new File(outFileName);
+
+        if (!inFile.exists() || !inFile.isFile()) {
+            LOGGER.severe("File does not exist: " + inFileName);
+            return;
+        }
+
+        LOGGER.info("Converting: " + inFileName);
+        long samples = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(inFile))));
+             Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8))) {
+            if (in.readInt() != MetricsRecorder.MAGIC) {
+                LOGGER.severe("Not a metrics recording: " + inFileName);
+                return;
+            }
+            int version = in.readInt();
+            if (version != MetricsRecorder.VERSION) {
+                LOGGER.severe("Unsupported metrics recording version: " + version);
+                return;
+            }
+
+            out.write("timestamp,name,labels,value\n");
+            List<String[]> series = new ArrayList<>();
+            List<Long> previous = new ArrayList<>();
+            while (true) {
+                int newSeries;
+                try {
+                    newSeries = in.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+                for (int i = 0; i < newSeries; i++) {
+                    series.add(split(in.readUTF()));
+                    previous.add(Double.doubleToRawLongBits(Double.NaN));
+                }
+
+                int rows = in.readInt();
+                long[] timestamps = new long[rows];
+                long last = 0;
+                for (int row = 0; row < rows; row++) {
+                    last += in.readLong();
+                    timestamps[row] = last;
+                }
+
+                int columns = in.readInt();
+                for (int s = 0; s < columns; s++) {
+                    String[] nameAndLabels = series.get(s);
+                    long prev = previous.get(s);
+                    for (int row = 0; row < rows; row++) {
+                        prev ^= in.readLong();
+                        double value = Double.longBitsToDouble(prev);
+                        if (!Double.isNaN(value)) {
+                            out.write(timestamps[row] + "," + nameAndLabels[0] + "," + nameAndLabels[1] + "," + value + "\n");
+                            samples++;
+                        }
+                    }
+                    previous.set(s, prev);
+                }
+            }
+            LOGGER.info("Converted " + samples + " samples of " + series.size() + " series");
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Could not convert to CSV: " + outFileName + ". At sample: " + samples, ex);
+        }
+    }
+
+    /**
+     * Splits a series key into its name and its labels, quoted for CSV.
+     */
+    private static String[] split(String key) {
+        int brace = key.indexOf('{');
+        if (brace < 0) {
+            return new String[]{key, ""};
+        }
+        String labels = key.substring(brace + 1, key.length() - 1);
+        return new String[]{key.substring(0, brace), "\"" + labels.replace("\"", "\"\"") + "\""};
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+
+/**
+ * Makes the metrics of the default registry available outside the emulator.
+ * <p>
+ * In scrape mode, the emulator serves the metrics itself at
+ * {@code /metrics}, so runs do not depend on a push gateway. Each node
+ * serves on the configured port plus its node ID, so several nodes can run
+ * on one host. If the port is taken, the node does not serve its metrics,
+ * but still writes the final snapshot. Collecting all
+ * metrics is not free, so scrapes within the configured resolution of the
+ * previous one get the same values. All counters are cumulative, so the
+ * scraper computes deltas and rates, and a missed scrape loses no counts.
+ * In push mode, the registry is pushed to a push gateway by a
+ * {@link StatisticsPusher}.
+ * <p>
+ * When the JVM shuts down, including through {@link System#exit(int)} at the
+ * end of an experiment, the final values are pushed once more, or written to
+ * a snapshot file in scrape mode, so the last window is not lost.
+ */
+public class MetricsExporter {
+
+    private static final Duration MIN_RESOLUTION = Duration.ofSeconds(1);
+
+    /**
+     * Represents how metrics leave the emulator.
+     */
+    public enum Mode {
+        NONE,
+        PUSH,
+        SCRAPE
+    }
+
+    private static MetricsExporter instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(MetricsExporter.class.getSimpleName());
+    private final Mode mode;
+    private final long resolutionNanos;
+    private final String finalSnapshot;
+    private Javalin server;
+    private StatisticsPusher pusher;
+    private String rendered;
+    private long renderedNanos;
+
+    /**
+     * Creates a new exporter, and starts serving or pushing metrics.
+     *
+     * @param config the metrics configuration, see reference.conf.
+     * @param nodeID the ID of this node, added to the scrape port and used in
+     *               the name of the final snapshot.
+     */
+    public MetricsExporter(Config config, int nodeID) {
+        this.mode = config.getEnum(Mode.class, "mode");
+        Duration resolution = config.getDuration("scrape.resolution");
+        if (resolution.compareTo(MIN_RESOLUTION) < 0) {
+            logger.warning(String.format("Scrape resolution %s is below %s, using %s", resolution, MIN_RESOLUTION, MIN_RESOLUTION));
+            resolution = MIN_RESOLUTION;
+        }
+        this.resolutionNanos = resolution.toNanos();
+        this.finalSnapshot = String.format(config.getString("scrape.final-snapshot"), nodeID);
+
+        switch (mode) {
+            case SCRAPE:
+                int port = config.getInt("scrape.port") + nodeID;
+                Javalin app = Javalin.create().get("/metrics", this::serve);
+                try {
+                    server = app.start(port);
+                    logger.info(String.format("Serving metrics on port %d", port));
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, String.format("Could not serve metrics on port %d", port), e);
+                    app.stop();
+                }
+                break;
+            case PUSH:
+                pusher = new StatisticsPusher();
+                pusher.setup(config.getString("push.host"), config.getInt("push.port"), config.getDuration("push.interval"));
+                Thread pushThread = new Thread(pusher);
+                pushThread.setName("Statistics Pusher");
+                pushThread.setDaemon(true);
+                pushThread.start();
+                break;
+            default:
+                break;
+        }
+        if (mode != Mode.NONE) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "metrics-flush"));
+        }
+    }
+
+    /**
+     * Sets up the exporter of this node.
+     *
+     * @param config the metrics configuration.
+     * @param nodeID the ID of this node.
+     * @return the exporter.
+     * @throws IllegalStateException if the exporter has already been set up.
+     */
+    public static synchronized MetricsExporter setup(Config config, int nodeID) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup metrics exporter twice");
+        }
+        instance = new MetricsExporter(config, nodeID);
+        return instance;
+    }
+
+    /**
+     * Returns the exporter of this node. If the exporter has not been set up,
+     * it is set up using the default configuration.
+     *
+     * @return the exporter.
+     */
+    public static synchronized MetricsExporter getInstance() {
+        if (instance == null) {
+            instance = new MetricsExporter(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.metrics"), 0);
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if metrics leave the emulator.
+     */
+    public boolean isEnabled() {
+        return mode != Mode.NONE;
+    }
+
+    private void serve(Context ctx) throws IOException {
+        ctx.contentType(TextFormat.CONTENT_TYPE_004);
+        ctx.result(render(false));
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text format, collecting them
+     * again if the previous collection is older than the resolution.
+     */
+    private synchronized String render(boolean force) throws IOException {
+        long now = System.nanoTime();
+        if (force || rendered == null || now - renderedNanos >= resolutionNanos) {
+            StringWriter writer = new StringWriter();
+            TextFormat.write004(writer, CollectorRegistry.defaultRegistry.metricFamilySamples());
+            rendered = writer.toString();
+            renderedNanos = now;
+        }
+        return rendered;
+    }
+
+    private void flush() {
+        long start = System.nanoTime();
+        if (pusher != null) {
+            pusher.stop();
+            pusher.push();
+        }
+        if (mode == Mode.SCRAPE && !finalSnapshot.isEmpty()) {
+            try (Writer writer = new FileWriter(finalSnapshot)) {
+                writer.write(render(true));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not write final metrics to " + finalSnapshot, e);
+            }
+        }
+        if (server != null) {
+            server.stop();
+        }
+        logger.info(String.format("Flushed metrics in %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.CollectorRegistry;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+
+/**
+ * Records every metric of the default registry to a local file at a fixed
+ * interval, so runs without a reachable Prometheus keep their metrics.
+ * <p>
+ * Samples are taken on the IO pool of {@link ThreadPools}; collecting only
+ * reads the counters, so packet handling is never blocked. Samples are
+ * buffered and written in blocks of rows, column by column: each block
+ * holds the series that are new since the previous block, the timestamps,
+ * and then, per series, its values in that block. Every value is stored as
+ * the XOR of its bits with the previous value of the series, which is 0 for
+ * unchanged values, and the file is compressed with GZIP. Values of a series
+ * that is missing in a sample are stored as NaN.
+ * <p>
+ * The file can be converted to CSV with {@link MetricsCsvConverter}.
+ */
+public class MetricsRecorder {
+
+    static final int MAGIC = 0x5953544D; // "YSTM"
+    static final int VERSION = 1;
+
+    private static MetricsRecorder instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(MetricsRecorder.class.getSimpleName());
+    private final boolean enabled;
+    private final int blockRows;
+    private final Map<String, Integer> seriesIndex = new HashMap<>();
+    private final List<String> newSeries = new ArrayList<>();
+    private final long[] timestamps;
+    private final List<double[]> columns = new ArrayList<>();
+    private double[] previous = new double[0];
+    private int rows;
+    private DataOutputStream out;
+    private ScheduledFuture<?> sampling;
+
+    /**
+     * Creates a new recorder, and starts sampling.
+     *
+     * @param config the recorder configuration, see reference.conf.
+     * @param file   the file to record to.
+     */
+    public MetricsRecorder(Config config, File file) {
+        this(config.getBoolean("enabled"), config.getInt("block-rows"), file);
+        if (out == null) {
+            return;
+        }
+
+        long intervalNanos = config.getDuration("interval", TimeUnit.NANOSECONDS);
+        sampling = ThreadPools.getInstance().getScheduled(ThreadPools.IO)
+                .scheduleAtFixedRate(this::sample, 0, intervalNanos, TimeUnit.NANOSECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "metrics-recorder-close"));
+        logger.info("Recording metrics to " + file);
+    }
+
+    /**
+     * Creates a new recorder, which does not sample until
+     * {@link #record(long, Enumeration)} is called.
+     *
+     * @param enabled   whether to record.
+     * @param blockRows the number of samples per block.
+     * @param file      the file to record to.
+     */
+    MetricsRecorder(boolean enabled, int blockRows, File file) {
+        this.enabled = enabled;
+        this.blockRows = blockRows;
+        this.timestamps = new long[blockRows];
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not record metrics to " + file, e);
+            out = null;
+        }
+    }
+
+    /**
+     * Sets up the recorder of this node.
+     *
+     * @param config the recorder configuration.
+     * @param nodeID the ID of this node, used in the file name.
+     * @return the recorder.
+     * @throws IllegalStateException if the recorder has already been set up.
+     */
+    public static synchronized MetricsRecorder setup(Config config, int nodeID) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup metrics recorder twice");
+        }
+        instance = new MetricsRecorder(config, new File(String.format(config.getString("file"), nodeID)));
+        return instance;
+    }
+
+    /**
+     * Returns the recorder of this node. If the recorder has not been set up,
+     * a disabled recorder is returned, so that nothing is written.
+     *
+     * @return the recorder.
+     */
+    public static synchronized MetricsRecorder getInstance() {
+        if (instance == null) {
+            Config config = ConfigFactory.defaultReference()
+                    .getConfig("yardstick.player-emulation.arguments.metrics.recorder")
+                    .withValue("enabled", ConfigValueFactory.fromAnyRef(false));
+            instance = new MetricsRecorder(config, new File(String.format(config.getString("file"), 0)));
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if metrics are being recorded.
+     */
+    public boolean isEnabled() {
+        return enabled && out != null;
+    }
+
+    private void sample() {
+        try {
+            record(System.currentTimeMillis(), CollectorRegistry.defaultRegistry.metricFamilySamples());
+        } catch (IOException | RuntimeException e) {
+            // Keep the schedule alive
+            logger.log(Level.WARNING, "Could not record metrics", e);
+        }
+    }
+
+    /**
+     * Adds a row with the given samples, and writes the buffered rows if
+     * the block is full.
+     *
+     * @param timestamp the time of the samples, in milliseconds.
+     * @param families  the samples.
+     * @throws IOException if the block could not be written.
+     */
+    synchronized void record(long timestamp, Enumeration<MetricFamilySamples> families) throws IOException {
+        if (out == null) {
+            return;
+        }
+        timestamps[rows] = timestamp;
+        for (double[] column : columns) {
+            column[rows] = Double.NaN;
+        }
+
+        while (families.hasMoreElements()) {
+            for (MetricFamilySamples.Sample sample : families.nextElement().samples) {
+                columnOf(key(sample))[rows] = sample.value;
+            }
+        }
+
+        if (++rows == blockRows) {
+            writeBlock();
+        }
+    }
+
+    private double[] columnOf(String key) {
+        Integer index = seriesIndex.get(key);
+        if (index == null) {
+            index = columns.size();
+            seriesIndex.put(key, index);
+            newSeries.add(key);
+            double[] column = new double[blockRows];
+            Arrays.fill(column, Double.NaN);
+            columns.add(column);
+        }
+        return columns.get(index);
+    }
+
+    private static String key(MetricFamilySamples.Sample sample) {
+        if (sample.labelNames.isEmpty()) {
+            return sample.name;
+        }
+        StringBuilder sb = new StringBuilder(sample.name).append('{');
+        for (int i = 0; i < sample.labelNames.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(sample.labelNames.get(i)).append("=\"").append(sample.labelValues.get(i)).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private void writeBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        out.writeInt(newSeries.size());
+        for (String key : newSeries) {
+            out.writeUTF(key);
+        }
+        newSeries.clear();
+
+        out.writeInt(rows);
+        long last = 0;
+        for (int row = 0; row < rows; row++) {
+            out.writeLong(timestamps[row] - last);
+            last = timestamps[row];
+        }
+
+        if (previous.length < columns.size()) {
+            int from = previous.length;
+            previous = Arrays.copyOf(previous, columns.size());
+            Arrays.fill(previous, from, previous.length, Double.NaN);
+        }
+        out.writeInt(columns.size());
+        for (int series = 0; series < columns.size(); series++) {
+            double[] column = columns.get(series);
+            long prev = Double.doubleToRawLongBits(previous[series]);
+            for (int row = 0; row < rows; row++) {
+                long bits = Double.doubleToRawLongBits(column[row]);
+                out.writeLong(bits ^ prev);
+                prev = bits;
+            }
+            previous[series] = Double.longBitsToDouble(prev);
+            Arrays.fill(column, Double.NaN);
+        }
+        rows = 0;
+    }
+
+    /**
+     * Writes the buffered samples, and closes the file.
+     */
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        if (sampling != null) {
+            sampling.cancel(false);
+        }
+        try {
+            writeBlock();
+            out.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not finish metrics recording", e);
+        }
+        out = null;
+    }
+}
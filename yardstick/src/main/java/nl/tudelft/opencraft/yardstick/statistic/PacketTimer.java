@@ -0,0 +1,282 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import nl.tudelft.opencraft.yardstick.util.PacketUtil;
+import science.atlarge.opencraft.packetlib.Session;
+import science.atlarge.opencraft.packetlib.io.NetOutput;
+import science.atlarge.opencraft.packetlib.io.stream.StreamNetInput;
+import science.atlarge.opencraft.packetlib.io.stream.StreamNetOutput;
+import science.atlarge.opencraft.packetlib.packet.Packet;
+import science.atlarge.opencraft.packetlib.packet.PacketProtocol;
+
+/**
+ * Times how long received packets take to decode and to handle, per packet
+ * type, for a sample of the packets.
+ * <p>
+ * Timing every packet would cost more than handling most of them, so only
+ * one in {@code sample-rate} packets is timed. Whether a packet is sampled
+ * is decided with the random generator of the thread, without contention.
+ * <p>
+ * Packets are decoded by the codec of the session before the bot sees them,
+ * so the decode time is measured by writing a sampled packet back to bytes
+ * and reading it into a new packet of the same type. This includes reading
+ * the fields of the packet, such as the sections of a chunk, but not the
+ * decompression or framing done by the codec. The replay runs on the network
+ * thread that received the packet, and delays the packets after it, so it is
+ * off unless {@code decode} is set.
+ * <p>
+ * The durations are exported as the histogram
+ * {@code yardstick_packet_processing_seconds}, labeled with the phase,
+ * {@code decode} or {@code handle}, and the name of the packet type. Its
+ * count is the number of sampled packets. The durations are also part of the
+ * {@link HistogramSnapshots} of the node.
+ */
+public class PacketTimer {
+
+    private static final long[] BUCKETS_NANOS = new long[]{
+            1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000, 200_000, 500_000,
+            1_000_000, 2_000_000, 5_000_000, 10_000_000, 50_000_000};
+    private static final String[] BUCKET_LABELS = new String[BUCKETS_NANOS.length];
+    private static final List<String> LABEL_NAMES = Arrays.asList("phase", "name");
+    private static final List<String> BUCKET_LABEL_NAMES = Arrays.asList("phase", "name", "le");
+    private static final int UNRESOLVED = -2;
+    private static final long MAX_SNAPSHOT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    static {
+        for (int i = 0; i < BUCKETS_NANOS.length; i++) {
+            BUCKET_LABELS[i] = BigDecimal.valueOf(BUCKETS_NANOS[i], 9).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private static PacketTimer instance;
+
+    private final boolean enabled;
+    private final int sampleRate;
+    private final boolean decode;
+    private final Queue<PacketType> types = new ConcurrentLinkedQueue<>();
+    private final ClassValue<PacketType> packetTypes = new ClassValue<PacketType>() {
+        @Override
+        protected PacketType computeValue(Class<?> type) {
+            PacketType packetType = new PacketType(type.getSimpleName(), HistogramSnapshots.getInstance());
+            types.add(packetType);
+            return packetType;
+        }
+    };
+    private final ThreadLocal<Replay> replays = ThreadLocal.withInitial(Replay::new);
+
+    private PacketTimer(Config config) {
+        this.enabled = config.getBoolean("enabled");
+        this.sampleRate = Math.max(1, config.getInt("sample-rate"));
+        this.decode = config.getBoolean("decode");
+        if (enabled) {
+            new PacketTimerCollector().register(CollectorRegistry.defaultRegistry);
+        }
+    }
+
+    /**
+     * Sets up the packet timer for this node.
+     *
+     * @param config the packet timing configuration.
+     * @return the timer.
+     * @throws IllegalStateException if the timer has already been set up.
+     */
+    public static synchronized PacketTimer setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup packet timer twice");
+        }
+        instance = new PacketTimer(config);
+        return instance;
+    }
+
+    /**
+     * Returns the packet timer for this node. If the timer has not been set
+     * up, it is set up using the default configuration.
+     *
+     * @return the timer.
+     */
+    public static synchronized PacketTimer getInstance() {
+        if (instance == null) {
+            instance = new PacketTimer(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.packet-timing"));
+        }
+        return instance;
+    }
+
+    /**
+     * Decides whether the next packet is timed.
+     *
+     * @return true if the packet should be timed.
+     */
+    public boolean sample() {
+        return enabled && (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+    }
+
+    /**
+     * Records the time it took to handle a sampled packet, and then measures
+     * the time it takes to decode it.
+     *
+     * @param session the session which received the packet.
+     * @param packet  the packet.
+     * @param nanos   the time it took to handle the packet, in nanoseconds.
+     */
+    public void handled(Session session, Packet packet, long nanos) {
+        PacketType type = packetTypes.get(packet.getClass());
+        type.handle.record(nanos);
+        if (decode) {
+            long decodeNanos = replays.get().decode(session.getPacketProtocol(), type, packet);
+            if (decodeNanos >= 0) {
+                type.decode.record(decodeNanos);
+            }
+        }
+    }
+
+    private static class PacketType {
+
+        private final String name;
+        private final Timer decode;
+        private final Timer handle;
+        private volatile int id = UNRESOLVED;
+
+        PacketType(String name, HistogramSnapshots snapshots) {
+            this.name = name;
+            this.decode = new Timer(snapshots.register("packet-decode-" + name, MAX_SNAPSHOT_NANOS));
+            this.handle = new Timer(snapshots.register("packet-handle-" + name, MAX_SNAPSHOT_NANOS));
+        }
+    }
+
+    private static class Timer {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS_NANOS.length];
+        private final HistogramSnapshots.Distribution snapshot;
+
+        Timer(HistogramSnapshots.Distribution snapshot) {
+            this.snapshot = snapshot;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            count.increment();
+            sumNanos.add(nanos);
+            snapshot.record(nanos);
+            for (int i = 0; i < BUCKETS_NANOS.length; i++) {
+                if (nanos <= BUCKETS_NANOS[i]) {
+                    buckets[i].increment();
+                    return;
+                }
+            }
+        }
+
+        void addHistogram(List<Collector.MetricFamilySamples.Sample> samples, String phase, String name) {
+            long count = this.count.sum();
+            if (count == 0) {
+                return;
+            }
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS_NANOS.length; i++) {
+                cumulative += buckets[i].sum();
+                samples.add(new Collector.MetricFamilySamples.Sample("yardstick_packet_processing_seconds_bucket",
+                        BUCKET_LABEL_NAMES, Arrays.asList(phase, name, BUCKET_LABELS[i]), cumulative));
+            }
+            samples.add(new Collector.MetricFamilySamples.Sample("yardstick_packet_processing_seconds_bucket",
+                    BUCKET_LABEL_NAMES, Arrays.asList(phase, name, "+Inf"), count));
+            samples.add(new Collector.MetricFamilySamples.Sample("yardstick_packet_processing_seconds_count",
+                    LABEL_NAMES, Arrays.asList(phase, name), count));
+            samples.add(new Collector.MetricFamilySamples.Sample("yardstick_packet_processing_seconds_sum",
+                    LABEL_NAMES, Arrays.asList(phase, name), sumNanos.sum() / 1e9));
+        }
+    }
+
+    /**
+     * Writes packets to a buffer and reads them back, to time decoding. Each
+     * thread has its own buffer, as the streams are not thread safe.
+     */
+    private static class Replay {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        private final NetOutput out = new StreamNetOutput(buffer);
+
+        /**
+         * @return the time it took to decode the packet in nanoseconds, or -1
+         * if it could not be decoded.
+         */
+        long decode(PacketProtocol protocol, PacketType type, Packet packet) {
+            if (type.id == UNRESOLVED) {
+                try {
+                    type.id = PacketUtil.getPacketId(protocol, packet, false);
+                } catch (Exception e) {
+                    type.id = -1;
+                }
+            }
+            if (type.id < 0) {
+                return -1;
+            }
+
+            buffer.reset();
+            try {
+                packet.write(out);
+                out.flush();
+                ByteArrayInputStream bytes = new ByteArrayInputStream(buffer.toByteArray());
+                long start = System.nanoTime();
+                protocol.createIncomingPacket(type.id).read(new StreamNetInput(bytes));
+                return System.nanoTime() - start;
+            } catch (IOException | RuntimeException e) {
+                // Not every packet can be written by the client, or read back from what it writes
+                type.id = -1;
+                return -1;
+            }
+        }
+    }
+
+    private class PacketTimerCollector extends Collector {
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            List<MetricFamilySamples.Sample> samples = new ArrayList<>();
+            for (PacketType type : types) {
+                type.decode.addHistogram(samples, "decode", type.name);
+                type.handle.addHistogram(samples, "handle", type.name);
+            }
+            return Collections.singletonList(new MetricFamilySamples("yardstick_packet_processing_seconds",
+                    Type.HISTOGRAM, "Time to decode and handle received packets per packet type, sampled 1 in "
+                    + sampleRate, samples));
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.typesafe.config.Config;
+import io.prometheus.client.Collector;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import nl.tudelft.opencraft.yardstick.util.PacketUtil;
+import science.atlarge.opencraft.packetlib.Session;
+import science.atlarge.opencraft.packetlib.packet.Packet;
+
+/**
+ * Counts packets and their sizes per packet type and direction.
+ * <p>
+ * The type of a packet is looked up through a {@link ClassValue}, which the
+ * JVM keeps with the packet class, so counting a packet does not hash or
+ * build strings. The protocol ID of a type is resolved once, when the first
+ * packet of that type is counted.
+ * <p>
+ * Optionally, bots are put in cohorts by the order in which they joined, to
+ * see how traffic per type grows with the number of players. The number of
+ * cohorts is capped, so the number of label values stays bounded; bots
+ * beyond the last cohort are counted in it.
+ */
+class PacketTypeStatistics {
+
+    private static final long[] BYTES_BUCKETS = new long[]{16, 64, 256, 1024, 4096, 16384, 65536};
+    private static final List<String> LABEL_NAMES = Arrays.asList("direction", "id", "name", "cohort");
+    private static final int UNRESOLVED = -2;
+
+    private final boolean enabled;
+    private final int cohortSize;
+    private final String[] cohortLabels;
+    private final AtomicInteger joined = new AtomicInteger();
+    private final Map<Session, Integer> cohortOfSession = new ConcurrentHashMap<>();
+    private final Queue<PacketType> types = new ConcurrentLinkedQueue<>();
+    private final ClassValue<PacketType> incoming = new PacketTypes("in");
+    private final ClassValue<PacketType> outgoing = new PacketTypes("out");
+
+    /**
+     * Creates new packet type statistics.
+     *
+     * @param config the packet metrics configuration, see reference.conf.
+     */
+    PacketTypeStatistics(Config config) {
+        this.enabled = config.getBoolean("enabled");
+        this.cohortSize = config.getInt("cohort-size");
+        int cohorts = cohortSize > 0 ? Math.max(1, config.getInt("max-cohorts")) : 0;
+
+        // Cohort 0 holds bots that have not joined yet, or all bots if cohorts are disabled
+        this.cohortLabels = new String[cohorts + 1];
+        cohortLabels[0] = cohorts > 0 ? "joining" : "all";
+        for (int i = 1; i <= cohorts; i++) {
+            int first = (i - 1) * cohortSize;
+            cohortLabels[i] = i < cohorts ? first + "-" + (first + cohortSize - 1) : ">=" + first;
+        }
+    }
+
+    /**
+     * Puts the session in the cohort of the next bot to join.
+     */
+    void joined(Session session) {
+        if (cohortSize > 0) {
+            int cohort = Math.min(joined.getAndIncrement() / cohortSize + 1, cohortLabels.length - 1);
+            cohortOfSession.put(session, cohort);
+        }
+    }
+
+    void disconnected(Session session) {
+        if (cohortSize > 0) {
+            cohortOfSession.remove(session);
+        }
+    }
+
+    void received(Session session, Packet packet, long bytes) {
+        if (enabled) {
+            record(incoming.get(packet.getClass()), session, packet, bytes);
+        }
+    }
+
+    void sent(Session session, Packet packet, long bytes) {
+        if (enabled) {
+            record(outgoing.get(packet.getClass()), session, packet, bytes);
+        }
+    }
+
+    private void record(PacketType type, Session session, Packet packet, long bytes) {
+        if (type.id == UNRESOLVED) {
+            type.resolve(session, packet);
+        }
+        int cohort = 0;
+        if (cohortSize > 0) {
+            cohort = cohortOfSession.getOrDefault(session, 0);
+        }
+        type.cell(cohort).record(bytes);
+    }
+
+    /**
+     * Returns the samples of all packet types seen so far.
+     */
+    List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples.Sample> packets = new ArrayList<>();
+        List<MetricFamilySamples.Sample> sizes = new ArrayList<>();
+        for (PacketType type : types) {
+            for (int cohort = 0; cohort < cohortLabels.length; cohort++) {
+                Cell cell = type.cells.get(cohort);
+                if (cell == null) {
+                    continue;
+                }
+                List<String> labelValues = Arrays.asList(type.direction, type.idLabel, type.name, cohortLabels[cohort]);
+                long count = cell.count.sum();
+                packets.add(new MetricFamilySamples.Sample("yardstick_packet_type_packets_total",
+                        LABEL_NAMES, labelValues, count));
+                cell.addHistogram(sizes, labelValues, count);
+            }
+        }
+
+        List<MetricFamilySamples> families = new ArrayList<>();
+        families.add(new MetricFamilySamples("yardstick_packet_type_packets_total", Collector.Type.COUNTER,
+                "Packets per packet type and direction", packets));
+        families.add(new MetricFamilySamples("yardstick_packet_type_bytes", Collector.Type.HISTOGRAM,
+                "Size of packets in bytes, per packet type and direction", sizes));
+        return families;
+    }
+
+    /**
+     * Creates the packet type of a class the first time a packet of that
+     * class is counted.
+     */
+    private class PacketTypes extends ClassValue<PacketType> {
+
+        private final String direction;
+
+        PacketTypes(String direction) {
+            this.direction = direction;
+        }
+
+        @Override
+        protected PacketType computeValue(Class<?> type) {
+            PacketType packetType = new PacketType(direction, type.getSimpleName(), cohortLabels.length);
+            types.add(packetType);
+            return packetType;
+        }
+    }
+
+    private static class PacketType {
+
+        private final String direction;
+        private final String name;
+        private final AtomicReferenceArray<Cell> cells;
+        private volatile int id = UNRESOLVED;
+        private volatile String idLabel = "unknown";
+
+        PacketType(String direction, String name, int cohorts) {
+            this.direction = direction;
+            this.name = name;
+            this.cells = new AtomicReferenceArray<>(cohorts);
+        }
+
+        void resolve(Session session, Packet packet) {
+            int resolved;
+            try {
+                resolved = PacketUtil.getPacketId(session.getPacketProtocol(), packet, direction.equals("out"));
+            } catch (Exception e) {
+                resolved = -1;
+            }
+            idLabel = resolved < 0 ? "unknown" : String.format("0x%02X", resolved);
+            id = resolved;
+        }
+
+        Cell cell(int cohort) {
+            Cell cell = cells.get(cohort);
+            if (cell == null) {
+                cells.compareAndSet(cohort, null, new Cell());
+                cell = cells.get(cohort);
+            }
+            return cell;
+        }
+    }
+
+    private static class Cell {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BYTES_BUCKETS.length];
+
+        Cell() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long bytes) {
+            count.increment();
+            if (bytes < 0) {
+                return;
+            }
+            sum.add(bytes);
+            for (int i = 0; i < BYTES_BUCKETS.length; i++) {
+                if (bytes <= BYTES_BUCKETS[i]) {
+                    buckets[i].increment();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Adds cumulative buckets, like a Prometheus histogram. Packets of
+         * which the size is unknown only count towards +Inf.
+         */
+        void addHistogram(List<MetricFamilySamples.Sample> samples, List<String> labelValues, long count) {
+            List<String> bucketLabelNames = new ArrayList<>(LABEL_NAMES);
+            bucketLabelNames.add("le");
+            long cumulative = 0;
+            for (int i = 0; i < BYTES_BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                samples.add(new MetricFamilySamples.Sample("yardstick_packet_type_bytes_bucket",
+                        bucketLabelNames, withLe(labelValues, Long.toString(BYTES_BUCKETS[i])), cumulative));
+            }
+            samples.add(new MetricFamilySamples.Sample("yardstick_packet_type_bytes_bucket",
+                    bucketLabelNames, withLe(labelValues, "+Inf"), count));
+            samples.add(new MetricFamilySamples.Sample("yardstick_packet_type_bytes_count",
+                    LABEL_NAMES, labelValues, count));
+            samples.add(new MetricFamilySamples.Sample("yardstick_packet_type_bytes_sum",
+                    LABEL_NAMES, labelValues, sum.sum()));
+        }
+
+        private static List<String> withLe(List<String> labelValues, String le) {
+            List<String> values = new ArrayList<>(labelValues);
+            values.add(le);
+            return values;
+        }
+    }
+}
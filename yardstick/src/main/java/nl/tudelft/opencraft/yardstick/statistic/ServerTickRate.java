@@ -0,0 +1,258 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import nl.tudelft.opencraft.yardstick.util.ThreadPools;
+
+/**
+ * Estimates the tick rate of the server from what the bots receive, without
+ * instrumenting the server.
+ * <p>
+ * The server sends the age of the world, in ticks, in its time updates. The
+ * change in world age over a span of updates, divided by the time between
+ * them on the clock of the emulator, is the effective number of ticks per
+ * second (TPS) of the server. The time per tick it implies is also recorded.
+ * Time updates are sent about once per second, so an update delayed by the
+ * network would make one interval look short and the next one long. The
+ * span covers several updates, so such a delay only moves the estimate by
+ * the delay relative to the span, up or down alike.
+ * <p>
+ * Entity movement is sent at the end of a tick, so movement packets arrive
+ * in bursts, one per tick in which a visible entity moved. The interval
+ * between the starts of consecutive bursts follows the tick interval, and
+ * the change from one interval to the next is its jitter. Ticks in which no
+ * entity moved make the interval longer, so its median is the better
+ * estimate.
+ * <p>
+ * Each bot has its own {@link Estimator}, of which the estimates are
+ * aggregated for the node. The mean and minimum TPS over the last window are
+ * exported as gauges, all estimates as histograms, and the tick times as
+ * part of the {@link HistogramSnapshots}.
+ */
+public class ServerTickRate {
+
+    private static final Gauge TPS = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("server")
+            .name("tps")
+            .help("Ticks per second of the server, estimated from time updates, over the last window")
+            .labelNames("stat")
+            .register();
+    private static final Histogram TPS_ESTIMATES = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("server")
+            .name("tps_estimates")
+            .help("Ticks per second of the server, estimated from each span of time updates received by a bot")
+            .buckets(1, 5, 10, 15, 18, 19, 19.5, 19.9, 20.1, 20.5, 21, 25)
+            .register();
+    private static final Histogram TICK_INTERVAL = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("server")
+            .name("tick_interval_seconds")
+            .help("Time between the starts of consecutive bursts of entity movement packets")
+            .buckets(0.025, 0.04, 0.045, 0.05, 0.055, 0.06, 0.075, 0.1, 0.15, 0.25, 0.5, 1)
+            .register();
+    private static final Histogram TICK_JITTER = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("server")
+            .name("tick_jitter_seconds")
+            .help("Difference between consecutive intervals of bursts of entity movement packets")
+            .buckets(0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5)
+            .register();
+
+    private static ServerTickRate instance;
+
+    private final boolean enabled;
+    private final int sampleRate;
+    private final long burstGapNanos;
+    private final long spanNanos;
+    private final LongSupplier clock;
+    private final HistogramSnapshots.Distribution tickTime;
+    private final HistogramSnapshots.Distribution tickInterval;
+    private double windowSum;
+    private double windowMin = Double.NaN;
+    private long windowCount;
+
+    /**
+     * Creates a new estimator for this node.
+     *
+     * @param config the server tick configuration, see reference.conf.
+     */
+    public ServerTickRate(Config config) {
+        this(config, HistogramSnapshots.getInstance(), System::nanoTime);
+    }
+
+    /**
+     * Creates a new estimator, which reads the time from the given clock.
+     *
+     * @param config    the server tick configuration.
+     * @param snapshots the snapshots to record tick times to.
+     * @param clock     the clock, in nanoseconds.
+     */
+    ServerTickRate(Config config, HistogramSnapshots snapshots, LongSupplier clock) {
+        this.enabled = config.getBoolean("enabled");
+        this.sampleRate = Math.max(1, config.getInt("sample-rate"));
+        this.burstGapNanos = config.getDuration("burst-gap", TimeUnit.NANOSECONDS);
+        this.spanNanos = config.getDuration("span", TimeUnit.NANOSECONDS);
+        this.clock = clock;
+        this.tickTime = snapshots.register("server-tick-time", TimeUnit.MINUTES.toNanos(1));
+        this.tickInterval = snapshots.register("server-tick-interval", TimeUnit.MINUTES.toNanos(1));
+
+        if (enabled) {
+            long windowNanos = config.getDuration("window", TimeUnit.NANOSECONDS);
+            ThreadPools.getInstance().getScheduled(ThreadPools.IO)
+                    .scheduleAtFixedRate(this::rollWindow, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Sets up the estimator for this node.
+     *
+     * @param config the server tick configuration.
+     * @return the estimator.
+     * @throws IllegalStateException if the estimator has already been set
+     *                               up.
+     */
+    public static synchronized ServerTickRate setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup server tick rate twice");
+        }
+        instance = new ServerTickRate(config);
+        return instance;
+    }
+
+    /**
+     * Returns the estimator for this node. If the estimator has not been set
+     * up, a disabled estimator is returned.
+     *
+     * @return the estimator.
+     */
+    public static synchronized ServerTickRate getInstance() {
+        if (instance == null) {
+            instance = new ServerTickRate(ConfigFactory.defaultReference()
+                    .getConfig("yardstick.player-emulation.arguments.server-tick")
+                    .withValue("enabled", ConfigValueFactory.fromAnyRef(false)));
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the estimator of a new bot, if the bot is sampled.
+     *
+     * @return the estimator, or null if the bot does not estimate the tick
+     * rate.
+     */
+    public Estimator newEstimator() {
+        if (!enabled || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+            return null;
+        }
+        return new Estimator();
+    }
+
+    private synchronized void addTps(double tps) {
+        windowSum += tps;
+        windowCount++;
+        if (Double.isNaN(windowMin) || tps < windowMin) {
+            windowMin = tps;
+        }
+    }
+
+    synchronized void rollWindow() {
+        TPS.labels("mean").set(windowCount == 0 ? Double.NaN : windowSum / windowCount);
+        TPS.labels("min").set(windowMin);
+        windowSum = 0;
+        windowCount = 0;
+        windowMin = Double.NaN;
+    }
+
+    /**
+     * Estimates the tick rate from the packets of one bot. Must be called
+     * from the thread receiving the packets of the bot.
+     */
+    public class Estimator {
+
+        private long spanWorldAge = -1;
+        private long spanStartNanos;
+        private boolean moved;
+        private long lastMovementNanos;
+        private long burstStartNanos;
+        private long lastIntervalNanos = -1;
+
+        private Estimator() {
+        }
+
+        /**
+         * Handles a time update of the server.
+         *
+         * @param worldAge the age of the world in ticks.
+         */
+        public void timeUpdated(long worldAge) {
+            long now = clock.getAsLong();
+            if (spanWorldAge >= 0 && worldAge >= spanWorldAge) {
+                long elapsed = now - spanStartNanos;
+                if (elapsed < spanNanos) {
+                    // Keep extending the span
+                    return;
+                }
+                long ticks = worldAge - spanWorldAge;
+                if (ticks > 0) {
+                    double tps = ticks / (elapsed / 1e9);
+                    TPS_ESTIMATES.observe(tps);
+                    tickTime.record(elapsed / ticks);
+                    addTps(tps);
+                }
+            }
+            // The world age decreases when changing worlds, so start over
+            spanWorldAge = worldAge;
+            spanStartNanos = now;
+        }
+
+        /**
+         * Handles an entity movement packet.
+         */
+        public void entityMoved() {
+            long now = clock.getAsLong();
+            long gap = now - lastMovementNanos;
+            lastMovementNanos = now;
+            if (moved && gap < burstGapNanos) {
+                // Same burst, so the same tick
+                return;
+            }
+            if (moved) {
+                long interval = now - burstStartNanos;
+                TICK_INTERVAL.observe(interval / 1e9);
+                tickInterval.record(interval);
+                if (lastIntervalNanos >= 0) {
+                    TICK_JITTER.observe(Math.abs(interval - lastIntervalNanos) / 1e9);
+                }
+                lastIntervalNanos = interval;
+            }
+            moved = true;
+            burstStartNanos = now;
+        }
+    }
+}
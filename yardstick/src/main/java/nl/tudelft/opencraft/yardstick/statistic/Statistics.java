@@ -18,9 +18,20 @@
 
 package nl.tudelft.opencraft.yardstick.statistic;
 
+import com.typesafe.config.Config;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+import nl.tudelft.opencraft.yardstick.util.CountingOutputStream;
 import science.atlarge.opencraft.mcprotocollib.packet.ingame.server.ServerJoinGamePacket;
 import science.atlarge.opencraft.mcprotocollib.packet.ingame.server.ServerKeepAlivePacket;
 import science.atlarge.opencraft.mcprotocollib.packet.ingame.server.entity.ServerEntityHeadLookPacket;
@@ -31,140 +42,85 @@ import science.atlarge.opencraft.packetlib.event.session.*;
 import science.atlarge.opencraft.packetlib.io.NetOutput;
 import science.atlarge.opencraft.packetlib.io.stream.StreamNetOutput;
 import science.atlarge.opencraft.packetlib.packet.Packet;
-import io.prometheus.client.CollectorRegistry;
-import io.prometheus.client.Counter;
-import io.prometheus.client.Gauge;
-import io.prometheus.client.Summary;
-import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
-import nl.tudelft.opencraft.yardstick.logging.SubLogger;
-import nl.tudelft.opencraft.yardstick.util.CountingOutputStream;
 
 /**
- * Represents a {@link SessionListener} for collecting Yardstick statistics and
- * forwarding theses to a {@link StatisticsPusher}.
+ * Represents a {@link SessionListener} for collecting Yardstick statistics in
+ * the default registry, from which the {@link MetricsExporter} exports them.
+ * <p>
+ * The listener is shared by all bots, and is called concurrently from the
+ * network threads of all sessions. Counts are kept in {@link LongAdder}s,
+ * which spread updates over cells instead of contending on one value, and
+ * every thread counts packet bytes with its own stream. The values are only
+ * summed when the metrics are collected. Packets are also counted per packet
+ * type, see {@link PacketTypeStatistics}. Packet sizes are also part of the
+ * {@link HistogramSnapshots} of the node, as summaries cannot be merged
+ * across nodes.
  *
  * @author Admin
  */
 public class Statistics implements SessionListener {
 
+    private static final long MAX_PACKET_BYTES = 1 << 24;
+
     private final SubLogger logger;
-    private final StatisticsPusher pusher = new StatisticsPusher();
     //
-    private final CountingOutputStream cos = new CountingOutputStream();
-    private final NetOutput cno = new StreamNetOutput(cos);
-    private final Gauge connected;
-    private final Counter packIn;
-    private final Counter packOut;
-    private final Summary bytesIn;
-    private final Summary bytesOut;
-    private final Counter errors;
-    private final Counter keepAliveIn;
-    private final Counter entityPositionUpdate;
-
-    private final HashSet<Session> connectedClientSessions = new HashSet<>();
+    private final ThreadLocal<ByteCounter> byteCounters = ThreadLocal.withInitial(ByteCounter::new);
+    private final LongAdder packIn = new LongAdder();
+    private final LongAdder packOut = new LongAdder();
+    private final LongAdder bytesInCount = new LongAdder();
+    private final LongAdder bytesInSum = new LongAdder();
+    private final LongAdder bytesOutCount = new LongAdder();
+    private final LongAdder bytesOutSum = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder keepAliveIn = new LongAdder();
+    private final LongAdder entityPositionUpdate = new LongAdder();
+
+    private final PacketTypeStatistics packetTypes;
+
+    private final HistogramSnapshots.Distribution bytesIn = HistogramSnapshots.getInstance()
+            .register("bytes-in", MAX_PACKET_BYTES);
+    private final HistogramSnapshots.Distribution bytesOut = HistogramSnapshots.getInstance()
+            .register("bytes-out", MAX_PACKET_BYTES);
+
+    private final Set<Session> connectedClientSessions = ConcurrentHashMap.newKeySet();
 
     /**
-     * Create a new Statistics listener.
+     * Create a new Statistics listener, and registers its metrics in the
+     * default registry.
      *
-     * @param host the host of the Prometheus push gateway.
-     * @param port the port of the Prometheus push gateway.
+     * @param packetMetricsConfig the configuration of the per packet type
+     *                            metrics.
      */
-    public Statistics(String host, int port) {
+    public Statistics(Config packetMetricsConfig) {
         this.logger = GlobalLogger.getLogger().newSubLogger("Statistics");
-        this.pusher.setup(host, port);
-
-        CollectorRegistry registry = pusher.getRegistry();
-        connected = Gauge.build()
-                .namespace("yardstick")
-                .name("bots_connected")
-                .help("Amount of isConnected bots")
-                .register(registry);
-
-        packIn = Counter.build()
-                .namespace("yardstick")
-                .name("packets_in")
-                .help("Packets received")
-                .register(registry);
-
-        packOut = Counter.build()
-                .namespace("yardstick")
-                .name("packets_out")
-                .help("Packets sent")
-                .register(registry);
-
-        bytesIn = Summary.build()
-                .namespace("yardstick")
-                .name("bytes_in")
-                .help("Bytes received")
-                .register(registry);
-
-        bytesOut = Summary.build()
-                .namespace("yardstick")
-                .name("bytes_out")
-                .help("Bytes sent")
-                .register(registry);
-
-        errors = Counter.build()
-                .namespace("yardstick")
-                .name("disconnect_errors")
-                .help("Amount of disconnects due to errors")
-                .register(registry);
-
-        keepAliveIn = Counter.build()
-                .namespace("yardstick")
-                .name("keep_alive_packets_in")
-                .help("The amount of Keep Alive packets received from the server.")
-                .register(registry);
-
-        entityPositionUpdate = Counter.build()
-                .namespace("yardstick")
-                .name("entity_position_updates")
-                .help("Number of packets received that update the location or rotation of an entity.")
-                .register(registry);
-    }
-
-    /**
-     * Starts pushing statistics. This starts a thread which must be stopped
-     * with {@link #stop()}.
-     */
-    public void start() {
-        Thread pushThread = new Thread(pusher);
-        pushThread.setName("Statistics Pusher");
-        pushThread.start();
-    }
-
-    /**
-     * Stops pushing statistics.
-     */
-    public void stop() {
-        pusher.stop();
+        this.packetTypes = new PacketTypeStatistics(packetMetricsConfig);
+        new StatisticsCollector().register(CollectorRegistry.defaultRegistry);
     }
 
     @Override
     public void packetReceived(PacketReceivedEvent pre) {
-        packIn.inc();
+        packIn.increment();
 
         Packet packet = pre.getPacket();
 
         if (packet instanceof ServerKeepAlivePacket) {
-            keepAliveIn.inc();
+            keepAliveIn.increment();
         } else if (packet instanceof ServerEntityMovementPacket || packet instanceof ServerEntityHeadLookPacket || packet instanceof ServerEntityTeleportPacket) {
-            entityPositionUpdate.inc();
+            entityPositionUpdate.increment();
         } else if (packet instanceof ServerJoinGamePacket) {
-            connectedClientSessions.add(pre.getSession());
-            connected.inc();
+            if (connectedClientSessions.add(pre.getSession())) {
+                packetTypes.joined(pre.getSession());
+            }
         }
 
         // Count bytes
-        cos.reset();
-        try {
-            packet.write(cno);
-            cno.flush();
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, "Exception counting received packet bytes", ex);
+        long bytes = byteCounters.get().count(packet);
+        if (bytes >= 0) {
+            bytesInCount.increment();
+            bytesInSum.add(bytes);
+            bytesIn.record(bytes);
         }
-
-        bytesIn.observe(cos.getCount());
+        packetTypes.received(pre.getSession(), packet, bytes);
     }
 
     @Override
@@ -174,23 +130,21 @@ public class Statistics implements SessionListener {
 
     @Override
     public void packetSent(PacketSentEvent pse) {
-        packOut.inc();
+        packOut.increment();
 
         // Count bytes
-        cos.reset();
-        try {
-            pse.getPacket().write(cno);
-            cno.flush();
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, "Exception counting sent packet bytes", ex);
+        long bytes = byteCounters.get().count(pse.getPacket());
+        if (bytes >= 0) {
+            bytesOutCount.increment();
+            bytesOutSum.add(bytes);
+            bytesOut.record(bytes);
         }
-
-        bytesOut.observe(cos.getCount());
+        packetTypes.sent(pse.getSession(), pse.getPacket(), bytes);
     }
 
     @Override
     public void connected(ConnectedEvent ce) {
-        //Ignore. We increment the connections when we receive the JoinGame packet. Then we know the player is ready.
+        //Ignore. We count the connections when we receive the JoinGame packet. Then we know the player is ready.
     }
 
     @Override
@@ -199,12 +153,79 @@ public class Statistics implements SessionListener {
 
     @Override
     public void disconnected(DisconnectedEvent de) {
-        if (connectedClientSessions.remove(de.getSession())) {
-            connected.dec();
-        }
+        connectedClientSessions.remove(de.getSession());
+        packetTypes.disconnected(de.getSession());
         if (de.getCause() != null) {
-            errors.inc();
+            errors.increment();
+        }
+    }
+
+    /**
+     * Counts the bytes of packets by writing them to a stream that discards
+     * them. Each thread has its own counter, as the stream is not thread
+     * safe.
+     */
+    private class ByteCounter {
+
+        private final CountingOutputStream cos = new CountingOutputStream();
+        private final NetOutput cno = new StreamNetOutput(cos);
+
+        /**
+         * @return the size of the packet in bytes, or -1 if it could not be
+         * written.
+         */
+        long count(Packet packet) {
+            cos.reset();
+            try {
+                packet.write(cno);
+                cno.flush();
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Exception counting packet bytes", ex);
+                return -1;
+            }
+            return cos.getCount();
         }
     }
 
+    /**
+     * Sums the counters when metrics are collected or pushed.
+     */
+    private class StatisticsCollector extends Collector {
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            List<MetricFamilySamples> families = new ArrayList<>();
+            families.add(single("yardstick_bots_connected", Type.GAUGE,
+                    "Amount of isConnected bots", connectedClientSessions.size()));
+            families.add(single("yardstick_packets_in", Type.COUNTER,
+                    "Packets received", packIn.sum()));
+            families.add(single("yardstick_packets_out", Type.COUNTER,
+                    "Packets sent", packOut.sum()));
+            families.add(summary("yardstick_bytes_in", "Bytes received", bytesInCount, bytesInSum));
+            families.add(summary("yardstick_bytes_out", "Bytes sent", bytesOutCount, bytesOutSum));
+            families.add(single("yardstick_disconnect_errors", Type.COUNTER,
+                    "Amount of disconnects due to errors", errors.sum()));
+            families.add(single("yardstick_keep_alive_packets_in", Type.COUNTER,
+                    "The amount of Keep Alive packets received from the server.", keepAliveIn.sum()));
+            families.add(single("yardstick_entity_position_updates", Type.COUNTER,
+                    "Number of packets received that update the location or rotation of an entity.",
+                    entityPositionUpdate.sum()));
+            families.addAll(packetTypes.collect());
+            return families;
+        }
+
+        private MetricFamilySamples single(String name, Type type, String help, double value) {
+            return new MetricFamilySamples(name, type, help, Collections.singletonList(
+                    new MetricFamilySamples.Sample(name, Collections.emptyList(), Collections.emptyList(), value)));
+        }
+
+        private MetricFamilySamples summary(String name, String help, LongAdder count, LongAdder sum) {
+            List<MetricFamilySamples.Sample> samples = new ArrayList<>();
+            samples.add(new MetricFamilySamples.Sample(name + "_count",
+                    Collections.emptyList(), Collections.emptyList(), count.sum()));
+            samples.add(new MetricFamilySamples.Sample(name + "_sum",
+                    Collections.emptyList(), Collections.emptyList(), sum.sum()));
+            return new MetricFamilySamples(name, Type.SUMMARY, help, samples);
+        }
+    }
 }
@@ -18,32 +18,38 @@
 
 package nl.tudelft.opencraft.yardstick.statistic;
 
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.PushGateway;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
-import io.prometheus.client.CollectorRegistry;
-import io.prometheus.client.exporter.PushGateway;
 import nl.tudelft.opencraft.yardstick.Yardstick;
 
 /**
  * Represents a runnable pusher which pushes a {@link CollectorRegistry} to a
- * Prometheus push gateway. This pusher pushes data every 10 seconds.
+ * Prometheus push gateway, by default every 10 seconds.
  */
 public class StatisticsPusher implements Runnable {
 
     private CollectorRegistry registry;
     private PushGateway gateway;
+    private long intervalMillis = 10_000;
     private final AtomicBoolean run = new AtomicBoolean(true);
 
     /**
-     * Initializes details for the push gateway.
+     * Initializes details for the push gateway. The pusher pushes the default
+     * registry, so that metrics registered by other components of the emulator
+     * are pushed as well.
      *
-     * @param host the push gateway host.
-     * @param port the push gateway port.
+     * @param host     the push gateway host.
+     * @param port     the push gateway port.
+     * @param interval the time between pushes.
      */
-    public void setup(String host, int port) {
-        registry = new CollectorRegistry();
+    public void setup(String host, int port, Duration interval) {
+        registry = CollectorRegistry.defaultRegistry;
         gateway = new PushGateway(host + ":" + port);
+        intervalMillis = interval.toMillis();
     }
 
     /**
@@ -63,18 +69,24 @@ public class StatisticsPusher implements Runnable {
         run.set(false);
     }
 
+    /**
+     * Pushes the registry once. Failures are logged.
+     */
+    public void push() {
+        try {
+            gateway.pushAdd(registry, "yardstick", PushGateway.instanceIPGroupingKey());
+        } catch (IOException ex) {
+            Yardstick.LOGGER.log(Level.SEVERE, "Could not push statistics", ex);
+        }
+    }
+
     @Override
     public void run() {
         while (run.get()) {
+            push();
 
             try {
-                gateway.pushAdd(registry, "yardstick", PushGateway.instanceIPGroupingKey());
-            } catch (IOException ex) {
-                Yardstick.LOGGER.log(Level.SEVERE, "Could not push statistics", ex);
-            }
-
-            try {
-                Thread.sleep(10_000);
+                Thread.sleep(intervalMillis);
             } catch (InterruptedException ex) {
                 Yardstick.LOGGER.log(Level.SEVERE, "Statistics thread interrupted!", ex);
                 return;
@@ -0,0 +1,49 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.util;
+
+import io.prometheus.client.Histogram;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduled thread pool which records how long tasks started after they
+ * were due.
+ */
+class InstrumentedScheduledThreadPool extends ScheduledThreadPoolExecutor {
+
+    private final Histogram.Child waitTime;
+
+    InstrumentedScheduledThreadPool(String name, int threads, ThreadFactory threadFactory) {
+        super(threads, threadFactory);
+        this.waitTime = ThreadPools.WAIT_TIME.labels(name);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        if (r instanceof Delayed) {
+            // The delay of a due task is negative: the time since it was due
+            long late = -((Delayed) r).getDelay(TimeUnit.NANOSECONDS);
+            waitTime.observe(Math.max(0, late) / 1e9);
+        }
+        super.beforeExecute(t, r);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.util;
+
+import io.prometheus.client.Histogram;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed-size thread pool which records how long tasks waited before
+ * starting.
+ * <p>
+ * Tasks are queued as they are, instead of wrapped, so the pool also works
+ * with queues which order their tasks, such as a priority queue.
+ */
+class InstrumentedThreadPool extends ThreadPoolExecutor {
+
+    private final Histogram.Child waitTime;
+    private final Map<Runnable, Long> queuedAt = new ConcurrentHashMap<>();
+
+    InstrumentedThreadPool(String name, int threads, BlockingQueue<Runnable> queue, ThreadFactory threadFactory) {
+        super(threads, threads, 0, TimeUnit.MILLISECONDS, queue, threadFactory);
+        this.waitTime = ThreadPools.WAIT_TIME.labels(name);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        queuedAt.put(command, System.nanoTime());
+        try {
+            super.execute(command);
+        } catch (RejectedExecutionException e) {
+            queuedAt.remove(command);
+            throw e;
+        }
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        Long start = queuedAt.remove(r);
+        if (start != null) {
+            waitTime.observe((System.nanoTime() - start) / 1e9);
+        }
+        super.beforeExecute(t, r);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.util;
+
+import com.sun.management.OperatingSystemMXBean;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import nl.tudelft.opencraft.yardstick.bot.BotTicker;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+
+/**
+ * Detects when the emulator itself, instead of the game under test, is the
+ * bottleneck.
+ * <p>
+ * Once per interval, the detector compares four signals to their limits: the
+ * largest tick lag of the {@link BotTicker}, the queue depth of the tick
+ * pool, the fraction of the interval spent in GC pauses, and the CPU load of
+ * the process. If any signal exceeds its limit, the emulator is overloaded
+ * until all signals stay within their limits for a number of intervals.
+ * <p>
+ * While overloaded, the bot manager does not add bots. The state is exported
+ * as {@code yardstick_emulator_healthy}, and every overloaded window is
+ * logged with its start and end, so measurements taken during that window
+ * can be left out.
+ */
+public class OverloadDetector {
+
+    private static final Gauge HEALTHY = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("emulator")
+            .name("healthy")
+            .help("1 if the emulator is not overloaded, 0 if measurements may be skewed by the emulator")
+            .register();
+    private static final Gauge LOAD = Gauge.build()
+            .namespace("yardstick")
+            .subsystem("emulator")
+            .name("load_ratio")
+            .help("Overload signal divided by its limit, per signal. The emulator is overloaded above 1")
+            .labelNames("signal")
+            .register();
+    private static final Counter OVERLOADED_WINDOWS = Counter.build()
+            .namespace("yardstick")
+            .subsystem("emulator")
+            .name("overloaded_windows_total")
+            .help("Number of times the emulator became overloaded")
+            .register();
+
+    private static OverloadDetector instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(OverloadDetector.class.getSimpleName());
+    private final long intervalNanos;
+    private final long maxTickLagNanos;
+    private final int maxTickQueue;
+    private final double maxGcFraction;
+    private final double maxCpu;
+    private final int recoveryIntervals;
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final OperatingSystemMXBean os;
+    private long lastGcMillis;
+    private long lastSampleNanos;
+    private int healthyIntervals;
+    private Instant overloadedSince;
+    private volatile boolean healthy = true;
+
+    /**
+     * Creates a new detector and starts sampling.
+     *
+     * @param config the overload configuration, see reference.conf.
+     */
+    public OverloadDetector(Config config) {
+        this.intervalNanos = config.getDuration("interval", TimeUnit.NANOSECONDS);
+        this.maxTickLagNanos = config.getDuration("max-tick-lag", TimeUnit.NANOSECONDS);
+        this.maxTickQueue = config.getInt("max-tick-queue");
+        this.maxGcFraction = config.getDouble("max-gc-fraction");
+        this.maxCpu = config.getDouble("max-cpu");
+        this.recoveryIntervals = config.getInt("recovery-intervals");
+
+        java.lang.management.OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        this.os = bean instanceof OperatingSystemMXBean ? (OperatingSystemMXBean) bean : null;
+        this.lastGcMillis = gcMillis();
+        this.lastSampleNanos = System.nanoTime();
+        HEALTHY.set(1);
+
+        if (config.getBoolean("enabled")) {
+            ThreadPools.getInstance().getScheduled(ThreadPools.IO)
+                    .scheduleAtFixedRate(this::sample, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Sets up the detector for this node.
+     *
+     * @param config the overload configuration.
+     * @return the detector.
+     * @throws IllegalStateException if the detector has already been set up.
+     */
+    public static synchronized OverloadDetector setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup overload detector twice");
+        }
+        instance = new OverloadDetector(config);
+        return instance;
+    }
+
+    /**
+     * Returns the detector for this node. If the detector has not been set
+     * up, it is set up using the default configuration.
+     *
+     * @return the detector.
+     */
+    public static synchronized OverloadDetector getInstance() {
+        if (instance == null) {
+            instance = new OverloadDetector(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.overload"));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns whether measurements taken now reflect the game under test,
+     * rather than the emulator.
+     *
+     * @return false if the emulator is overloaded.
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    private void sample() {
+        try {
+            long now = System.nanoTime();
+            long gcMillis = gcMillis();
+            double gcFraction = TimeUnit.MILLISECONDS.toNanos(gcMillis - lastGcMillis) / (double) (now - lastSampleNanos);
+            lastGcMillis = gcMillis;
+            lastSampleNanos = now;
+
+            double tickLag = BotTicker.getInstance().drainMaxLagNanos() / (double) maxTickLagNanos;
+            double tickQueue = ThreadPools.getInstance().get(ThreadPools.TICK).getQueue().size() / (double) maxTickQueue;
+            double gc = gcFraction / maxGcFraction;
+            double cpu = (os == null ? 0 : Math.max(0, os.getProcessCpuLoad())) / maxCpu;
+
+            LOAD.labels("tick_lag").set(tickLag);
+            LOAD.labels("tick_queue").set(tickQueue);
+            LOAD.labels("gc").set(gc);
+            LOAD.labels("cpu").set(cpu);
+
+            String cause = tickLag > 1 ? "tick lag" : tickQueue > 1 ? "tick queue" : gc > 1 ? "GC pauses" : cpu > 1 ? "CPU load" : null;
+            update(cause);
+        } catch (RuntimeException e) {
+            // Keep the schedule alive
+            logger.log(Level.WARNING, "Could not check for overload", e);
+        }
+    }
+
+    /**
+     * Updates the state with the result of one interval. Only called by the
+     * sampling thread.
+     *
+     * @param cause the signal which exceeded its limit, or null if all
+     *              signals stayed within their limits.
+     */
+    void update(String cause) {
+        if (cause != null) {
+            healthyIntervals = 0;
+            if (healthy) {
+                healthy = false;
+                overloadedSince = Instant.now();
+                HEALTHY.set(0);
+                OVERLOADED_WINDOWS.inc();
+                logger.warning(String.format("Emulator overloaded by %s since %s. Not adding bots, and measurements may be skewed",
+                        cause, overloadedSince));
+            }
+        } else if (!healthy && ++healthyIntervals >= recoveryIntervals) {
+            healthy = true;
+            HEALTHY.set(1);
+            logger.warning(String.format("Emulator overloaded from %s to %s", overloadedSince, Instant.now()));
+        }
+    }
+
+    /**
+     * Returns the total time spent in GC pauses. Beans of concurrent
+     * collectors, which do not pause the emulator, are left out.
+     */
+    private long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            String name = collector.getName();
+            if (name.contains("Concurrent") || name.contains("Cycles")) {
+                continue;
+            }
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+}
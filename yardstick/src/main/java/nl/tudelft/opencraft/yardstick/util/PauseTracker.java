@@ -0,0 +1,208 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.util;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import nl.tudelft.opencraft.yardstick.statistic.HistogramSnapshots;
+
+/**
+ * Tracks the intervals in which the emulator JVM was paused, so latencies
+ * measured across such a pause can be told apart from latencies caused by
+ * the game.
+ * <p>
+ * A platform thread wakes up every {@code resolution}. If it wakes up at
+ * least {@code min-pause} later than it should have, all threads of the
+ * emulator could not run in the meantime, and the interval is kept as a
+ * pause. These are mostly GC and other safepoint pauses, but the emulator
+ * process not being scheduled by the OS counts as well. Working in the
+ * clock of {@link System#nanoTime()}, the pauses can be compared with
+ * latency samples directly.
+ * <p>
+ * The last {@code capacity} pauses are kept in a ring, written by the
+ * tracker thread only and published through the volatile pause count.
+ */
+public class PauseTracker {
+
+    private static final Counter PAUSES = Counter.build()
+            .namespace("yardstick")
+            .subsystem("emulator")
+            .name("pauses_total")
+            .help("Number of times all threads of the emulator were paused")
+            .register();
+    private static final Histogram PAUSE_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("emulator")
+            .name("pause_seconds")
+            .help("Duration of pauses of all threads of the emulator")
+            .buckets(0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+            .register();
+
+    private static PauseTracker instance;
+
+    private final boolean enabled;
+    private final long resolutionNanos;
+    private final long minPauseNanos;
+    private final int capacity;
+    private final long[] starts;
+    private final long[] ends;
+    private final HistogramSnapshots.Distribution snapshot;
+    private volatile long count;
+    private volatile long lastWakeNanos;
+
+    /**
+     * Creates a new tracker and starts its thread.
+     *
+     * @param config the pause configuration, see reference.conf.
+     */
+    public PauseTracker(Config config) {
+        this(config.getBoolean("enabled"), config.getDuration("resolution", TimeUnit.NANOSECONDS),
+                config.getDuration("min-pause", TimeUnit.NANOSECONDS), config.getInt("capacity"));
+
+        if (enabled) {
+            Thread thread = new Thread(this::track, "pause-tracker");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.start();
+        }
+    }
+
+    /**
+     * Creates a new tracker, which does not track pauses until
+     * {@link #wake(long, long)} is called.
+     *
+     * @param enabled         whether pauses are tracked.
+     * @param resolutionNanos the time between wake ups.
+     * @param minPauseNanos   the minimum delay of a wake up to be a pause.
+     * @param capacity        the number of pauses kept.
+     */
+    PauseTracker(boolean enabled, long resolutionNanos, long minPauseNanos, int capacity) {
+        this.enabled = enabled;
+        this.resolutionNanos = resolutionNanos;
+        this.minPauseNanos = minPauseNanos;
+        this.capacity = Math.max(1, capacity);
+        this.starts = new long[this.capacity];
+        this.ends = new long[this.capacity];
+        this.lastWakeNanos = System.nanoTime();
+        this.snapshot = HistogramSnapshots.getInstance().register("emulator-pause", TimeUnit.HOURS.toNanos(1));
+    }
+
+    /**
+     * Sets up the pause tracker for this node.
+     *
+     * @param config the pause configuration.
+     * @return the tracker.
+     * @throws IllegalStateException if the tracker has already been set up.
+     */
+    public static synchronized PauseTracker setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup pause tracker twice");
+        }
+        instance = new PauseTracker(config);
+        return instance;
+    }
+
+    /**
+     * Returns the pause tracker for this node. If the tracker has not been
+     * set up, it is set up using the default configuration.
+     *
+     * @return the tracker.
+     */
+    public static synchronized PauseTracker getInstance() {
+        if (instance == null) {
+            instance = new PauseTracker(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.pauses"));
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if pauses are tracked.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns whether the emulator was paused at any time between start and
+     * end. A pause that has ended, but which the tracker thread has not
+     * noticed yet, counts as well.
+     *
+     * @param startNanos the start, from {@link System#nanoTime()}.
+     * @param endNanos   the end, from {@link System#nanoTime()}.
+     * @return true if the interval overlaps a pause.
+     */
+    public boolean overlaps(long startNanos, long endNanos) {
+        if (!enabled) {
+            return false;
+        }
+        // The tracker thread was held up too, and has not recorded this pause yet
+        long expectedWake = lastWakeNanos + resolutionNanos;
+        if (endNanos - expectedWake >= minPauseNanos) {
+            return true;
+        }
+
+        long n = count;
+        for (long i = n - 1; i >= 0 && i >= n - capacity; i--) {
+            int slot = (int) (i % capacity);
+            if (ends[slot] - startNanos < 0) {
+                // Pauses are in order, so all earlier pauses ended before the start too
+                return false;
+            }
+            if (starts[slot] - endNanos < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void track() {
+        long last = System.nanoTime();
+        while (true) {
+            LockSupport.parkNanos(resolutionNanos);
+            long now = System.nanoTime();
+            wake(last + resolutionNanos, now);
+            last = now;
+        }
+    }
+
+    /**
+     * Records a wake up of the tracker thread, and the pause before it if it
+     * woke up late. Only called by the tracker thread.
+     *
+     * @param expectedNanos when the thread should have woken up.
+     * @param nowNanos      when the thread woke up.
+     */
+    void wake(long expectedNanos, long nowNanos) {
+        if (nowNanos - expectedNanos >= minPauseNanos) {
+            int slot = (int) (count % capacity);
+            starts[slot] = expectedNanos;
+            ends[slot] = nowNanos;
+            count = count + 1;
+            PAUSES.inc();
+            PAUSE_TIME.observe((nowNanos - expectedNanos) / 1e9);
+            snapshot.record(nowNanos - expectedNanos);
+        }
+        lastWakeNanos = nowNanos;
+    }
+}
@@ -18,28 +18,116 @@
 
 package nl.tudelft.opencraft.yardstick.util;
 
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
 
 /**
  * Represents an accurate repeating timer (i.e., a scheduler) for repeating
  * tasks at a fixed frequency.
+ * <p>
+ * The scheduler parks the thread until shortly before the next tick, and
+ * spins for the remainder. How early it wakes up adapts to how late the
+ * platform wakes parked threads, so it spins for tens of microseconds on
+ * most platforms instead of whole milliseconds.
  */
 public class Scheduler {
 
-    public static final long YIELD_AT_NANOS = 2_000_000; // 2 ms
+    /**
+     * What to do with ticks that were missed because a tick took too long.
+     */
+    public enum OverrunPolicy {
+        /**
+         * Run the missed ticks back to back until the scheduler is on time
+         * again, so the number of ticks matches the time passed.
+         */
+        CATCH_UP,
+        /**
+         * Run the late tick at once, but drop the ticks that were missed
+         * while it was late.
+         */
+        SKIP
+    }
+
+    private static final double[] SECONDS_BUCKETS = new double[]{
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.075, 0.1, 0.25, 0.5, 1, 2.5};
+
+    private static final Histogram TICK_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("scheduler")
+            .name("tick_seconds")
+            .help("Time from the start of a tick until the scheduler was asked to wait for the next one")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+    private static final Histogram OVERRUN_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("scheduler")
+            .name("overrun_seconds")
+            .help("Time by which a tick finished after the next tick was due")
+            .buckets(SECONDS_BUCKETS)
+            .register();
+    private static final Histogram WAKEUP_ERROR = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("scheduler")
+            .name("wakeup_error_seconds")
+            .help("Time by which a tick started after it was due, when the previous tick was on time")
+            .buckets(0.000005, 0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005)
+            .register();
+    private static final Counter SKIPPED = Counter.build()
+            .namespace("yardstick")
+            .subsystem("scheduler")
+            .name("skipped_ticks_total")
+            .help("Ticks dropped after an overrun")
+            .register();
+
+    // Bounds of the estimated timer slack
+    private static final long MIN_SLACK_NANOS = 10_000; // 10 us
+    private static final long MAX_SLACK_NANOS = 2_000_000; // 2 ms
     //
     private final long tickNanos;
+    private final OverrunPolicy policy;
+    private final LongSupplier clock;
     private long startNanos = 0;
     private long tickNumber = 0;
+    private long tickStartNanos;
+    private long slackNanos = 100_000;
 
     /**
-     * Creates a new Scheduler for executing tasks.
+     * Creates a new Scheduler for executing tasks, which catches up on missed
+     * ticks.
      *
      * @param tickMs the desired fixed delay between task executions, in
      * milliseconds.
      */
     public Scheduler(long tickMs) {
+        this(tickMs, OverrunPolicy.CATCH_UP);
+    }
+
+    /**
+     * Creates a new Scheduler for executing tasks.
+     *
+     * @param tickMs the desired fixed delay between task executions, in
+     * milliseconds.
+     * @param policy what to do with ticks missed after an overrun.
+     */
+    public Scheduler(long tickMs, OverrunPolicy policy) {
+        this(tickMs, policy, System::nanoTime);
+    }
+
+    /**
+     * Creates a new Scheduler, which reads the time from the given clock.
+     *
+     * @param tickMs the desired fixed delay between task executions, in
+     * milliseconds.
+     * @param policy what to do with ticks missed after an overrun.
+     * @param clock  the clock, in nanoseconds.
+     */
+    Scheduler(long tickMs, OverrunPolicy policy, LongSupplier clock) {
         this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.policy = policy;
+        this.clock = clock;
     }
 
     /**
@@ -61,7 +149,8 @@ public class Scheduler {
         if (startNanos != 0) {
             throw new IllegalStateException("Scheduler already started");
         }
-        startNanos = System.nanoTime();
+        startNanos = clock.getAsLong();
+        tickStartNanos = startNanos;
     }
 
     /**
@@ -70,29 +159,61 @@ public class Scheduler {
      *
      * @return true if sleeping has occurred; false if this method was called
      * too late, and thus a delay was experienced.
+     * @throws InterruptedException if the thread was interrupted while
+     *                              sleeping. The interrupt status is cleared.
      */
-    public boolean sleepTick() {
+    public boolean sleepTick() throws InterruptedException {
         tickNumber++;
 
-        long nowNanos = System.nanoTime();
+        long nowNanos = clock.getAsLong();
+        TICK_TIME.observe((nowNanos - tickStartNanos) / 1e9);
         long nextTickNanos = startNanos + (tickNumber * tickNanos);
         long toSleepNanos = nextTickNanos - nowNanos;
 
         if (toSleepNanos < 0) {
-            return false; // Skip a tick
+            OVERRUN_TIME.observe(-toSleepNanos / 1e9);
+            if (policy == OverrunPolicy.SKIP) {
+                long missed = -toSleepNanos / tickNanos;
+                if (missed > 0) {
+                    tickNumber += missed;
+                    SKIPPED.inc(missed);
+                }
+            }
+            tickStartNanos = nowNanos;
+            return false;
         }
 
-        if (toSleepNanos > YIELD_AT_NANOS) {
-            try {
-                Thread.sleep(TimeUnit.NANOSECONDS.toMillis(toSleepNanos - YIELD_AT_NANOS));
-            } catch (InterruptedException ex) {
+        while (nextTickNanos - clock.getAsLong() > slackNanos) {
+            long parkNanos = nextTickNanos - clock.getAsLong() - slackNanos;
+            long parkedAt = clock.getAsLong();
+            LockSupport.parkNanos(parkNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while waiting for tick " + tickNumber);
             }
+            adaptSlack(clock.getAsLong() - parkedAt - parkNanos);
         }
 
-        while (nextTickNanos - System.nanoTime() > 0) {
-            Thread.yield();
+        while (nextTickNanos - clock.getAsLong() > 0) {
+            Thread.onSpinWait();
         }
+
+        tickStartNanos = clock.getAsLong();
+        WAKEUP_ERROR.observe((tickStartNanos - nextTickNanos) / 1e9);
         return true;
     }
 
+    /**
+     * Moves the slack estimate towards the observed oversleep. The estimate
+     * grows quickly and shrinks slowly, so an occasional late wake-up keeps
+     * the scheduler on time for a while.
+     */
+    private void adaptSlack(long oversleepNanos) {
+        long target = Math.max(0, oversleepNanos) * 2;
+        if (target > slackNanos) {
+            slackNanos = (slackNanos + target) / 2;
+        } else {
+            slackNanos -= (slackNanos - target) / 16;
+        }
+        slackNanos = Math.max(MIN_SLACK_NANOS, Math.min(MAX_SLACK_NANOS, slackNanos));
+    }
 }
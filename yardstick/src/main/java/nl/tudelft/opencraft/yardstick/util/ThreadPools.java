@@ -0,0 +1,220 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.util;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Collector;
+import io.prometheus.client.Histogram;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+
+/**
+ * Named, independently sized thread pools, so one kind of work cannot starve
+ * another. Bot ticks, experiment partitions, path searches, flow field
+ * builds, connection attempts and periodic housekeeping each run on their
+ * own pool, sized in the {@code executors} section of the configuration.
+ * <p>
+ * Every pool reports its queue depth, active threads and pool size, and the
+ * time its tasks waited before starting, labelled with the pool name.
+ */
+public class ThreadPools {
+
+    public static final String TICK = "tick";
+    public static final String PARTITION = "partition";
+    public static final String PATHFINDING = "pathfinding";
+    public static final String CONNECTION = "connection";
+    public static final String IO = "io";
+    public static final String KINEMATICS = "kinematics";
+    public static final String FLOW_FIELD = "flow-field";
+
+    static final Histogram WAIT_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("executor")
+            .name("wait_seconds")
+            .help("Time tasks waited in the queue of a thread pool before starting")
+            .labelNames("pool")
+            .buckets(0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+            .register();
+
+    private static ThreadPools instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(ThreadPools.class.getSimpleName());
+    private final Config config;
+    private final Map<String, ThreadPoolExecutor> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new set of pools. Pools are created when first asked for.
+     *
+     * @param config the executors configuration, see reference.conf.
+     */
+    public ThreadPools(Config config) {
+        this.config = config;
+        new PoolCollector().register();
+    }
+
+    /**
+     * Sets up the pools used on this node.
+     *
+     * @param config the executors configuration.
+     * @return the pools.
+     * @throws IllegalStateException if the pools have already been set up.
+     */
+    public static synchronized ThreadPools setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup thread pools twice");
+        }
+        instance = new ThreadPools(config);
+        return instance;
+    }
+
+    /**
+     * Returns the pools used on this node. If they have not been set up, they
+     * are set up using the default configuration.
+     *
+     * @return the pools.
+     */
+    public static synchronized ThreadPools getInstance() {
+        if (instance == null) {
+            instance = new ThreadPools(ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.executors"));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the pool with the given name. If it does not exist yet, it is
+     * created as a fixed-size pool with an unbounded queue.
+     *
+     * @param name the name of the pool.
+     * @return the pool.
+     */
+    public ThreadPoolExecutor get(String name) {
+        ThreadPoolExecutor pool = pools.get(name);
+        if (pool != null) {
+            return pool;
+        }
+        return get(name, new LinkedBlockingQueue<>(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns the fixed-size pool with the given name. The queue and default
+     * size are only used if the pool does not exist yet.
+     *
+     * @param name           the name of the pool.
+     * @param queue          the queue of the pool.
+     * @param defaultThreads the size of the pool if its configured size is 0.
+     * @return the pool.
+     * @throws IllegalStateException if the pool exists with another kind of
+     *                               queue, such as a FIFO queue where a
+     *                               priority queue is asked for.
+     */
+    public ThreadPoolExecutor get(String name, BlockingQueue<Runnable> queue, int defaultThreads) {
+        ThreadPoolExecutor pool = pools.computeIfAbsent(name, n -> {
+            int threads = threads(n, defaultThreads);
+            logger.info(String.format("Started pool %s with %d threads", n, threads));
+            return new InstrumentedThreadPool(n, threads, queue, threadFactory(n));
+        });
+        if (pool.getQueue() != queue && pool.getQueue().getClass() != queue.getClass()) {
+            throw new IllegalStateException(String.format("Pool %s already exists with a %s, not a %s", name,
+                    pool.getQueue().getClass().getSimpleName(), queue.getClass().getSimpleName()));
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the scheduled pool with the given name.
+     *
+     * @param name the name of the pool.
+     * @return the pool.
+     * @throws ClassCastException if a pool with this name exists, but is not
+     *                            a scheduled pool.
+     */
+    public ScheduledThreadPoolExecutor getScheduled(String name) {
+        return (ScheduledThreadPoolExecutor) pools.computeIfAbsent(name, n -> {
+            int threads = threads(n, 1);
+            logger.info(String.format("Started scheduled pool %s with %d threads", n, threads));
+            return new InstrumentedScheduledThreadPool(n, threads, threadFactory(n));
+        });
+    }
+
+    private int threads(String name, int defaultThreads) {
+        String path = name + ".threads";
+        int threads = config.hasPath(path) ? config.getInt(path) : 0;
+        return threads < 1 ? Math.max(1, defaultThreads) : threads;
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Reads the state of all pools when metrics are collected.
+     */
+    private class PoolCollector extends Collector {
+
+        private final List<String> labelNames = Collections.singletonList("pool");
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            List<MetricFamilySamples.Sample> queued = new ArrayList<>();
+            List<MetricFamilySamples.Sample> active = new ArrayList<>();
+            List<MetricFamilySamples.Sample> size = new ArrayList<>();
+            List<MetricFamilySamples.Sample> completed = new ArrayList<>();
+            for (Map.Entry<String, ThreadPoolExecutor> entry : pools.entrySet()) {
+                List<String> labelValues = Collections.singletonList(entry.getKey());
+                ThreadPoolExecutor pool = entry.getValue();
+                queued.add(new MetricFamilySamples.Sample("yardstick_executor_queue_depth",
+                        labelNames, labelValues, pool.getQueue().size()));
+                active.add(new MetricFamilySamples.Sample("yardstick_executor_active_threads",
+                        labelNames, labelValues, pool.getActiveCount()));
+                size.add(new MetricFamilySamples.Sample("yardstick_executor_pool_threads",
+                        labelNames, labelValues, pool.getPoolSize()));
+                completed.add(new MetricFamilySamples.Sample("yardstick_executor_completed_tasks_total",
+                        labelNames, labelValues, pool.getCompletedTaskCount()));
+            }
+
+            List<MetricFamilySamples> families = new ArrayList<>();
+            families.add(new MetricFamilySamples("yardstick_executor_queue_depth", Type.GAUGE,
+                    "Number of tasks waiting in the queue of a thread pool", queued));
+            families.add(new MetricFamilySamples("yardstick_executor_active_threads", Type.GAUGE,
+                    "Number of threads of a thread pool running a task", active));
+            families.add(new MetricFamilySamples("yardstick_executor_pool_threads", Type.GAUGE,
+                    "Number of threads in a thread pool", size));
+            families.add(new MetricFamilySamples("yardstick_executor_completed_tasks_total", Type.COUNTER,
+                    "Number of tasks completed by a thread pool", completed));
+            return families;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.util;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import nl.tudelft.opencraft.yardstick.logging.GlobalLogger;
+import nl.tudelft.opencraft.yardstick.logging.SubLogger;
+
+/**
+ * Runs blocking work of bots, such as connecting, retrying and polling
+ * until a bot has joined.
+ * <p>
+ * In virtual-thread mode every task gets its own virtual thread, so ramping
+ * up thousands of bots does not need thousands of OS threads. Virtual
+ * threads that block while pinned to their carrier thread, for example
+ * inside a {@code synchronized} block, are reported through JFR. Without
+ * virtual threads, tasks run on the connection pool of {@link ThreadPools}.
+ */
+public class VirtualThreads {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final Counter PINNED = Counter.build()
+            .namespace("yardstick")
+            .subsystem("virtual_threads")
+            .name("pinned_total")
+            .help("Number of times a virtual thread blocked while pinned to its carrier thread")
+            .register();
+    private static final Histogram PINNED_TIME = Histogram.build()
+            .namespace("yardstick")
+            .subsystem("virtual_threads")
+            .name("pinned_seconds")
+            .help("Time a virtual thread blocked while pinned to its carrier thread")
+            .buckets(0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5)
+            .register();
+
+    private static VirtualThreads instance;
+
+    private final SubLogger logger = GlobalLogger.getLogger().newSubLogger(VirtualThreads.class.getSimpleName());
+    private final boolean enabled;
+    private final ThreadFactory threadFactory;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new executor for blocking work.
+     *
+     * @param config the virtual thread configuration, see reference.conf.
+     */
+    public VirtualThreads(Config config) {
+        this.enabled = config.getBoolean("enabled");
+        if (enabled) {
+            this.threadFactory = Thread.ofVirtual().name("blocking-", 0).factory();
+            this.executor = Executors.newThreadPerTaskExecutor(threadFactory);
+            if (config.getBoolean("report-pinning")) {
+                startPinningRecording(config.getDuration("pinning-threshold"));
+            }
+        } else {
+            this.threadFactory = Thread.ofPlatform().name("blocking-", 0).daemon(true).factory();
+            this.executor = ThreadPools.getInstance().get(ThreadPools.CONNECTION);
+        }
+    }
+
+    /**
+     * Sets up the executor used for blocking work on this node.
+     *
+     * @param config the virtual thread configuration.
+     * @return the executor.
+     * @throws IllegalStateException if the executor has already been set up.
+     */
+    public static synchronized VirtualThreads setup(Config config) {
+        if (instance != null) {
+            throw new IllegalStateException("Cannot setup virtual threads twice");
+        }
+        instance = new VirtualThreads(config);
+        return instance;
+    }
+
+    /**
+     * Returns the executor used for blocking work on this node. If it has not
+     * been set up, it is set up using the default configuration.
+     *
+     * @return the executor.
+     */
+    public static synchronized VirtualThreads getInstance() {
+        if (instance == null) {
+            instance = new VirtualThreads(
+                    ConfigFactory.load().getConfig("yardstick.player-emulation.arguments.virtual-threads"));
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if blocking work runs on virtual threads.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the executor for blocking work. Each submitted task may block
+     * without holding up other tasks.
+     *
+     * @return the executor.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Starts a new thread for a single blocking task.
+     *
+     * @param name the name of the thread.
+     * @param task the task.
+     * @return the started thread.
+     */
+    public Thread start(String name, Runnable task) {
+        Thread thread = threadFactory.newThread(task);
+        thread.setName(name);
+        thread.start();
+        return thread;
+    }
+
+    private void startPinningRecording(Duration threshold) {
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+            recording.onEvent(PINNED_EVENT, this::reportPinning);
+            recording.startAsync();
+        } catch (IllegalStateException | SecurityException e) {
+            logger.log(Level.WARNING, "Could not record virtual thread pinning", e);
+        }
+    }
+
+    private void reportPinning(RecordedEvent event) {
+        PINNED.inc();
+        PINNED_TIME.observe(event.getDuration().toNanos() / 1e9);
+
+        String frame = "unknown frame";
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace != null) {
+            for (RecordedFrame f : stackTrace.getFrames()) {
+                if (f.isJavaFrame() && f.getMethod().getType().getName().startsWith("nl.tudelft.opencraft")) {
+                    frame = f.getMethod().getType().getName() + "." + f.getMethod().getName()
+                            + ":" + f.getLineNumber();
+                    break;
+                }
+            }
+        }
+        logger.warning(String.format("Virtual thread %s pinned for %d ms at %s",
+                event.getThread() == null ? "unknown" : event.getThread().getJavaName(),
+                event.getDuration().toMillis(), frame));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class BotRegistryTest {
+
+    BotRegistry registry;
+    Bot connecting;
+    Bot joined;
+
+    @BeforeEach
+    public void init() {
+        registry = new BotRegistry();
+        connecting = Mockito.mock(Bot.class);
+        joined = Mockito.mock(Bot.class);
+        Mockito.when(joined.isJoined()).thenReturn(true);
+    }
+
+    @Test
+    void testRegister() {
+        Assertions.assertTrue(registry.register(connecting, BotState.CONNECTING));
+        Assertions.assertFalse(registry.register(connecting, BotState.JOINED));
+
+        Assertions.assertEquals(1, registry.size());
+        Assertions.assertEquals(1, registry.count(BotState.CONNECTING));
+        Assertions.assertEquals(0, registry.count(BotState.JOINED));
+        Assertions.assertEquals(BotState.CONNECTING, registry.getState(connecting));
+        Assertions.assertEquals(BotState.DISCONNECTED, registry.getState(joined));
+    }
+
+    @Test
+    void testTransition() {
+        registry.register(joined, BotState.JOINED);
+
+        Assertions.assertFalse(registry.transition(joined, BotState.CONNECTING, BotState.ACTIVE));
+        Assertions.assertEquals(BotState.JOINED, registry.getState(joined));
+
+        Assertions.assertTrue(registry.transition(joined, BotState.JOINED, BotState.ACTIVE));
+        Assertions.assertEquals(BotState.ACTIVE, registry.getState(joined));
+        Assertions.assertEquals(0, registry.count(BotState.JOINED));
+        Assertions.assertEquals(1, registry.count(BotState.ACTIVE));
+
+        Assertions.assertFalse(registry.transition(connecting, BotState.CONNECTING, BotState.JOINED));
+    }
+
+    @Test
+    void testTransitionToDisconnectedRemoves() {
+        registry.register(joined, BotState.ACTIVE);
+
+        Assertions.assertTrue(registry.transition(joined, BotState.ACTIVE, BotState.DISCONNECTED));
+        Assertions.assertEquals(0, registry.size());
+        Assertions.assertEquals(0, registry.count(BotState.ACTIVE));
+        Assertions.assertEquals(0, registry.count(BotState.DISCONNECTED));
+        Assertions.assertEquals(BotState.DISCONNECTED, registry.getState(joined));
+    }
+
+    @Test
+    void testRemove() {
+        registry.register(connecting, BotState.CONNECTING);
+        registry.register(joined, BotState.DRAINING);
+
+        Assertions.assertTrue(registry.remove(connecting));
+        Assertions.assertTrue(registry.remove(joined));
+        Assertions.assertFalse(registry.remove(joined));
+
+        Assertions.assertEquals(0, registry.size());
+        for (BotState state : BotState.values()) {
+            Assertions.assertEquals(0, registry.count(state), state.getLabel());
+        }
+    }
+
+    @Test
+    void testForEachActivePromotesJoinedBots() {
+        Bot waiting = Mockito.mock(Bot.class);
+        registry.register(waiting, BotState.CONNECTING);
+        // Registered before it joined, and joined since
+        registry.register(joined, BotState.CONNECTING);
+        Bot draining = Mockito.mock(Bot.class);
+        registry.register(draining, BotState.DRAINING);
+
+        List<Bot> ticked = new ArrayList<>();
+        registry.forEachActive(ticked::add);
+
+        Assertions.assertEquals(List.of(joined), ticked);
+        Assertions.assertEquals(BotState.ACTIVE, registry.getState(joined));
+        Assertions.assertEquals(BotState.CONNECTING, registry.getState(waiting));
+        Assertions.assertEquals(BotState.DRAINING, registry.getState(draining));
+        Assertions.assertEquals(1, registry.count(BotState.ACTIVE));
+        Assertions.assertEquals(1, registry.count(BotState.CONNECTING));
+    }
+
+    @Test
+    void testDrain() {
+        registry.register(connecting, BotState.CONNECTING);
+        registry.register(joined, BotState.JOINED);
+        Bot active = Mockito.mock(Bot.class);
+        registry.register(active, BotState.ACTIVE);
+
+        List<Bot> drained = registry.drain(1);
+        Assertions.assertEquals(1, drained.size());
+        Assertions.assertEquals(BotState.DRAINING, registry.getState(drained.get(0)));
+
+        drained = registry.drain(5);
+        Assertions.assertEquals(1, drained.size());
+        Assertions.assertEquals(2, registry.count(BotState.DRAINING));
+        Assertions.assertEquals(BotState.CONNECTING, registry.getState(connecting));
+    }
+
+    @Test
+    void testList() {
+        registry.register(connecting, BotState.CONNECTING);
+        registry.register(joined, BotState.ACTIVE);
+
+        Assertions.assertEquals(List.of(joined), registry.list(BotState.JOINED, BotState.ACTIVE));
+        Assertions.assertEquals(2, registry.list(BotState.CONNECTING, BotState.ACTIVE).size());
+    }
+}
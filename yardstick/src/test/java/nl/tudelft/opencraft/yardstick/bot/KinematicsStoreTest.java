@@ -0,0 +1,150 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot;
+
+import nl.tudelft.opencraft.yardstick.util.Vector3d;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+class KinematicsStoreTest {
+
+    private KinematicsStore store;
+
+    @BeforeEach
+    void init() {
+        // Send batches on the thread running the pass
+        store = new KinematicsStore(true, 4, 2, Runnable::run);
+    }
+
+    private static Bot mockBot() {
+        Bot bot = Mockito.mock(Bot.class);
+        BotController controller = Mockito.mock(BotController.class);
+        Mockito.when(bot.getController()).thenReturn(controller);
+        return bot;
+    }
+
+    private static Vector3d lastLocation(Bot bot) {
+        ArgumentCaptor<Vector3d> location = ArgumentCaptor.forClass(Vector3d.class);
+        Mockito.verify(bot.getController(), Mockito.atLeastOnce()).updateLocation(location.capture());
+        return location.getValue();
+    }
+
+    @Test
+    void testAcquireUntilFull() {
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals(i, store.acquire(mockBot(), Vector3d.ZERO));
+        }
+        Assertions.assertEquals(-1, store.acquire(mockBot(), Vector3d.ZERO));
+    }
+
+    @Test
+    void testMoveTowardsWaypoint() {
+        Bot bot = mockBot();
+        int slot = store.acquire(bot, Vector3d.ZERO);
+        store.moveTo(slot, 10, 0, 0, 1);
+
+        store.runPass();
+        Assertions.assertEquals(1, lastLocation(bot).getX(), 1e-9);
+        store.runPass();
+        Assertions.assertEquals(2, lastLocation(bot).getX(), 1e-9);
+        Assertions.assertEquals(0, lastLocation(bot).getY(), 1e-9);
+        Assertions.assertEquals(0, lastLocation(bot).getZ(), 1e-9);
+    }
+
+    @Test
+    void testStopAtWaypoint() {
+        Bot bot = mockBot();
+        int slot = store.acquire(bot, Vector3d.ZERO);
+        store.moveTo(slot, 0.5, 0, 0, 1);
+
+        store.runPass();
+        Assertions.assertEquals(0.5, lastLocation(bot).getX(), 1e-9);
+        store.runPass();
+        store.runPass();
+        // Bots that did not move are not sent
+        Mockito.verify(bot.getController(), Mockito.times(1)).updateLocation(Mockito.any());
+    }
+
+    @Test
+    void testReleaseStopsBot() {
+        Bot bot = mockBot();
+        int slot = store.acquire(bot, Vector3d.ZERO);
+        store.moveTo(slot, 10, 0, 0, 1);
+        store.runPass();
+        store.release(slot, bot);
+        store.runPass();
+        Mockito.verify(bot.getController(), Mockito.times(1)).updateLocation(Mockito.any());
+    }
+
+    @Test
+    void testReuseReleasedSlot() {
+        Bot first = mockBot();
+        Bot second = mockBot();
+        int slot = store.acquire(first, Vector3d.ZERO);
+        store.moveTo(slot, 10, 0, 0, 1);
+        store.runPass();
+        store.release(slot, first);
+
+        Assertions.assertEquals(slot, store.acquire(second, new Vector3d(5, 0, 0)));
+        store.runPass();
+        // The waypoint of the previous bot does not carry over
+        Mockito.verify(second.getController(), Mockito.never()).updateLocation(Mockito.any());
+
+        store.moveTo(slot, 5, 0, 10, 1);
+        store.runPass();
+        Assertions.assertEquals(5, lastLocation(second).getX(), 1e-9);
+        Assertions.assertEquals(1, lastLocation(second).getZ(), 1e-9);
+        Mockito.verify(first.getController(), Mockito.times(1)).updateLocation(Mockito.any());
+    }
+
+    @Test
+    void testNewLegKeepsPosition() {
+        Bot bot = mockBot();
+        int slot = store.acquire(bot, Vector3d.ZERO);
+        store.moveTo(slot, 10, 0, 0, 1);
+        store.runPass();
+        store.runPass();
+
+        // The next leg starts where the store moved the bot, not where the bot was placed
+        store.moveTo(slot, 2, 10, 0, 1);
+        store.runPass();
+        Assertions.assertEquals(2, lastLocation(bot).getX(), 1e-9);
+        Assertions.assertEquals(1, lastLocation(bot).getY(), 1e-9);
+    }
+
+    @Test
+    void testStaleReleaseKeepsNewOwner() {
+        Bot first = mockBot();
+        Bot second = mockBot();
+        int slot = store.acquire(first, Vector3d.ZERO);
+        store.release(slot, first);
+        Assertions.assertEquals(slot, store.acquire(second, Vector3d.ZERO));
+
+        // The previous executor stops again after the slot was handed out
+        store.release(slot, first);
+        Assertions.assertNotEquals(slot, store.acquire(mockBot(), Vector3d.ZERO));
+
+        store.moveTo(slot, 0, 10, 0, 1);
+        store.runPass();
+        Assertions.assertEquals(1, lastLocation(second).getY(), 1e-9);
+    }
+}
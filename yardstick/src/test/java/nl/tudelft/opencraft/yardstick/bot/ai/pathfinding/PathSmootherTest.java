@@ -0,0 +1,119 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.WorldPhysics;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class PathSmootherTest {
+
+    private final Set<Vector3i> blocked = new HashSet<>();
+    private WorldPhysics physics;
+
+    @BeforeEach
+    public void setup() throws ChunkNotLoadedException {
+        blocked.clear();
+        physics = Mockito.mock(WorldPhysics.class);
+        Mockito.when(physics.canWalk(Mockito.any(Vector3i.class), Mockito.any(Vector3i.class)))
+                .thenAnswer(invocation -> !blocked.contains(invocation.getArgument(1, Vector3i.class)));
+    }
+
+    @Test
+    public void testCollapseStraightRun() throws ChunkNotLoadedException {
+        PathNode path = PathSmoother.smooth(physics, path(line(0, 10)));
+        Assertions.assertEquals(Arrays.asList(at(0, 5, 0), at(10, 5, 0)), locations(path));
+        Assertions.assertSame(path, path.getNext().getPrevious());
+    }
+
+    @Test
+    public void testSplitLongRun() throws ChunkNotLoadedException {
+        PathNode path = PathSmoother.smooth(physics, path(line(0, 40)));
+        Assertions.assertEquals(Arrays.asList(at(0, 5, 0), at(16, 5, 0), at(32, 5, 0), at(40, 5, 0)),
+                locations(path));
+    }
+
+    @Test
+    public void testKeepHeightChanges() throws ChunkNotLoadedException {
+        PathNode path = PathSmoother.smooth(physics, path(Arrays.asList(
+                at(0, 5, 0), at(1, 5, 0), at(2, 5, 0), at(3, 6, 0), at(4, 6, 0), at(5, 6, 0))));
+        Assertions.assertEquals(Arrays.asList(at(0, 5, 0), at(2, 5, 0), at(3, 6, 0), at(5, 6, 0)), locations(path));
+    }
+
+    @Test
+    public void testKeepCornerAroundObstacle() throws ChunkNotLoadedException {
+        blocked.add(at(1, 5, 1));
+        PathNode path = PathSmoother.smooth(physics, path(Arrays.asList(
+                at(0, 5, 0), at(1, 5, 0), at(2, 5, 0), at(2, 5, 1), at(2, 5, 2))));
+        Assertions.assertEquals(Arrays.asList(at(0, 5, 0), at(2, 5, 0), at(2, 5, 2)), locations(path));
+    }
+
+    @Test
+    public void testWalkStraight() throws ChunkNotLoadedException {
+        Assertions.assertTrue(PathSmoother.canWalkStraight(physics, at(0, 5, 0), at(3, 5, 3)));
+        Assertions.assertTrue(PathSmoother.canWalkStraight(physics, at(0, 5, 0), at(5, 5, -2)));
+        // Only single steps may change height
+        Assertions.assertTrue(PathSmoother.canWalkStraight(physics, at(0, 5, 0), at(1, 6, 0)));
+        Assertions.assertFalse(PathSmoother.canWalkStraight(physics, at(0, 5, 0), at(3, 6, 0)));
+
+        blocked.add(at(2, 5, 2));
+        Assertions.assertFalse(PathSmoother.canWalkStraight(physics, at(0, 5, 0), at(3, 5, 3)));
+    }
+
+    private static Vector3i at(int x, int y, int z) {
+        return new Vector3i(x, y, z);
+    }
+
+    private static List<Vector3i> line(int fromX, int toX) {
+        List<Vector3i> line = new ArrayList<>();
+        for (int x = fromX; x <= toX; x++) {
+            line.add(at(x, 5, 0));
+        }
+        return line;
+    }
+
+    private static PathNode path(List<Vector3i> locations) {
+        PathNode first = new PathNode(locations.get(0));
+        PathNode last = first;
+        for (Vector3i location : locations.subList(1, locations.size())) {
+            PathNode node = new PathNode(location, last, null);
+            last.setNext(node);
+            last = node;
+        }
+        return first;
+    }
+
+    private static List<Vector3i> locations(PathNode path) {
+        List<Vector3i> locations = new ArrayList<>();
+        for (PathNode node = path; node != null; node = node.getNext()) {
+            locations.add(node.getLocation());
+        }
+        return locations;
+    }
+}
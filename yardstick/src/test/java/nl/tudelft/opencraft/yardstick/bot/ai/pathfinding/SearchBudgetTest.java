@@ -0,0 +1,138 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.SimpleAStar;
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.heuristic.OctileHeuristic;
+import nl.tudelft.opencraft.yardstick.bot.world.Chunk;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.Dimension;
+import nl.tudelft.opencraft.yardstick.bot.world.Material;
+import nl.tudelft.opencraft.yardstick.bot.world.SimpleWorldPhysics;
+import nl.tudelft.opencraft.yardstick.bot.world.World;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import science.atlarge.opencraft.mcprotocollib.data.game.chunk.Column;
+import science.atlarge.opencraft.mcprotocollib.data.game.world.WorldType;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SearchBudgetTest {
+
+    private static final Vector3i START = new Vector3i(0, 5, 0);
+    private static final Vector3i END = new Vector3i(20, 5, 0);
+
+    SimpleAStar finder;
+
+    @BeforeAll
+    public void setupWorld() throws ChunkNotLoadedException {
+        World world = new World(Dimension.OVERWORLD, WorldType.DEFAULT);
+        for (int cx = -1; cx <= 1; cx++) {
+            for (int cz = -1; cz <= 1; cz++) {
+                science.atlarge.opencraft.mcprotocollib.data.game.chunk.Chunk[] sections
+                        = new science.atlarge.opencraft.mcprotocollib.data.game.chunk.Chunk[16];
+                world.loadChunk(new Chunk(world, new Column(cx, cz, sections, new byte[256], null)));
+            }
+        }
+        for (int x = -16; x < 32; x++) {
+            for (int z = -16; z < 32; z++) {
+                world.getBlockAt(x, 4, z).setTypeId(Material.GRASS.getId());
+            }
+        }
+        finder = new SimpleAStar(new OctileHeuristic(), new SimpleWorldPhysics(world));
+    }
+
+    @Test
+    public void testExpansionsAreLimited() {
+        SearchBudget budget = new SearchBudget(3);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(budget.tryExpand());
+        }
+        Assertions.assertFalse(budget.tryExpand());
+        Assertions.assertTrue(budget.isExhausted());
+        Assertions.assertEquals(3, budget.getExpansions());
+    }
+
+    @Test
+    public void testLastExpansionDoesNotExhaust() {
+        SearchBudget budget = new SearchBudget(3);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(budget.tryExpand());
+        }
+        // The search ran out of nodes without asking for another expansion
+        Assertions.assertFalse(budget.isExhausted());
+    }
+
+    @Test
+    public void testCancelStopsExpansions() {
+        SearchBudget budget = new SearchBudget(3);
+        Assertions.assertTrue(budget.tryExpand());
+        budget.cancel();
+        Assertions.assertFalse(budget.tryExpand());
+        Assertions.assertTrue(budget.isCancelled());
+        Assertions.assertFalse(budget.isExhausted());
+    }
+
+    @Test
+    public void testEmptyBudget() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SearchBudget(0));
+    }
+
+    @Test
+    public void testSearchStopsAtBudget() throws ChunkNotLoadedException {
+        SearchBudget budget = new SearchBudget(10);
+        Assertions.assertNull(finder.search(START, END, budget));
+        Assertions.assertTrue(budget.isExhausted());
+        Assertions.assertEquals(10, budget.getExpansions());
+
+        PathNode path = finder.search(START, END, SearchBudget.unlimited());
+        Assertions.assertNotNull(path);
+        Assertions.assertEquals(START, path.getLocation());
+        while (path.getNext() != null) {
+            path = path.getNext();
+        }
+        Assertions.assertEquals(END, path.getLocation());
+    }
+
+    @Test
+    public void testUnreachableIsNotExhausted() throws ChunkNotLoadedException {
+        // Nothing to stand on outside the grass, so the search runs out of nodes
+        SearchBudget budget = new SearchBudget(100_000);
+        Assertions.assertNull(finder.search(START, new Vector3i(100, 5, 0), budget));
+        Assertions.assertFalse(budget.isExhausted());
+    }
+
+    @Test
+    public void testServiceFailsWhenBudgetExceeded() throws Exception {
+        PathSearchService service = new PathSearchService(ConfigFactory.parseString(
+                "queue-capacity = 16, short-hop-distance = 4, short-hop-budget = 10, long-walk-budget = 10, "
+                + "smooth-paths = true"));
+        Future<PathNode> future = service.submit(finder, START, END);
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> future.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof SearchBudgetExceededException, e.getCause().toString());
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.heuristic;
+
+import nl.tudelft.opencraft.yardstick.bot.ai.pathfinding.astar.SimpleAStar;
+import nl.tudelft.opencraft.yardstick.util.Vector3d;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class OctileHeuristicTest {
+
+    private final OctileHeuristic heuristic = new OctileHeuristic();
+
+    @Test
+    public void testMatchesStepCosts() {
+        Assertions.assertEquals(SimpleAStar.STRAIGHT_COST, cost(new Vector3d(1, 0, 0)), 1e-9);
+        Assertions.assertEquals(SimpleAStar.DIAGONAL_COST, cost(new Vector3d(1, 0, 1)), 1e-9);
+        Assertions.assertEquals(3 * SimpleAStar.DIAGONAL_COST + 2 * SimpleAStar.STRAIGHT_COST,
+                cost(new Vector3d(5, 0, -3)), 1e-9);
+    }
+
+    @Test
+    public void testClimbWhileWalking() {
+        // Every step may climb a block, so climbing along the way is free
+        Assertions.assertEquals(2 * SimpleAStar.STRAIGHT_COST, cost(new Vector3d(2, 2, 0)), 1e-9);
+        Assertions.assertEquals(3 * SimpleAStar.STRAIGHT_COST, cost(new Vector3d(1, 3, 0)), 1e-9);
+    }
+
+    private double cost(Vector3d offset) {
+        return SimpleAStar.STRAIGHT_COST * heuristic.calculateCost(Vector3d.ZERO, offset);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.bot.ai.task;
+
+import java.lang.management.ManagementFactory;
+import nl.tudelft.opencraft.yardstick.bot.Bot;
+import nl.tudelft.opencraft.yardstick.bot.entity.BotPlayer;
+import nl.tudelft.opencraft.yardstick.bot.world.Chunk;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.Dimension;
+import nl.tudelft.opencraft.yardstick.bot.world.Material;
+import nl.tudelft.opencraft.yardstick.bot.world.World;
+import nl.tudelft.opencraft.yardstick.util.Vector3d;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import science.atlarge.opencraft.mcprotocollib.MinecraftProtocol;
+import science.atlarge.opencraft.mcprotocollib.data.game.chunk.Column;
+import science.atlarge.opencraft.mcprotocollib.data.game.world.WorldType;
+
+/**
+ * Measures the allocations of {@link Bot#tick()} for a flying and a walking
+ * bot. The bot is never connected, so its session drops the position packets
+ * it is sent.
+ * <p>
+ * A tick that moves the bot has to allocate its new location and the position
+ * packet. Anything on top of that, such as boxed values, iterators or events,
+ * pushes a tick over the budget.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TickAllocationTest {
+
+    // A Vector3d and a ClientPlayerPositionPacket take up about 90 bytes
+    private static final double MAX_BYTES_PER_TICK = 128;
+
+    private static final int FLY_WARMUP = 200_000;
+    private static final int FLY_TICKS = 1_000_000;
+    private static final int WALK_WARMUP = 500;
+    private static final int WALKS = 2_000;
+
+    private static final Vector3i WALK_FROM = new Vector3i(-12, 5, 1);
+    private static final Vector3i WALK_TO = new Vector3i(28, 5, 1);
+
+    com.sun.management.ThreadMXBean threads;
+    World world;
+    Bot bot;
+
+    @BeforeAll
+    public void setupWorld() throws ChunkNotLoadedException {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        world = new World(Dimension.OVERWORLD, WorldType.DEFAULT);
+        for (int cx = -1; cx <= 1; cx++) {
+            for (int cz = -1; cz <= 1; cz++) {
+                science.atlarge.opencraft.mcprotocollib.data.game.chunk.Chunk[] sections
+                        = new science.atlarge.opencraft.mcprotocollib.data.game.chunk.Chunk[16];
+                world.loadChunk(new Chunk(world, new Column(cx, cz, sections, new byte[256], null)));
+            }
+        }
+        for (int x = -16; x < 32; x++) {
+            for (int z = -16; z < 32; z++) {
+                world.getBlockAt(x, 4, z).setTypeId(Material.GRASS.getId());
+            }
+        }
+    }
+
+    @BeforeEach
+    public void setupBot() {
+        bot = new Bot(new MinecraftProtocol("tick"), "localhost", 25565);
+        bot.setWorld(world);
+        bot.setPlayer(new BotPlayer(bot, 1));
+    }
+
+    @Test
+    void testFlyTickAllocation() {
+        bot.getPlayer().setLocation(new Vector3d(0.5, FlyTaskExecutor.maxY, 0.5));
+        // Far enough away that the bot flies straight for the whole test
+        bot.setTaskExecutor(new FlyTaskExecutor(bot, new Vector3i(100_000_000, 5, 0), 1));
+
+        tick(FLY_WARMUP);
+        long before = allocatedBytes();
+        tick(FLY_TICKS);
+        long allocated = allocatedBytes() - before;
+
+        Assertions.assertSame(TaskStatus.StatusType.IN_PROGRESS, bot.getTaskExecutor().getStatus().getType());
+        assertBudget("Fly", allocated, FLY_TICKS);
+    }
+
+    @Test
+    void testWalkTickAllocation() {
+        bot.getPlayer().setLocation(WALK_FROM.doubleVector().add(0.5, 0, 0.5));
+
+        long allocated = 0, ticks = 0;
+        for (int i = 0; i < WALK_WARMUP + WALKS; i++) {
+            WalkTaskExecutor executor = new WalkTaskExecutor(bot, i % 2 == 0 ? WALK_TO : WALK_FROM);
+            bot.setTaskExecutor(executor);
+
+            // Taking the path from the search allocates, so the walk is measured from the tick after
+            while (!executor.isMoving() && executor.getStatus().getType() == TaskStatus.StatusType.IN_PROGRESS) {
+                bot.tick();
+                Thread.onSpinWait();
+            }
+            Assertions.assertTrue(executor.isMoving(), "No path found: " + executor.getStatus().getMessage());
+
+            long before = allocatedBytes();
+            int walked = 0;
+            while (executor.getStatus().getType() == TaskStatus.StatusType.IN_PROGRESS) {
+                bot.tick();
+                walked++;
+            }
+            long after = allocatedBytes();
+
+            Assertions.assertSame(TaskStatus.StatusType.SUCCESS, executor.getStatus().getType(),
+                    executor.getStatus().getMessage());
+            if (i >= WALK_WARMUP) {
+                allocated += after - before;
+                ticks += walked;
+            }
+        }
+
+        assertBudget("Walk", allocated, ticks);
+    }
+
+    private void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            bot.tick();
+        }
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+
+    private static void assertBudget(String task, long allocated, long ticks) {
+        double perTick = (double) allocated / ticks;
+        Assertions.assertTrue(perTick < MAX_BYTES_PER_TICK,
+                task + " tick allocated " + perTick + " bytes per tick (" + allocated + " in " + ticks + " ticks)");
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package nl.tudelft.opencraft.yardstick.bot.ai.task;
+
+import io.prometheus.client.CollectorRegistry;
+import java.util.concurrent.TimeUnit;
+import nl.tudelft.opencraft.yardstick.bot.Bot;
+import nl.tudelft.opencraft.yardstick.bot.entity.BotPlayer;
+import nl.tudelft.opencraft.yardstick.bot.world.Chunk;
+import nl.tudelft.opencraft.yardstick.bot.world.ChunkNotLoadedException;
+import nl.tudelft.opencraft.yardstick.bot.world.Dimension;
+import nl.tudelft.opencraft.yardstick.bot.world.Material;
+import nl.tudelft.opencraft.yardstick.bot.world.World;
+import nl.tudelft.opencraft.yardstick.util.Vector3d;
+import nl.tudelft.opencraft.yardstick.util.Vector3i;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import science.atlarge.opencraft.mcprotocollib.MinecraftProtocol;
+import science.atlarge.opencraft.mcprotocollib.data.game.chunk.Column;
+import science.atlarge.opencraft.mcprotocollib.data.game.world.WorldType;
+
+/**
+ * Changes the world under a walking bot, and checks that the bot repairs its
+ * path instead of failing the walk.
+ */
+class WalkTaskRepairTest {
+
+    private static final Vector3i WALK_FROM = new Vector3i(-12, 5, 1);
+    private static final Vector3i WALK_TO = new Vector3i(28, 5, 1);
+
+    World world;
+    Bot bot;
+    WalkTaskExecutor executor;
+
+    @BeforeEach
+    public void setup() throws ChunkNotLoadedException {
+        world = new World(Dimension.OVERWORLD, WorldType.DEFAULT);
+        for (int cx = -1; cx <= 1; cx++) {
+            for (int cz = -1; cz <= 1; cz++) {
+                science.atlarge.opencraft.mcprotocollib.data.game.chunk.Chunk[] sections
+                        = new science.atlarge.opencraft.mcprotocollib.data.game.chunk.Chunk[16];
+                world.loadChunk(new Chunk(world, new Column(cx, cz, sections, new byte[256], null)));
+            }
+        }
+        for (int x = -16; x < 32; x++) {
+            for (int z = -16; z < 32; z++) {
+                world.getBlockAt(x, 4, z).setTypeId(Material.GRASS.getId());
+            }
+        }
+
+        bot = new Bot(new MinecraftProtocol("repair"), "localhost", 25565);
+        bot.setWorld(world);
+        bot.setPlayer(new BotPlayer(bot, 1));
+        bot.getPlayer().setLocation(WALK_FROM.doubleVector().add(0.5, 0, 0.5));
+
+        executor = new WalkTaskExecutor(bot, WALK_TO);
+        bot.setTaskExecutor(executor);
+        while (!executor.isMoving() && executor.getStatus().getType() == TaskStatus.StatusType.IN_PROGRESS) {
+            bot.tick();
+            Thread.onSpinWait();
+        }
+        Assertions.assertTrue(executor.isMoving(), "No path found: " + executor.getStatus().getMessage());
+        for (int i = 0; i < 20; i++) {
+            bot.tick();
+        }
+    }
+
+    @Test
+    public void testRepairAroundBlockedPath() throws ChunkNotLoadedException {
+        double repairs = repairs("blocked");
+        for (int z = -6; z <= 8; z++) {
+            wall(8, z);
+        }
+
+        TaskStatus status = walk();
+        Assertions.assertSame(TaskStatus.StatusType.SUCCESS, status.getType(), status.getMessage());
+        Assertions.assertEquals(WALK_TO, bot.getPlayer().getLocation().intVector());
+        Assertions.assertTrue(repairs("blocked") > repairs);
+    }
+
+    @Test
+    public void testRepairAfterStraying() {
+        double repairs = repairs("strayed");
+        Vector3d location = bot.getPlayer().getLocation();
+        bot.getPlayer().setLocation(new Vector3d(location.getX(), location.getY(), location.getZ() + 4));
+
+        TaskStatus status = walk();
+        Assertions.assertSame(TaskStatus.StatusType.SUCCESS, status.getType(), status.getMessage());
+        Assertions.assertEquals(WALK_TO, bot.getPlayer().getLocation().intVector());
+        Assertions.assertTrue(repairs("strayed") > repairs);
+    }
+
+    @Test
+    public void testFailWithoutRepair() throws ChunkNotLoadedException {
+        // Wall in the target
+        for (int i = 0; i <= 6; i++) {
+            wall(25 + i, -2);
+            wall(25 + i, 4);
+            wall(25, -2 + i);
+            wall(31, -2 + i);
+        }
+
+        TaskStatus status = walk();
+        Assertions.assertSame(TaskStatus.StatusType.FAILURE, status.getType(), status.getMessage());
+    }
+
+    private void wall(int x, int z) throws ChunkNotLoadedException {
+        for (int y = 5; y <= 6; y++) {
+            world.getBlockAt(x, y, z).setTypeId(Material.STONE.getId());
+            world.fireBlockChange(x, y, z);
+        }
+    }
+
+    private TaskStatus walk() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (executor.getStatus().getType() == TaskStatus.StatusType.IN_PROGRESS && System.nanoTime() < deadline) {
+            bot.tick();
+            Thread.onSpinWait();
+        }
+        return executor.getStatus();
+    }
+
+    private static double repairs(String reason) {
+        Double value = CollectorRegistry.defaultRegistry.getSampleValue("yardstick_walk_repairs_total",
+                new String[]{"reason"}, new String[]{reason});
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.typesafe.config.ConfigFactory;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistogramMergerTest {
+
+    private static final long HIGHEST_TRACKABLE = 3_600_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testMergeEqualsHistogramOfAllValues() throws IOException {
+        File node0 = directory.resolve("histograms-0.hlog").toFile();
+        File node1 = directory.resolve("histograms-1.hlog").toFile();
+        File out = directory.resolve("histograms.csv").toFile();
+        Histogram all = new Histogram(HIGHEST_TRACKABLE, 3);
+
+        // The two nodes record values of different ranges, so each has its own part of the distribution
+        Random random = new Random(42);
+        HistogramSnapshots snapshots0 = snapshots(node0);
+        HistogramSnapshots.Distribution latency0 = snapshots0.register("latency", HIGHEST_TRACKABLE);
+        for (int i = 0; i < 10_000; i++) {
+            long value = 1_000_000 + (long) (random.nextDouble() * 50_000_000);
+            latency0.record(value);
+            all.recordValue(value);
+        }
+        HistogramSnapshots snapshots1 = snapshots(node1);
+        HistogramSnapshots.Distribution latency1 = snapshots1.register("latency", HIGHEST_TRACKABLE);
+        for (int i = 0; i < 1_000; i++) {
+            long value = 100_000_000 + (long) (random.nextDouble() * 900_000_000);
+            latency1.record(value);
+            all.recordValue(value);
+        }
+        snapshots0.close();
+        snapshots1.close();
+
+        // A window longer than the time since the epoch puts both snapshots in the same window
+        Assertions.assertTrue(HistogramMerger.merge(node0 + "," + node1, out.getPath(), Integer.MAX_VALUE));
+
+        List<String> rows = Files.readAllLines(out.toPath());
+        Assertions.assertEquals(List.of(
+                "window,distribution,nodes,count,min,mean,p50,p90,p99,p99.9,max",
+                row("0", "latency", 2, all),
+                row("total", "latency", 2, all)), rows);
+    }
+
+    @Test
+    void testNodesPerWindow() throws IOException {
+        File node0 = directory.resolve("histograms-0.hlog").toFile();
+        File node1 = directory.resolve("histograms-1.hlog").toFile();
+        File out = directory.resolve("histograms.csv").toFile();
+
+        // Node 0 has values in the windows at 0 and 10 s, node 1 only in the window at 0 s
+        Histogram first0 = histogram(0, 10_000, 5, 7);
+        Histogram second0 = histogram(10_000, 20_000, 11);
+        Histogram first1 = histogram(0, 10_000, 3);
+        writeLog(node0, first0, second0);
+        writeLog(node1, first1);
+
+        Assertions.assertTrue(HistogramMerger.merge(node0 + "," + node1, out.getPath(), 10));
+
+        Histogram first = first0.copy();
+        first.add(first1);
+        Histogram total = first.copy();
+        total.add(second0);
+        List<String> rows = Files.readAllLines(out.toPath()).stream().skip(1).collect(Collectors.toList());
+        Assertions.assertEquals(List.of(
+                row("0", "latency", 2, first),
+                row("10000", "latency", 1, second0),
+                row("total", "latency", 2, total)), rows);
+    }
+
+    @Test
+    void testMissingInput() throws IOException {
+        File node0 = directory.resolve("histograms-0.hlog").toFile();
+        File out = directory.resolve("histograms.csv").toFile();
+        writeLog(node0, histogram(0, 10_000, 1));
+
+        Assertions.assertFalse(HistogramMerger.merge(node0 + "," + directory.resolve("missing.hlog"), out.getPath(), 10));
+        Assertions.assertFalse(out.exists());
+    }
+
+    private static HistogramSnapshots snapshots(File file) {
+        // The interval is long enough that only the snapshot on close is written
+        return new HistogramSnapshots(
+                ConfigFactory.parseString("enabled = true\ninterval = 1h\nsignificant-digits = 3"), file);
+    }
+
+    private static Histogram histogram(long startMillis, long endMillis, long... values) {
+        Histogram histogram = new Histogram(HIGHEST_TRACKABLE, 3);
+        for (long value : values) {
+            histogram.recordValue(value);
+        }
+        histogram.setStartTimeStamp(startMillis);
+        histogram.setEndTimeStamp(endMillis);
+        histogram.setTag("latency");
+        return histogram;
+    }
+
+    private static void writeLog(File file, Histogram... histograms) throws FileNotFoundException {
+        try (PrintStream stream = new PrintStream(file)) {
+            HistogramLogWriter writer = new HistogramLogWriter(stream);
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(0);
+            writer.outputLegend();
+            for (Histogram histogram : histograms) {
+                writer.outputIntervalHistogram(histogram);
+            }
+        }
+    }
+
+    private static String row(String window, String distribution, int nodes, Histogram histogram) {
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%d,%d,%d,%d,%d", window, distribution, nodes,
+                histogram.getTotalCount(), histogram.getMinValue(), histogram.getMean(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MetricsRecorderTest {
+
+    private static final String COUNTER = "yardstick_test_total";
+    private static final String GAUGE = "yardstick_test_gauge";
+    private static final String LATE = "yardstick_test_late";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRoundTrip() throws IOException {
+        File recording = directory.resolve("metrics.ystm.gz").toFile();
+        File csv = directory.resolve("metrics.csv").toFile();
+
+        // Two rows per block, so the five rows take two full blocks and a partial one written on close
+        MetricsRecorder recorder = new MetricsRecorder(true, 2, recording);
+        recorder.record(1000, families(counter(1), gauge(0.5)));
+        recorder.record(2000, families(counter(2), gauge(Double.NaN)));
+        recorder.record(3000, families(counter(2), gauge(0.5), late(3)));
+        recorder.record(4000, families(counter(3), late(-1.5)));
+        recorder.record(5000, families(counter(4), gauge(1e300)));
+        recorder.close();
+
+        MetricsCsvConverter.convertCsv(recording.getPath(), csv.getPath());
+
+        List<String> expected = Arrays.asList(
+                "timestamp,name,labels,value",
+                // First block
+                "1000," + COUNTER + ",,1.0",
+                "2000," + COUNTER + ",,2.0",
+                "1000," + GAUGE + ",\"a=\"\"x\"\"\",0.5",
+                // Second block, with a new series
+                "3000," + COUNTER + ",,2.0",
+                "4000," + COUNTER + ",,3.0",
+                "3000," + GAUGE + ",\"a=\"\"x\"\"\",0.5",
+                "3000," + LATE + ",\"b=\"\"y\"\"\",3.0",
+                "4000," + LATE + ",\"b=\"\"y\"\"\",-1.5",
+                // Partial block
+                "5000," + COUNTER + ",,4.0",
+                "5000," + GAUGE + ",\"a=\"\"x\"\"\",1.0E300");
+        Assertions.assertEquals(expected, Files.readAllLines(csv.toPath()));
+    }
+
+    @Test
+    void testDisabled() throws IOException {
+        File recording = directory.resolve("disabled.ystm.gz").toFile();
+
+        MetricsRecorder recorder = new MetricsRecorder(false, 2, recording);
+        recorder.record(1000, families(counter(1)));
+        recorder.close();
+
+        Assertions.assertFalse(recorder.isEnabled());
+        Assertions.assertFalse(recording.exists());
+    }
+
+    private static Enumeration<MetricFamilySamples> families(MetricFamilySamples... families) {
+        return Collections.enumeration(new ArrayList<>(Arrays.asList(families)));
+    }
+
+    private static MetricFamilySamples counter(double value) {
+        return family(COUNTER, Collector.Type.COUNTER, Collections.emptyList(), Collections.emptyList(), value);
+    }
+
+    private static MetricFamilySamples gauge(double value) {
+        return family(GAUGE, Collector.Type.GAUGE, Collections.singletonList("a"), Collections.singletonList("x"), value);
+    }
+
+    private static MetricFamilySamples late(double value) {
+        return family(LATE, Collector.Type.GAUGE, Collections.singletonList("b"), Collections.singletonList("y"), value);
+    }
+
+    private static MetricFamilySamples family(String name, Collector.Type type, List<String> labelNames,
+                                              List<String> labelValues, double value) {
+        return new MetricFamilySamples(name, type, "help", Collections.singletonList(
+                new MetricFamilySamples.Sample(name, labelNames, labelValues, value)));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package nl.tudelft.opencraft.yardstick.statistic;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.CollectorRegistry;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ServerTickRateTest {
+
+    private static final Config CONFIG = ConfigFactory.parseString(
+            "enabled = true\n"
+                    + "sample-rate = 1\n"
+                    + "burst-gap = 10ms\n"
+                    + "span = 5s\n"
+                    + "window = 1h\n");
+
+    @TempDir
+    Path directory;
+
+    long now;
+    ServerTickRate tickRate;
+    ServerTickRate.Estimator estimator;
+
+    @BeforeEach
+    public void init() {
+        HistogramSnapshots snapshots = new HistogramSnapshots(
+                ConfigFactory.parseString("enabled = false\nsignificant-digits = 3"),
+                new File(directory.toFile(), "histograms.hlog"));
+        // Not zero, so a clock at its start is no special case
+        now = TimeUnit.SECONDS.toNanos(1);
+        tickRate = new ServerTickRate(CONFIG, snapshots, () -> now);
+        estimator = tickRate.newEstimator();
+        tickRate.rollWindow();
+    }
+
+    @Test
+    void testSteadyTps() {
+        for (int second = 0; second <= 20; second++) {
+            now = TimeUnit.SECONDS.toNanos(1 + second);
+            estimator.timeUpdated(20L * second);
+        }
+        tickRate.rollWindow();
+
+        Assertions.assertEquals(20, tps("mean"), 1e-9);
+        Assertions.assertEquals(20, tps("min"), 1e-9);
+    }
+
+    @Test
+    void testSlowServer() {
+        for (int second = 0; second <= 10; second++) {
+            now = TimeUnit.SECONDS.toNanos(1 + second);
+            estimator.timeUpdated(8L * second);
+        }
+        tickRate.rollWindow();
+
+        // Rates below the nominal 20 TPS are kept
+        Assertions.assertEquals(8, tps("mean"), 1e-9);
+    }
+
+    @Test
+    void testDelayedUpdate() {
+        for (int second = 0; second <= 16; second++) {
+            now = TimeUnit.SECONDS.toNanos(1 + second);
+            if (second == 5) {
+                now += TimeUnit.MILLISECONDS.toNanos(400);
+            }
+            estimator.timeUpdated(20L * second);
+        }
+        tickRate.rollWindow();
+
+        // The spans are 0 to 5.4 s, 5.4 to 11 s, and 11 to 16 s
+        Assertions.assertEquals(100 / 5.4, tps("min"), 1e-9);
+        Assertions.assertEquals((100 / 5.4 + 120 / 5.6 + 20) / 3, tps("mean"), 1e-9);
+        Assertions.assertEquals(20, tps("mean"), 0.05);
+    }
+
+    @Test
+    void testWorldChange() {
+        for (int second = 0; second <= 4; second++) {
+            now = TimeUnit.SECONDS.toNanos(1 + second);
+            estimator.timeUpdated(1_000_000 + 20L * second);
+        }
+        // A new world starts at a lower age, which starts a new span
+        for (int second = 5; second <= 10; second++) {
+            now = TimeUnit.SECONDS.toNanos(1 + second);
+            estimator.timeUpdated(20L * (second - 5));
+        }
+        tickRate.rollWindow();
+
+        Assertions.assertEquals(20, tps("mean"), 1e-9);
+        Assertions.assertEquals(20, tps("min"), 1e-9);
+    }
+
+    @Test
+    void testBurstsAndJitter() {
+        double intervalCount = sample("yardstick_server_tick_interval_seconds_count");
+        double intervalSum = sample("yardstick_server_tick_interval_seconds_sum");
+        double jitterCount = sample("yardstick_server_tick_jitter_seconds_count");
+        double jitterSum = sample("yardstick_server_tick_jitter_seconds_sum");
+
+        // Bursts start at 0, 50, 105 and 150 ms; packets within 10 ms of the previous one are part of its burst
+        moveAt(0, 2, 4, 50, 58, 105, 150, 159, 168);
+
+        // Intervals of 50, 55 and 45 ms
+        Assertions.assertEquals(3, sample("yardstick_server_tick_interval_seconds_count") - intervalCount);
+        Assertions.assertEquals(0.150, sample("yardstick_server_tick_interval_seconds_sum") - intervalSum, 1e-9);
+        // Jitter of 5 and 10 ms
+        Assertions.assertEquals(2, sample("yardstick_server_tick_jitter_seconds_count") - jitterCount);
+        Assertions.assertEquals(0.015, sample("yardstick_server_tick_jitter_seconds_sum") - jitterSum, 1e-9);
+    }
+
+    private void moveAt(long... millis) {
+        long start = now;
+        for (long m : millis) {
+            now = start + TimeUnit.MILLISECONDS.toNanos(m);
+            estimator.entityMoved();
+        }
+    }
+
+    private static double tps(String stat) {
+        return CollectorRegistry.defaultRegistry.getSampleValue("yardstick_server_tps",
+                new String[]{"stat"}, new String[]{stat});
+    }
+
+    private static double sample(String name) {
+        Double value = CollectorRegistry.defaultRegistry.getSampleValue(name);
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package nl.tudelft.opencraft.yardstick.util;
+
+import com.typesafe.config.ConfigFactory;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OverloadDetectorTest {
+
+    OverloadDetector detector;
+
+    @BeforeEach
+    public void setup() {
+        // Not enabled, so the test drives the updates instead of the schedule
+        detector = new OverloadDetector(ConfigFactory.parseString("enabled = false, interval = 1s, "
+                + "max-tick-lag = 25ms, max-tick-queue = 1000, max-gc-fraction = 0.1, max-cpu = 0.95, "
+                + "recovery-intervals = 3"));
+    }
+
+    @Test
+    public void testRecoverAfterHealthyIntervals() {
+        double windows = sample("yardstick_emulator_overloaded_windows_total");
+        Assertions.assertTrue(detector.isHealthy());
+
+        detector.update("tick lag");
+        Assertions.assertFalse(detector.isHealthy());
+        Assertions.assertEquals(0, sample("yardstick_emulator_healthy"));
+
+        detector.update(null);
+        detector.update(null);
+        Assertions.assertFalse(detector.isHealthy());
+
+        detector.update(null);
+        Assertions.assertTrue(detector.isHealthy());
+        Assertions.assertEquals(1, sample("yardstick_emulator_healthy"));
+        Assertions.assertEquals(1, sample("yardstick_emulator_overloaded_windows_total") - windows);
+    }
+
+    @Test
+    public void testOverloadRestartsRecovery() {
+        double windows = sample("yardstick_emulator_overloaded_windows_total");
+
+        detector.update("tick lag");
+        detector.update(null);
+        detector.update(null);
+        // Still the same window, but the healthy intervals start over
+        detector.update("CPU load");
+        detector.update(null);
+        detector.update(null);
+        Assertions.assertFalse(detector.isHealthy());
+
+        detector.update(null);
+        Assertions.assertTrue(detector.isHealthy());
+        Assertions.assertEquals(1, sample("yardstick_emulator_overloaded_windows_total") - windows);
+
+        detector.update("GC pauses");
+        Assertions.assertFalse(detector.isHealthy());
+        Assertions.assertEquals(2, sample("yardstick_emulator_overloaded_windows_total") - windows);
+    }
+
+    private static double sample(String name) {
+        Double value = CollectorRegistry.defaultRegistry.getSampleValue(name);
+        return value == null ? 0 : value;
+    }
+}
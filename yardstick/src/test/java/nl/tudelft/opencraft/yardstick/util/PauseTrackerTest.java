@@ -0,0 +1,76 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package nl.tudelft.opencraft.yardstick.util;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PauseTrackerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long base = System.nanoTime();
+
+    @Test
+    public void testOverlaps() {
+        PauseTracker tracker = new PauseTracker(true, MS, 10 * MS, 4);
+        tracker.wake(base + MS, base + MS);
+        tracker.wake(base + 2 * MS, base + 52 * MS);
+        tracker.wake(base + 53 * MS, base + 53 * MS);
+
+        Assertions.assertTrue(tracker.overlaps(base, base + 3 * MS));
+        Assertions.assertTrue(tracker.overlaps(base + 10 * MS, base + 20 * MS));
+        Assertions.assertTrue(tracker.overlaps(base + 50 * MS, base + 60 * MS));
+        Assertions.assertFalse(tracker.overlaps(base, base + MS));
+        Assertions.assertFalse(tracker.overlaps(base + 53 * MS, base + 60 * MS));
+    }
+
+    @Test
+    public void testOverlapsPauseNotRecordedYet() {
+        PauseTracker tracker = new PauseTracker(true, MS, 10 * MS, 4);
+        tracker.wake(base, base);
+
+        // The tracker should have woken up after a millisecond
+        Assertions.assertFalse(tracker.overlaps(base, base + 5 * MS));
+        Assertions.assertTrue(tracker.overlaps(base, base + 20 * MS));
+    }
+
+    @Test
+    public void testOnlyRecentPausesKept() {
+        PauseTracker tracker = new PauseTracker(true, MS, 10 * MS, 2);
+        for (int i = 0; i < 3; i++) {
+            tracker.wake(base + (10 + 30 * i) * MS, base + (30 + 30 * i) * MS);
+        }
+        tracker.wake(base + 91 * MS, base + 91 * MS);
+
+        Assertions.assertFalse(tracker.overlaps(base + 15 * MS, base + 20 * MS));
+        Assertions.assertTrue(tracker.overlaps(base + 45 * MS, base + 50 * MS));
+        Assertions.assertTrue(tracker.overlaps(base + 75 * MS, base + 80 * MS));
+    }
+
+    @Test
+    public void testDisabled() {
+        PauseTracker tracker = new PauseTracker(false, MS, 10 * MS, 4);
+        tracker.wake(base + 2 * MS, base + 52 * MS);
+
+        Assertions.assertFalse(tracker.overlaps(base, base + 60 * MS));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Yardstick: A Benchmark for Minecraft-like Services
+ * Copyright (C) 2020 AtLarge Research
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package nl.tudelft.opencraft.yardstick.util;
+
+import io.prometheus.client.CollectorRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SchedulerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Not zero, which marks a scheduler that has not started
+    private long now = MS;
+    // How far the clock moves on every read. While the scheduler waits for a tick, the clock must move
+    private long step = 0;
+    private final LongSupplier clock = () -> now += step;
+
+    @Test
+    public void testOnTime() throws InterruptedException {
+        Scheduler scheduler = new Scheduler(10, Scheduler.OverrunPolicy.CATCH_UP, clock);
+        step = MS;
+        scheduler.start();
+        Assertions.assertTrue(scheduler.sleepTick());
+        Assertions.assertEquals(1, scheduler.getTick());
+    }
+
+    @Test
+    public void testCatchUpRunsMissedTicks() throws InterruptedException {
+        Scheduler scheduler = new Scheduler(10, Scheduler.OverrunPolicy.CATCH_UP, clock);
+        scheduler.start();
+        now += 55 * MS;
+
+        // Ticks 1 to 5 were all due by now, so they run back to back
+        for (int i = 1; i <= 5; i++) {
+            Assertions.assertFalse(scheduler.sleepTick());
+            Assertions.assertEquals(i, scheduler.getTick());
+        }
+
+        step = MS;
+        Assertions.assertTrue(scheduler.sleepTick());
+        Assertions.assertEquals(6, scheduler.getTick());
+    }
+
+    @Test
+    public void testSkipDropsMissedTicks() throws InterruptedException {
+        double skipped = sample("yardstick_scheduler_skipped_ticks_total");
+        Scheduler scheduler = new Scheduler(50, Scheduler.OverrunPolicy.SKIP, clock);
+        scheduler.start();
+        now += 130 * MS;
+
+        // Tick 1 ran 80 ms late, so tick 2 is dropped
+        Assertions.assertFalse(scheduler.sleepTick());
+        Assertions.assertEquals(2, scheduler.getTick());
+        Assertions.assertEquals(1, sample("yardstick_scheduler_skipped_ticks_total") - skipped);
+
+        step = 5 * MS;
+        Assertions.assertTrue(scheduler.sleepTick());
+        Assertions.assertEquals(3, scheduler.getTick());
+    }
+
+    @Test
+    public void testInterrupt() {
+        Scheduler scheduler = new Scheduler(10, Scheduler.OverrunPolicy.CATCH_UP, clock);
+        step = MS;
+        scheduler.start();
+        Thread.currentThread().interrupt();
+
+        Assertions.assertThrows(InterruptedException.class, scheduler::sleepTick);
+        Assertions.assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    private static double sample(String name) {
+        Double value = CollectorRegistry.defaultRegistry.getSampleValue(name);
+        return value == null ? 0 : value;
+    }
+}